@@ -13,7 +13,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.core.CloudSim;
-import org.fog.entities.Tuple;
+import org.fog.entities.TupleCloudlet;
 
 /**
  * CloudletSchedulerDynamicWorkload implements a policy of scheduling performed by a virtual machine
@@ -80,7 +80,7 @@ public class CloudletSchedulerDynamicWorkload extends CloudletSchedulerTimeShare
 					* getTotalCurrentAllocatedMipsForCloudlet(rcl, getPreviousTime()) * Consts.MILLION));
 			
 			if (rcl.getRemainingCloudletLength() == 0) { // finished: remove from the list
-				System.out.println("Tuple "+((Tuple)rcl.getCloudlet()).getActualTupleId()+" is finished at time "+CloudSim.clock());
+				System.out.println("Tuple "+((TupleCloudlet)rcl.getCloudlet()).getTuple().getActualTupleId()+" is finished at time "+CloudSim.clock());
 				cloudletsToFinish.add(rcl);
 				continue;
 			} else { // not finish: estimate the finish time
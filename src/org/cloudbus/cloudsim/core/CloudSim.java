@@ -338,6 +338,18 @@ public class CloudSim {
 	/** The abrupt terminate. */
 	private static boolean abruptTerminate = false;
 
+	/** The number of events processed since the simulation was initialised. */
+	private static long processedEvents;
+
+	/** Listener notified every progressInterval processed events, on the simulation thread. */
+	private static Runnable progressListener;
+
+	/** The number of processed events between two notifications of the progress listener. */
+	private static long progressInterval;
+
+	/** The number of processed events at which the progress listener is notified next. */
+	private static long nextProgress;
+
 	/**
 	 * Initialise the simulation for stand alone simulations. This function should be called at the
 	 * start of the simulation.
@@ -351,6 +363,8 @@ public class CloudSim {
 		waitPredicates = new HashMap<Integer, Predicate>();
 		clock = 0;
 		running = false;
+		processedEvents = 0;
+		nextProgress = progressInterval;
 	}
 
 	// The two standard predicates
@@ -500,6 +514,46 @@ public class CloudSim {
 		e.startEntity();
 	}
 
+	/**
+	 * Gets the number of events processed since the simulation was initialised.
+	 * 
+	 * @return the number of processed events
+	 */
+	public static long getProcessedEvents() {
+		return processedEvents;
+	}
+
+	/**
+	 * Gets the number of events in the future event queue.
+	 * 
+	 * @return the size of the future queue, 0 if the simulation is not initialised
+	 */
+	public static int getFutureQueueSize() {
+		return (future == null) ? 0 : future.size();
+	}
+
+	/**
+	 * Gets the number of events in the deferred event queue.
+	 * 
+	 * @return the size of the deferred queue, 0 if the simulation is not initialised
+	 */
+	public static int getDeferredQueueSize() {
+		return (deferred == null) ? 0 : deferred.size();
+	}
+
+	/**
+	 * Sets a listener run on the simulation thread every <b>interval</b> processed events, e.g. to take snapshots
+	 * of the simulation state for monitoring. A null listener removes the current one.
+	 * 
+	 * @param listener the listener
+	 * @param interval the number of processed events between two notifications
+	 */
+	public static void setProgressListener(Runnable listener, long interval) {
+		progressListener = listener;
+		progressInterval = Math.max(1, interval);
+		nextProgress = processedEvents + progressInterval;
+	}
+
 	/**
 	 * Internal method used to run one tick of the simulation. This method should <b>not</b> be
 	 * called in simulations.
@@ -545,6 +599,11 @@ public class CloudSim {
 
 			future.removeAll(toRemove);
 
+			if (progressListener != null && processedEvents >= nextProgress) {
+				nextProgress = processedEvents + progressInterval;
+				progressListener.run();
+			}
+
 		} else {
 			queue_empty = true;
 			running = false;
@@ -755,6 +814,7 @@ public class CloudSim {
 			throw new IllegalArgumentException("Past event detected.");
 		}
 		clock = e.eventTime();
+		processedEvents++;
 
 		// Ok now process it
 		switch (e.getType()) {
@@ -883,6 +943,11 @@ public class CloudSim {
 				break;
 			}
 
+			// terminateSimulation() was called while processing the events
+			if (!running) {
+				break;
+			}
+
 			// this block allows termination of simulation at a specific time
 			if (terminateAt > 0.0 && clock >= terminateAt) {
 				terminateSimulation();
@@ -9,11 +9,15 @@
 package org.cloudbus.cloudsim.util;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.zip.GZIPInputStream;
@@ -143,13 +147,7 @@ public class WorkloadFileReader implements WorkloadModel {
 			fieldArray = new String[MAX_FIELD];
 
 			try {
-				if (file.getName().endsWith(".gz")) {
-					readGZIPFile(file);
-				} else if (file.getName().endsWith(".zip")) {
-					readZipFile(file);
-				} else {
-					readFile(file);
-				}
+				readFile(file);
 			} catch (final FileNotFoundException e) {
 			} catch (final IOException e) {
 			}
@@ -389,7 +387,7 @@ public class WorkloadFileReader implements WorkloadModel {
 	}
 
 	/**
-	 * Reads a text file one line at the time
+	 * Reads a text, gzip or zip file one line at the time
 	 * 
 	 * @param fl a file name
 	 * @return <code>true</code> if successful, <code>false</code> otherwise.
@@ -400,16 +398,16 @@ public class WorkloadFileReader implements WorkloadModel {
 		boolean success = false;
 		BufferedReader reader = null;
 		try {
-			reader = new BufferedReader(new InputStreamReader(new FileInputStream(fl)));
+			reader = openReader(fl);
 
 			// read one line at the time
 			int line = 1;
-			while (reader.ready()) {
-				parseValue(reader.readLine(), line);
+			String text;
+			while ((text = reader.readLine()) != null) {
+				parseValue(text, line);
 				line++;
 			}
 
-			reader.close();
 			success = true;
 		} finally {
 			if (reader != null) {
@@ -421,75 +419,67 @@ public class WorkloadFileReader implements WorkloadModel {
 	}
 
 	/**
-	 * Reads a gzip file one line at the time
+	 * Opens a trace file for reading, decompressing it according to its extension: <i>.gz</i> files are
+	 * gunzipped, the entries of <i>.zip</i> files are read one after the other, other files are read as ASCII text.
 	 * 
-	 * @param fl a gzip file name
-	 * @return <code>true</code> if successful; <code>false</code> otherwise.
-	 * @throws IOException if the there was any error reading the file
+	 * @param fl a file name
+	 * @return a reader of the content of the file, which also closes the underlying file
+	 * @throws IOException if the there was any error opening the file
 	 * @throws FileNotFoundException if the file was not found
 	 */
-	private boolean readGZIPFile(final File fl) throws IOException, FileNotFoundException {
-		boolean success = false;
-		BufferedReader reader = null;
-		try {
-			reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(fl))));
-
-			// read one line at the time
-			int line = 1;
-			while (reader.ready()) {
-				parseValue(reader.readLine(), line);
-				line++;
-			}
-
-			reader.close();
-			success = true;
-		} finally {
-			if (reader != null) {
-				reader.close();
-			}
+	public static BufferedReader openReader(final File fl) throws IOException, FileNotFoundException {
+		if (fl.getName().endsWith(".gz")) {
+			return new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(fl))));
+		} else if (fl.getName().endsWith(".zip")) {
+			return new BufferedReader(new InputStreamReader(openZipStream(fl)));
 		}
-
-		return success;
+		return new BufferedReader(new InputStreamReader(new FileInputStream(fl)));
 	}
 
 	/**
-	 * Reads a Zip file.
+	 * Returns a stream concatenating the entries of a zip file, separated by line breaks.
 	 * 
 	 * @param fl a zip file name
-	 * @return <code>true</code> if reading a file is successful; <code>false</code> otherwise.
-	 * @throws IOException if the there was any error reading the file
+	 * @return the stream, which closes the zip file when closed
+	 * @throws IOException if the there was any error opening the file
 	 */
-	private boolean readZipFile(final File fl) throws IOException {
-		boolean success = false;
-		ZipFile zipFile = null;
-		try {
-			BufferedReader reader = null;
-
-			// ZipFile offers an Enumeration of all the files in the file
-			zipFile = new ZipFile(fl);
-			final Enumeration<? extends ZipEntry> e = zipFile.entries();
-			while (e.hasMoreElements()) {
-				success = false; // reset the value again
-				final ZipEntry zipEntry = e.nextElement();
-
-				reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(zipEntry)));
-
-				// read one line at the time
-				int line = 1;
-				while (reader.ready()) {
-					parseValue(reader.readLine(), line);
-					line++;
-				}
+	private static InputStream openZipStream(final File fl) throws IOException {
+		final ZipFile zipFile = new ZipFile(fl);
+		// ZipFile offers an Enumeration of all the files in the file
+		final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		Enumeration<InputStream> streams = new Enumeration<InputStream>() {
 
-				reader.close();
-				success = true;
-			}
-		} finally {
-			if (zipFile != null) {
-				zipFile.close();
+			private boolean separator = false;
+
+			@Override
+			public boolean hasMoreElements() {
+				return entries.hasMoreElements();
 			}
-		}
 
-		return success;
+			@Override
+			public InputStream nextElement() {
+				if (separator) {
+					separator = false;
+					return new ByteArrayInputStream(new byte[] { '\n' });
+				}
+				separator = entries.hasMoreElements();
+				try {
+					return zipFile.getInputStream(entries.nextElement());
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		return new FilterInputStream(new SequenceInputStream(streams)) {
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					zipFile.close();
+				}
+			}
+		};
 	}
 }
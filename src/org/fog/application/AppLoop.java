@@ -12,6 +12,10 @@ import org.fog.utils.TimeKeeper;
 
 public class AppLoop {
 	private int loopId;
+	/**
+	 * Dense index of the loop among all loops, assigned by {@link TimeKeeper#getLoopIndex(AppLoop)}, -1 before
+	 */
+	private int loopIndex = -1;
 	private List<String> modules;
 	public AppLoop(List<String> modules){
 		setLoopId(TimeKeeper.getInstance().getUniqueId());
@@ -72,5 +76,13 @@ public class AppLoop {
 	public void setLoopId(int loopId) {
 		this.loopId = loopId;
 	}
+
+	public int getLoopIndex() {
+		return loopIndex;
+	}
+
+	public void setLoopIndex(int loopIndex) {
+		this.loopIndex = loopIndex;
+	}
 	
 }
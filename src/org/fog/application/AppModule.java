@@ -50,6 +50,11 @@ public class AppModule extends PowerVm{
 	 */
 	private Map<String, List<Integer>> actuatorSubscriptions;
 	
+	/**
+	 * Dense id of this module in the compiled application plan, -1 until the application is compiled
+	 */
+	private int moduleIndex;
+	
 	public AppModule(
 			int id,
 			String name,
@@ -86,6 +91,7 @@ public class AppModule extends PowerVm{
 		setNumInstances(0);
 		setDownInstanceIdsMaps(new HashMap<String, List<Integer>>());
 		setDestModules(new HashMap<String, List<AppModuleAddress>>());
+		setModuleIndex(-1);
 	}
 	
 	public AppModule(AppModule operator) {
@@ -102,6 +108,7 @@ public class AppModule extends PowerVm{
 		setDownInstanceIdsMaps(new HashMap<String, List<Integer>>());
 		setDestModules(new HashMap<String, List<AppModuleAddress>>());
 		setActuatorSubscriptions(new HashMap<String, List<Integer>>());
+		setModuleIndex(operator.getModuleIndex());
 	}
 	
 	public void subscribeActuator(int id, String tupleType){
@@ -157,4 +164,10 @@ public class AppModule extends PowerVm{
 			getDestModules().put(edge, new ArrayList<AppModuleAddress>());
 		getDestModules().get(edge).add(destModule);
 	}
+	public int getModuleIndex() {
+		return moduleIndex;
+	}
+	public void setModuleIndex(int moduleIndex) {
+		this.moduleIndex = moduleIndex;
+	}
 }
@@ -7,17 +7,22 @@
 package org.fog.application;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.apache.commons.math3.util.Pair;
-import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.fog.application.selectivity.FractionalSelectivity;
 import org.fog.application.selectivity.SelectivityModel;
 import org.fog.entities.Tuple;
+import org.fog.entities.TuplePool;
 import org.fog.scheduler.TupleScheduler;
 import org.fog.utils.FogUtils;
 import org.fog.utils.GeoCoverage;
+import org.fog.utils.RandomStreams;
+import org.fog.utils.TimeKeeper;
 
 /**
  * Class represents an application in the Distributed Dataflow Model.
@@ -46,6 +51,56 @@ public class Application {
 	private List<AppLoop> loops;
 	
 	private Map<String, AppEdge> edgeMap;
+	
+	/**
+	 * Denotes if the routing plan computed by {@link #compile()} is up to date with the application model
+	 */
+	private boolean compiled;
+	
+	/**
+	 * Map from vertex name (module, sensor type or actuator type) to its dense integer id
+	 */
+	private Map<String, Integer> vertexIndexMap;
+	
+	/**
+	 * Map from tuple type to its dense integer id
+	 */
+	private Map<String, Integer> tupleTypeIndexMap;
+	
+	/**
+	 * Application modules indexed by vertex id. Null for sensor and actuator vertices.
+	 */
+	private AppModule[] modulesByIndex;
+	
+	/**
+	 * Output edges of each vertex for each input tuple type, indexed as [vertexId][inputTupleTypeId]
+	 */
+	private CompiledEdge[][][] outputEdges;
+	
+	/**
+	 * Periodic edges originating from each vertex, indexed by vertex id
+	 */
+	private List<List<AppEdge>> periodicEdges;
+	
+	/**
+	 * Map from sensor type to the edge carrying its tuples
+	 */
+	private Map<String, CompiledEdge> sensorEdgeMap;
+	
+	/**
+	 * Loops that start, end or contain each edge between vertices, indexed by (srcVertexId * numVertices + destVertexId)
+	 */
+	private AppLoop[][] loopsStartingOnEdge;
+	private AppLoop[][] loopsEndingOnEdge;
+	private AppLoop[][] loopsContainingEdge;
+	
+	/**
+	 * Map from loop to the edges between its consecutive modules
+	 */
+	private Map<AppLoop, CompiledEdge[]> loopEdges;
+	
+	private static final CompiledEdge[] NO_EDGES = new CompiledEdge[0];
+	private static final AppLoop[] NO_LOOPS = new AppLoop[0];
 
 	/**
 	 * Creates a plain vanilla application with no modules and edges.
@@ -70,7 +125,7 @@ public class Application {
 				mips, ram, bw, size, vmm, new TupleScheduler(mips, 1), new HashMap<Pair<String, String>, SelectivityModel>());
 		
 		getModules().add(module);
-		
+		setCompiled(false);
 	}
 	
 	/**
@@ -88,6 +143,7 @@ public class Application {
 		AppEdge edge = new AppEdge(source, destination, tupleCpuLength, tupleNwLength, tupleType, direction, edgeType);
 		getEdges().add(edge);
 		getEdgeMap().put(edge.getTupleType(), edge);
+		setCompiled(false);
 	}
 	
 	/**
@@ -105,6 +161,7 @@ public class Application {
 		AppEdge edge = new AppEdge(source, destination, periodicity, tupleCpuLength, tupleNwLength, tupleType, direction, edgeType);
 		getEdges().add(edge);
 		getEdgeMap().put(edge.getTupleType(), edge);
+		setCompiled(false);
 	}
 	
 	/**
@@ -117,6 +174,288 @@ public class Application {
 	public void addTupleMapping(String moduleName, String inputTupleType, String outputTupleType, SelectivityModel selectivityModel){
 		AppModule module = getModuleByName(moduleName);
 		module.getSelectivityMap().put(new Pair<String, String>(inputTupleType, outputTupleType), selectivityModel);
+		setCompiled(false);
+	}
+	
+	/**
+	 * Gives every randomized selectivity model of the application its own stream, derived from the master seed of the run.
+	 */
+	public void assignRandomStreams(){
+		for(AppModule module : getModules()){
+			for(Entry<Pair<String, String>, SelectivityModel> mapping : module.getSelectivityMap().entrySet()){
+				if(mapping.getValue() instanceof FractionalSelectivity){
+					String name = "module/"+appId+"/"+module.getName()+"/"+mapping.getKey().getFirst()+"->"+mapping.getKey().getSecond();
+					((FractionalSelectivity)mapping.getValue()).setRandom(RandomStreams.getInstance().getStream(name));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Compiles the application model into a routing plan used on the per-tuple path.
+	 * Module, sensor and actuator names, as well as tuple types, are interned to dense integer ids, and for each 
+	 * (module, input tuple type) pair the output edges with a defined selectivity are precomputed along with their selectivity models.
+	 * The plan is invalidated whenever modules, edges or tuple mappings are changed, and recompiled on next use.
+	 */
+	public void compile(){
+		Map<String, Integer> vertexIndexMap = new HashMap<String, Integer>();
+		Map<String, Integer> tupleTypeIndexMap = new HashMap<String, Integer>();
+		for(AppModule module : getModules())
+			internName(vertexIndexMap, module.getName());
+		for(AppEdge edge : getEdges()){
+			internName(vertexIndexMap, edge.getSource());
+			internName(vertexIndexMap, edge.getDestination());
+			internName(tupleTypeIndexMap, edge.getTupleType());
+		}
+		
+		int numVertices = vertexIndexMap.size();
+		int numTupleTypes = tupleTypeIndexMap.size();
+		AppModule[] modulesByIndex = new AppModule[numVertices];
+		for(AppModule module : getModules()){
+			int index = vertexIndexMap.get(module.getName());
+			module.setModuleIndex(index);
+			modulesByIndex[index] = module;
+		}
+		
+		List<List<AppEdge>> periodicEdges = new ArrayList<List<AppEdge>>(numVertices);
+		List<List<List<CompiledEdge>>> outputs = new ArrayList<List<List<CompiledEdge>>>(numVertices);
+		for(int i=0;i<numVertices;i++){
+			periodicEdges.add(new ArrayList<AppEdge>());
+			List<List<CompiledEdge>> perInputType = new ArrayList<List<CompiledEdge>>(numTupleTypes);
+			for(int j=0;j<numTupleTypes;j++)
+				perInputType.add(new ArrayList<CompiledEdge>());
+			outputs.add(perInputType);
+		}
+		
+		Map<String, CompiledEdge> sensorEdgeMap = new HashMap<String, CompiledEdge>();
+		// first edge between each pair of vertices, indexed by (srcVertexId * numVertices + destVertexId)
+		CompiledEdge[] edgesBetween = new CompiledEdge[numVertices*numVertices];
+		for(AppEdge edge : getEdges()){
+			int src = vertexIndexMap.get(edge.getSource());
+			int dest = vertexIndexMap.get(edge.getDestination());
+			int tupleType = tupleTypeIndexMap.get(edge.getTupleType());
+			if(edge.isPeriodic())
+				periodicEdges.get(src).add(edge);
+			CompiledEdge compiledEdge = new CompiledEdge(edge, null, src, dest, tupleType);
+			sensorEdgeMap.put(edge.getSource(), compiledEdge);
+			if(edgesBetween[src*numVertices + dest] == null)
+				edgesBetween[src*numVertices + dest] = compiledEdge;
+			
+			AppModule module = modulesByIndex[src];
+			if(module == null)
+				continue;
+			for(Entry<String, Integer> inputType : tupleTypeIndexMap.entrySet()){
+				SelectivityModel selectivityModel = module.getSelectivityMap().get(new Pair<String, String>(inputType.getKey(), edge.getTupleType()));
+				if(selectivityModel != null)
+					outputs.get(src).get(inputType.getValue()).add(new CompiledEdge(edge, selectivityModel, src, dest, tupleType));
+			}
+		}
+		
+		CompiledEdge[][][] outputEdges = new CompiledEdge[numVertices][numTupleTypes][];
+		for(int i=0;i<numVertices;i++){
+			for(int j=0;j<numTupleTypes;j++){
+				List<CompiledEdge> list = outputs.get(i).get(j);
+				outputEdges[i][j] = list.isEmpty()?NO_EDGES:list.toArray(new CompiledEdge[list.size()]);
+			}
+		}
+		
+		AppLoop[][] loopsStartingOnEdge = new AppLoop[numVertices*numVertices][];
+		AppLoop[][] loopsEndingOnEdge = new AppLoop[numVertices*numVertices][];
+		AppLoop[][] loopsContainingEdge = new AppLoop[numVertices*numVertices][];
+		Map<AppLoop, CompiledEdge[]> loopEdges = new HashMap<AppLoop, CompiledEdge[]>();
+		for(AppLoop loop : getLoops()){
+			TimeKeeper.getInstance().getLoopIndex(loop);
+			List<String> loopModules = loop.getModules();
+			CompiledEdge[] edges = new CompiledEdge[Math.max(0, loopModules.size()-1)];
+			loopEdges.put(loop, edges);
+			for(int i=0;i<loopModules.size()-1;i++){
+				Integer src = vertexIndexMap.get(loopModules.get(i));
+				Integer dest = vertexIndexMap.get(loopModules.get(i+1));
+				if(src == null || dest == null)
+					continue;
+				int key = src*numVertices + dest;
+				edges[i] = edgesBetween[key];
+				loopsContainingEdge[key] = addLoop(loopsContainingEdge[key], loop);
+				if(loop.isStartModule(loopModules.get(i)))
+					loopsStartingOnEdge[key] = addLoop(loopsStartingOnEdge[key], loop);
+				if(loop.isEndModule(loopModules.get(i+1)))
+					loopsEndingOnEdge[key] = addLoop(loopsEndingOnEdge[key], loop);
+			}
+		}
+		for(int key=0;key<numVertices*numVertices;key++){
+			if(loopsContainingEdge[key] == null)
+				loopsContainingEdge[key] = NO_LOOPS;
+			if(loopsStartingOnEdge[key] == null)
+				loopsStartingOnEdge[key] = NO_LOOPS;
+			if(loopsEndingOnEdge[key] == null)
+				loopsEndingOnEdge[key] = NO_LOOPS;
+		}
+		
+		this.vertexIndexMap = vertexIndexMap;
+		this.tupleTypeIndexMap = tupleTypeIndexMap;
+		this.modulesByIndex = modulesByIndex;
+		this.periodicEdges = periodicEdges;
+		this.outputEdges = outputEdges;
+		this.sensorEdgeMap = sensorEdgeMap;
+		this.loopsStartingOnEdge = loopsStartingOnEdge;
+		this.loopsEndingOnEdge = loopsEndingOnEdge;
+		this.loopsContainingEdge = loopsContainingEdge;
+		this.loopEdges = loopEdges;
+		setCompiled(true);
+	}
+	
+	/**
+	 * Appends a loop to the loop list of an edge, unless the loop was already added for that edge.
+	 * Loops are processed one after the other, so a repeated edge within a loop always hits the last entry.
+	 */
+	private static AppLoop[] addLoop(AppLoop[] loops, AppLoop loop){
+		if(loops == null)
+			return new AppLoop[]{loop};
+		if(loops[loops.length-1] == loop)
+			return loops;
+		AppLoop[] result = new AppLoop[loops.length+1];
+		System.arraycopy(loops, 0, result, 0, loops.length);
+		result[loops.length] = loop;
+		return result;
+	}
+	
+	/**
+	 * Get the loops started by the edge a tuple is travelling on, i.e. loops containing the edge whose start module is the tuple source.
+	 * @param tuple
+	 * @return
+	 */
+	public AppLoop[] getLoopsStartingOn(Tuple tuple){
+		int key = getLoopEdgeKey(tuple);
+		if(key >= 0)
+			return loopsStartingOnEdge[key];
+		List<AppLoop> result = new ArrayList<AppLoop>();
+		for(AppLoop loop : getLoops()){
+			if(loop.hasEdge(tuple.getSrcModuleName(), tuple.getDestModuleName()) && loop.isStartModule(tuple.getSrcModuleName()))
+				result.add(loop);
+		}
+		return result.toArray(new AppLoop[result.size()]);
+	}
+	
+	/**
+	 * Get the loops ended by the edge a tuple is travelling on, i.e. loops containing the edge whose end module is the tuple destination.
+	 * @param tuple
+	 * @return
+	 */
+	public AppLoop[] getLoopsEndingOn(Tuple tuple){
+		int key = getLoopEdgeKey(tuple);
+		if(key >= 0)
+			return loopsEndingOnEdge[key];
+		List<AppLoop> result = new ArrayList<AppLoop>();
+		for(AppLoop loop : getLoops()){
+			if(loop.hasEdge(tuple.getSrcModuleName(), tuple.getDestModuleName()) && loop.isEndModule(tuple.getDestModuleName()))
+				result.add(loop);
+		}
+		return result.toArray(new AppLoop[result.size()]);
+	}
+	
+	/**
+	 * Get the loops containing the edge a tuple is travelling on.
+	 * @param tuple
+	 * @return
+	 */
+	public AppLoop[] getLoopsContaining(Tuple tuple){
+		int key = getLoopEdgeKey(tuple);
+		if(key >= 0)
+			return loopsContainingEdge[key];
+		List<AppLoop> result = new ArrayList<AppLoop>();
+		for(AppLoop loop : getLoops()){
+			if(loop.hasEdge(tuple.getSrcModuleName(), tuple.getDestModuleName()))
+				result.add(loop);
+		}
+		return result.toArray(new AppLoop[result.size()]);
+	}
+	
+	/**
+	 * Get the position of the edge a tuple is travelling on in the loop index.
+	 * @param tuple
+	 * @return the index key, or -1 if the tuple does not carry compiled vertex ids
+	 */
+	private int getLoopEdgeKey(Tuple tuple){
+		compileIfNeeded();
+		int src = tuple.getSrcModuleIndex();
+		int dest = tuple.getDestModuleIndex();
+		int numVertices = modulesByIndex.length;
+		if(src < 0 || dest < 0 || src >= numVertices || dest >= numVertices)
+			return -1;
+		return src*numVertices + dest;
+	}
+	
+	private static void internName(Map<String, Integer> indexMap, String name){
+		if(!indexMap.containsKey(name))
+			indexMap.put(name, indexMap.size());
+	}
+	
+	private void compileIfNeeded(){
+		if(!isCompiled())
+			compile();
+	}
+	
+	/**
+	 * Get the dense id assigned to a module, sensor type or actuator type by {@link #compile()}.
+	 * @param name vertex name
+	 * @return the vertex id, or -1 if the name is not part of the application
+	 */
+	public int getVertexIndex(String name){
+		compileIfNeeded();
+		Integer index = vertexIndexMap.get(name);
+		return (index == null)?-1:index;
+	}
+	
+	/**
+	 * Get the dense id assigned to a tuple type by {@link #compile()}.
+	 * @param tupleType
+	 * @return the tuple type id, or -1 if no edge of the application carries the tuple type
+	 */
+	public int getTupleTypeIndex(String tupleType){
+		compileIfNeeded();
+		Integer index = tupleTypeIndexMap.get(tupleType);
+		return (index == null)?-1:index;
+	}
+	
+	/**
+	 * Get the number of vertices (modules, sensor types and actuator types) in the compiled application.
+	 * @return
+	 */
+	public int getNumVertices(){
+		compileIfNeeded();
+		return modulesByIndex.length;
+	}
+	
+	/**
+	 * Get the compiled edge leaving a sensor of given type.
+	 * @param sensorType
+	 * @return the edge carrying tuples emitted by the sensor, or null if there is none
+	 */
+	public CompiledEdge getSensorEdge(String sensorType){
+		compileIfNeeded();
+		return sensorEdgeMap.get(sensorType);
+	}
+	
+	/**
+	 * Get the compiled edges between consecutive modules of a loop, the first edge of the application from each module
+	 * of the loop to the next one.
+	 * @param loop a loop of the application
+	 * @return the edge from the i-th to the (i+1)-th module of the loop at index i, null where the application has no such edge
+	 */
+	public CompiledEdge[] getLoopEdges(AppLoop loop){
+		compileIfNeeded();
+		CompiledEdge[] edges = loopEdges.get(loop);
+		return (edges == null)?NO_EDGES:edges;
+	}
+	
+	/**
+	 * Get the module with given dense id.
+	 * @param index vertex id
+	 * @return the module, or null if the vertex is a sensor or an actuator type
+	 */
+	public AppModule getModuleByIndex(int index){
+		compileIfNeeded();
+		return (index >= 0 && index < modulesByIndex.length)?modulesByIndex[index]:null;
 	}
 	
 	/**
@@ -125,12 +464,10 @@ public class Application {
 	 * @return
 	 */
 	public List<AppEdge> getPeriodicEdges(String srcModule){
-		List<AppEdge> result = new ArrayList<AppEdge>();
-		for(AppEdge edge : edges){
-			if(edge.isPeriodic() && edge.getSource().equals(srcModule))
-				result.add(edge);
-		}
-		return result;
+		int index = getVertexIndex(srcModule);
+		if(index < 0)
+			return new ArrayList<AppEdge>();
+		return new ArrayList<AppEdge>(periodicEdges.get(index));
 	}
 	
 	public Application(String appId, int userId) {
@@ -162,6 +499,10 @@ public class Application {
 	 * @return
 	 */
 	public AppModule getModuleByName(String name){
+		if(isCompiled()){
+			Integer index = vertexIndexMap.get(name);
+			return (index == null)?null:modulesByIndex[index];
+		}
 		for(AppModule module : modules){
 			if(module.getName().equals(name))
 				return module;
@@ -169,6 +510,53 @@ public class Application {
 		return null;
 	}
 	
+	/**
+	 * Returns a fingerprint of the structure of the application: the demands of its modules, its edges, tuple mappings
+	 * and loops. Names of modules, sensors, actuators and tuple types are replaced by their order of appearance, so
+	 * that applications created from the same template, differing only in names, have the same fingerprint.
+	 * @return
+	 */
+	public String getFingerprint(){
+		Map<String, String> names = new HashMap<String, String>();
+		StringBuilder fingerprint = new StringBuilder();
+		for(AppModule module : modules){
+			names.put(module.getName(), "m"+names.size());
+			fingerprint.append(module.getMips()).append(',').append(module.getNumberOfPes()).append(',')
+				.append(module.getRam()).append(',').append(module.getBw()).append(';');
+		}
+		for(AppEdge edge : edges){
+			fingerprint.append(getCanonicalName(names, edge.getSource())).append('>')
+				.append(getCanonicalName(names, edge.getDestination())).append(':')
+				.append(getCanonicalName(names, edge.getTupleType())).append(',').append(edge.getEdgeType()).append(',')
+				.append(edge.getDirection()).append(',').append(edge.getTupleCpuLength()).append(',')
+				.append(edge.getTupleNwLength()).append(',').append(edge.isPeriodic() ? edge.getPeriodicity() : 0).append(';');
+		}
+		for(AppModule module : modules){
+			// mappings are sorted, as the map does not keep their order
+			List<String> mappings = new ArrayList<String>();
+			for(Entry<Pair<String, String>, SelectivityModel> mapping : module.getSelectivityMap().entrySet()){
+				mappings.add(getCanonicalName(names, mapping.getKey().getFirst())+">"+getCanonicalName(names, mapping.getKey().getSecond())
+						+":"+mapping.getValue().getMeanRate());
+			}
+			Collections.sort(mappings);
+			fingerprint.append(names.get(module.getName())).append(mappings).append(';');
+		}
+		if(loops != null){
+			for(AppLoop loop : loops){
+				for(String name : loop.getModules())
+					fingerprint.append(getCanonicalName(names, name)).append(',');
+				fingerprint.append(';');
+			}
+		}
+		return fingerprint.toString();
+	}
+	
+	private static String getCanonicalName(Map<String, String> names, String name){
+		if(!names.containsKey(name))
+			names.put(name, "n"+names.size());
+		return names.get(name);
+	}
+	
 	/**
 	 * Get the tuples generated upon execution of incoming tuple <i>inputTuple</i> by module named <i>moduleName</i>
 	 * @param moduleName name of the module performing execution of incoming tuple and emitting resultant tuples
@@ -177,68 +565,75 @@ public class Application {
 	 * @return
 	 */
 	public List<Tuple> getResultantTuples(String moduleName, Tuple inputTuple, int sourceDeviceId, int sourceModuleId){
+		int moduleIndex = getVertexIndex(moduleName);
+		int tupleTypeIndex = (inputTuple.getTupleTypeIndex() >= 0)?inputTuple.getTupleTypeIndex():getTupleTypeIndex(inputTuple.getTupleType());
+		return getResultantTuples(moduleIndex, tupleTypeIndex, inputTuple, sourceDeviceId, sourceModuleId);
+	}
+	
+	/**
+	 * Get the tuples generated upon execution of incoming tuple <i>inputTuple</i> by the given module instance.
+	 * Uses the compiled routing plan, so no edge scanning or string comparison takes place.
+	 * @param module module instance performing execution of incoming tuple and emitting resultant tuples
+	 * @param inputTuple incoming tuple, whose execution creates resultant tuples
+	 * @param sourceDeviceId
+	 * @return
+	 */
+	public List<Tuple> getResultantTuples(AppModule module, Tuple inputTuple, int sourceDeviceId){
+		compileIfNeeded();
+		if(module.getModuleIndex() < 0 || inputTuple.getTupleTypeIndex() < 0)
+			return getResultantTuples(module.getName(), inputTuple, sourceDeviceId, module.getId());
+		return getResultantTuples(module.getModuleIndex(), inputTuple.getTupleTypeIndex(), inputTuple, sourceDeviceId, module.getId());
+	}
+	
+	private List<Tuple> getResultantTuples(int moduleIndex, int tupleTypeIndex, Tuple inputTuple, int sourceDeviceId, int sourceModuleId){
 		List<Tuple> tuples = new ArrayList<Tuple>();
-		AppModule module = getModuleByName(moduleName);
-		for(AppEdge edge : getEdges()){
-			if(edge.getSource().equals(moduleName)){
-				Pair<String, String> pair = new Pair<String, String>(inputTuple.getTupleType(), edge.getTupleType());
-				
-				if(module.getSelectivityMap().get(pair)==null)
-					continue;
-				SelectivityModel selectivityModel = module.getSelectivityMap().get(pair);
-				if(selectivityModel.canSelect()){
-					//TODO check if the edge is ACTUATOR, then create multiple tuples
-					if(edge.getEdgeType() == AppEdge.ACTUATOR){
-						//for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
-							Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-									(long) (edge.getTupleCpuLength()),
-									inputTuple.getNumberOfPes(),
-									(long) (edge.getTupleNwLength()),
-									inputTuple.getCloudletOutputSize(),
-									inputTuple.getUtilizationModelCpu(),
-									inputTuple.getUtilizationModelRam(),
-									inputTuple.getUtilizationModelBw()
-									);
-							tuple.setActualTupleId(inputTuple.getActualTupleId());
-							tuple.setUserId(inputTuple.getUserId());
-							tuple.setAppId(inputTuple.getAppId());
-							tuple.setDestModuleName(edge.getDestination());
-							tuple.setSrcModuleName(edge.getSource());
-							tuple.setDirection(Tuple.ACTUATOR);
-							tuple.setTupleType(edge.getTupleType());
-							tuple.setSourceDeviceId(sourceDeviceId);
-							tuple.setSourceModuleId(sourceModuleId);
-							//tuple.setActuatorId(actuatorId);
-							
-							tuples.add(tuple);
-						//}
-					}else{
-						Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
-								(long) (edge.getTupleCpuLength()),
-								inputTuple.getNumberOfPes(),
-								(long) (edge.getTupleNwLength()),
-								inputTuple.getCloudletOutputSize(),
-								inputTuple.getUtilizationModelCpu(),
-								inputTuple.getUtilizationModelRam(),
-								inputTuple.getUtilizationModelBw()
-								);
-						tuple.setActualTupleId(inputTuple.getActualTupleId());
-						tuple.setUserId(inputTuple.getUserId());
-						tuple.setAppId(inputTuple.getAppId());
-						tuple.setDestModuleName(edge.getDestination());
-						tuple.setSrcModuleName(edge.getSource());
-						tuple.setDirection(edge.getDirection());
-						tuple.setTupleType(edge.getTupleType());
-						tuple.setSourceModuleId(sourceModuleId);
-
-						tuples.add(tuple);
-					}
-				}
+		if(moduleIndex < 0 || tupleTypeIndex < 0)
+			return tuples;
+		for(CompiledEdge compiledEdge : outputEdges[moduleIndex][tupleTypeIndex]){
+			if(!compiledEdge.getSelectivityModel().canSelect())
+				continue;
+			AppEdge edge = compiledEdge.getEdge();
+			Tuple tuple = TuplePool.getInstance().acquire(appId, FogUtils.generateTupleId(), edge.getDirection(),  
+					compiledEdge.getTupleCpuLength(),
+					inputTuple.getNumberOfPes(),
+					compiledEdge.getTupleNwLength(),
+					inputTuple.getCloudletOutputSize());
+			tuple.setUtilizationModelCpu(inputTuple.getUtilizationModelCpu());
+			tuple.setUtilizationModelRam(inputTuple.getUtilizationModelRam());
+			tuple.setUtilizationModelBw(inputTuple.getUtilizationModelBw());
+			tuple.setActualTupleId(inputTuple.getActualTupleId());
+			tuple.setEmitTime(inputTuple.getEmitTime());
+			tuple.setTraceId(inputTuple.getTraceId());
+			tuple.setUserId(inputTuple.getUserId());
+			tuple.setAppId(inputTuple.getAppId());
+			tuple.setDestModuleName(edge.getDestination());
+			tuple.setSrcModuleName(edge.getSource());
+			tuple.setTupleType(edge.getTupleType());
+			tuple.setSourceModuleId(sourceModuleId);
+			setCompiledIndices(tuple, compiledEdge);
+			//TODO check if the edge is ACTUATOR, then create multiple tuples
+			if(edge.getEdgeType() == AppEdge.ACTUATOR){
+				tuple.setDirection(Tuple.ACTUATOR);
+				tuple.setSourceDeviceId(sourceDeviceId);
+			}else{
+				tuple.setDirection(edge.getDirection());
 			}
+			tuples.add(tuple);
 		}
 		return tuples;
 	}
 	
+	/**
+	 * Stamps the compiled vertex and tuple type ids of an edge on a tuple travelling on it.
+	 * @param tuple
+	 * @param compiledEdge
+	 */
+	public static void setCompiledIndices(Tuple tuple, CompiledEdge compiledEdge){
+		tuple.setSrcModuleIndex(compiledEdge.getSrcIndex());
+		tuple.setDestModuleIndex(compiledEdge.getDestIndex());
+		tuple.setTupleTypeIndex(compiledEdge.getTupleTypeIndex());
+	}
+	
 	/**
 	 * Create a tuple for a given application edge
 	 * @param edge
@@ -246,18 +641,18 @@ public class Application {
 	 * @return
 	 */
 	public Tuple createTuple(AppEdge edge, int sourceDeviceId, int sourceModuleId){
+		compileIfNeeded();
 		AppModule module = getModuleByName(edge.getSource());
+		int src = vertexIndexMap.get(edge.getSource());
+		int dest = vertexIndexMap.get(edge.getDestination());
+		int tupleType = tupleTypeIndexMap.get(edge.getTupleType());
 		if(edge.getEdgeType() == AppEdge.ACTUATOR){
 			for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
-				Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
+				Tuple tuple = TuplePool.getInstance().acquire(appId, FogUtils.generateTupleId(), edge.getDirection(),  
 						(long) (edge.getTupleCpuLength()),
 						1,
 						(long) (edge.getTupleNwLength()),
-						100,
-						new UtilizationModelFull(), 
-						new UtilizationModelFull(), 
-						new UtilizationModelFull()
-						);
+						100);
 				tuple.setUserId(getUserId());
 				tuple.setAppId(getAppId());
 				tuple.setDestModuleName(edge.getDestination());
@@ -267,19 +662,18 @@ public class Application {
 				tuple.setSourceDeviceId(sourceDeviceId);
 				tuple.setActuatorId(actuatorId);
 				tuple.setSourceModuleId(sourceModuleId);
+				tuple.setSrcModuleIndex(src);
+				tuple.setDestModuleIndex(dest);
+				tuple.setTupleTypeIndex(tupleType);
 
 				return tuple;
 			}
 		}else{
-			Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),  
+			Tuple tuple = TuplePool.getInstance().acquire(appId, FogUtils.generateTupleId(), edge.getDirection(),  
 					(long) (edge.getTupleCpuLength()),
 					1,
 					(long) (edge.getTupleNwLength()),
-					100,
-					new UtilizationModelFull(), 
-					new UtilizationModelFull(), 
-					new UtilizationModelFull()
-					);
+					100);
 			//tuple.setActualTupleId(inputTuple.getActualTupleId());
 			tuple.setUserId(getUserId());
 			tuple.setAppId(getAppId());
@@ -288,6 +682,9 @@ public class Application {
 			tuple.setDirection(edge.getDirection());
 			tuple.setTupleType(edge.getTupleType());
 			tuple.setSourceModuleId(sourceModuleId);
+			tuple.setSrcModuleIndex(src);
+			tuple.setDestModuleIndex(dest);
+			tuple.setTupleTypeIndex(tupleType);
 
 			return tuple;
 		}
@@ -305,12 +702,14 @@ public class Application {
 	}
 	public void setModules(List<AppModule> modules) {
 		this.modules = modules;
+		setCompiled(false);
 	}
 	public List<AppEdge> getEdges() {
 		return edges;
 	}
 	public void setEdges(List<AppEdge> edges) {
 		this.edges = edges;
+		setCompiled(false);
 	}
 	public GeoCoverage getGeoCoverage() {
 		return geoCoverage;
@@ -325,6 +724,7 @@ public class Application {
 
 	public void setLoops(List<AppLoop> loops) {
 		this.loops = loops;
+		setCompiled(false);
 	}
 
 	public int getUserId() {
@@ -342,4 +742,12 @@ public class Application {
 	public void setEdgeMap(Map<String, AppEdge> edgeMap) {
 		this.edgeMap = edgeMap;
 	}
+
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	public void setCompiled(boolean compiled) {
+		this.compiled = compiled;
+	}
 }
@@ -0,0 +1,71 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.application;
+
+import org.fog.application.selectivity.SelectivityModel;
+
+/**
+ * Immutable descriptor of an application edge, produced by {@link Application#compile()}.
+ * Holds the dense integer ids of the edge endpoints and tuple type, and (for output edges of a module)
+ * the selectivity model relating an input tuple type to this edge, so that tuple routing does not need
+ * any string comparison or map lookup.
+ */
+public class CompiledEdge {
+
+	/**
+	 * The application edge this descriptor was compiled from
+	 */
+	private final AppEdge edge;
+	/**
+	 * Selectivity model governing the emission on this edge. Null for edges not compiled as module outputs.
+	 */
+	private final SelectivityModel selectivityModel;
+	private final int srcIndex;
+	private final int destIndex;
+	private final int tupleTypeIndex;
+	private final long tupleCpuLength;
+	private final long tupleNwLength;
+
+	public CompiledEdge(AppEdge edge, SelectivityModel selectivityModel, int srcIndex, int destIndex, int tupleTypeIndex) {
+		this.edge = edge;
+		this.selectivityModel = selectivityModel;
+		this.srcIndex = srcIndex;
+		this.destIndex = destIndex;
+		this.tupleTypeIndex = tupleTypeIndex;
+		this.tupleCpuLength = (long) edge.getTupleCpuLength();
+		this.tupleNwLength = (long) edge.getTupleNwLength();
+	}
+
+	public AppEdge getEdge() {
+		return edge;
+	}
+
+	public SelectivityModel getSelectivityModel() {
+		return selectivityModel;
+	}
+
+	public int getSrcIndex() {
+		return srcIndex;
+	}
+
+	public int getDestIndex() {
+		return destIndex;
+	}
+
+	public int getTupleTypeIndex() {
+		return tupleTypeIndex;
+	}
+
+	public long getTupleCpuLength() {
+		return tupleCpuLength;
+	}
+
+	public long getTupleNwLength() {
+		return tupleNwLength;
+	}
+
+}
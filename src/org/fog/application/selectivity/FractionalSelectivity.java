@@ -6,6 +6,8 @@
 
 package org.fog.application.selectivity;
 
+import java.util.Random;
+
 /**
  * Generates an output tuple for an incoming input tuple with a fixed probability
  * @author Harshit Gupta
@@ -18,8 +20,14 @@ public class FractionalSelectivity implements SelectivityModel{
 	 */
 	double selectivity;
 	
+	/**
+	 * Stream deciding whether an output tuple is created
+	 */
+	Random random;
+	
 	public FractionalSelectivity(double selectivity){
 		setSelectivity(selectivity);
+		setRandom(new Random());
 	}
 	public double getSelectivity() {
 		return selectivity;
@@ -30,7 +38,7 @@ public class FractionalSelectivity implements SelectivityModel{
 	
 	@Override
 	public boolean canSelect() {
-		if(Math.random() < getSelectivity()) // if the probability condition is satisfied
+		if(random.nextDouble() < getSelectivity()) // if the probability condition is satisfied
 			return true;
 		return false;
 	}
@@ -45,4 +53,12 @@ public class FractionalSelectivity implements SelectivityModel{
 		return getSelectivity(); // the maximum rate of tuple generation is the fixed probability value
 	}
 	
+	public Random getRandom() {
+		return random;
+	}
+	
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+	
 }
@@ -16,6 +16,8 @@ import org.fog.utils.FogEvents;
 import org.fog.utils.GeoLocation;
 import org.fog.utils.Logger;
 import org.fog.utils.TimeKeeper;
+import org.fog.utils.TupleTraceRecord;
+import org.fog.utils.TupleTracer;
 
 public class Actuator extends SimEntity{
 	private static String LOG_TAG = "ACTUATOR";
@@ -83,31 +85,21 @@ public class Actuator extends SimEntity{
 
 	private void processTupleArrival(SimEvent ev) {
 		Tuple tuple = (Tuple)ev.getData();
+		TuplePool.getInstance().checkLive(tuple);
+		TupleTracer.getInstance().record(TupleTraceRecord.ACTUATOR_ARRIVAL, tuple, getId(), 0);
 		Logger.debug(LOG_TAG, getName(), "Received tuple "+tuple.getCloudletId()+"on "+tuple.getDestModuleName());
-		String srcModule = tuple.getSrcModuleName();
-		String destModule = tuple.getDestModuleName();
 		Application app = getApplication();
 		
-		for(AppLoop loop : app.getLoops()){
-			if(loop.hasEdge(srcModule, destModule) && loop.isEndModule(destModule)){
-				
-				Double startTime = TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				if(startTime==null)
-					break;
-				if(!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())){
-					TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
-					TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
-				}
-				double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
-				int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
-				double delay = CloudSim.clock()- TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				TimeKeeper.getInstance().getEmitTimes().remove(tuple.getActualTupleId());
-				double newAverage = (currentAverage*currentCount + delay)/(currentCount+1);
-				TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
-				TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount+1);
+		for(AppLoop loop : app.getLoopsEndingOn(tuple)){
+			double startTime = tuple.getEmitTime();
+			if(startTime < 0)
 				break;
-			}
+			double delay = CloudSim.clock()- startTime;
+			tuple.setEmitTime(-1);
+			TimeKeeper.getInstance().loopLatencyRecorded(loop, delay);
+			break;
 		}
+		TuplePool.getInstance().release(tuple);
 	}
 
 	@Override
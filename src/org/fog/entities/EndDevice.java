@@ -67,12 +67,16 @@ public class EndDevice extends SimEntity {
 
 	private void processTupleArrival(SimEvent ev) {
 		Tuple tuple = (Tuple) ev.getData();
+		TuplePool.getInstance().checkLive(tuple);
 		int destId = tuple.getDestinationDeviceId();
 		for (Actuator a : getActuators()) {
 			if (destId == a.getId()) {
 				sendTuple(tuple, destId);
+				return;
 			}
 		}
+		// no attached actuator is interested in this tuple
+		TuplePool.getInstance().release(tuple);
 	}
 
 	@Override
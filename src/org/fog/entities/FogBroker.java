@@ -6,29 +6,48 @@
 
 package org.fog.entities;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.power.PowerDatacenterBroker;
 import org.fog.application.AppEdge;
 import org.fog.application.AppLoop;
 import org.fog.application.AppModule;
 import org.fog.application.Application;
+import org.fog.network.Link;
+import org.fog.network.PhysicalTopology;
+import org.fog.placement.BatchModulePlacementPolicy;
+import org.fog.placement.CapacityIndex;
 import org.fog.placement.ModulePlacement;
 import org.fog.placement.ModulePlacementPolicy;
+import org.fog.placement.PlacementContext;
 import org.fog.utils.AppModuleAddress;
 import org.fog.utils.Config;
 import org.fog.utils.FogEvents;
 import org.fog.utils.FogUtils;
+import org.fog.utils.LatencyHistogram;
 import org.fog.utils.Logger;
+import org.fog.utils.ResultsWriter;
+import org.fog.utils.SteadyStateController;
 import org.fog.utils.TimeKeeper;
+import org.fog.utils.TupleTracer;
+import org.fog.utils.jmx.SimulationMonitor;
 
 public class FogBroker extends PowerDatacenterBroker{
 
@@ -50,11 +69,22 @@ public class FogBroker extends PowerDatacenterBroker{
 		}
 	}
 
+	/**
+	 * Placements computed in parallel, with the capacity reservations they require
+	 */
+	static class DeferredPlacement {
+		List<ModulePlacement> placements;
+		Map<Integer, double[]> reservations;
+	}
+
 	private static final String LOG_TAG = "FOG_BROKER";
 	
 	List<Integer> fogDeviceIds;
 	List<Integer> sensorIds;
 	List<Integer> actuatorIds;
+	private Set<Integer> fogDeviceIdSet = new HashSet<Integer>();
+	private Set<Integer> sensorIdSet = new HashSet<Integer>();
+	private Set<Integer> actuatorIdSet = new HashSet<Integer>();
 	
 	Map<Integer, FogDeviceCharacteristics> fogDeviceCharacteristics;
 	Map<Integer, SensorCharacteristics> sensorCharacteristics;
@@ -63,6 +93,8 @@ public class FogBroker extends PowerDatacenterBroker{
 	private Map<String, Application> applications;
 	private Map<String, Double> appLaunchDelays;
 	private Map<String, ModulePlacementPolicy> appModulePlacementPolicy;
+	private Map<String, BatchModulePlacementPolicy> appBatchPlacementPolicy;
+	private ForkJoinPool placementPool;
 
 	public FogBroker(String name) throws Exception {
 		super(name);
@@ -73,6 +105,7 @@ public class FogBroker extends PowerDatacenterBroker{
 		setActuatorCharacteristics(new HashMap<Integer, ActuatorCharacteristics>());
 		setApplications(new HashMap<String, Application>());
 		setAppModulePlacementPolicy(new HashMap<String, ModulePlacementPolicy>());
+		setAppBatchPlacementPolicy(new HashMap<String, BatchModulePlacementPolicy>());
 		setAppLaunchDelays(new HashMap<String, Double>());
 	}
 
@@ -91,6 +124,11 @@ public class FogBroker extends PowerDatacenterBroker{
 	 */
 	@Override
 	protected void processResourceCharacteristicsRequest(SimEvent ev) {
+		if (Config.BULK_REGISTRATION) {
+			// Characteristics are read at the time the replies of the entities would arrive
+			send(getId(), CloudSim.getMinTimeBetweenEvents(), FogEvents.BULK_REGISTRATION);
+			return;
+		}
 		// Send Resource Characteristics message to all Fog Devices
 		for (Integer fogDeviceId : getFogDeviceIds()) {
 			//System.out.println("Sending charac req to "+fogDeviceId);
@@ -106,6 +144,38 @@ public class FogBroker extends PowerDatacenterBroker{
 		}
 	}
 
+	/**
+	 * Registers all fog devices, sensors and actuators at once, reading their characteristics from the entities
+	 * registered with CloudSim. Entities whose characteristics cannot be read directly are sent a request, as without
+	 * bulk registration.
+	 */
+	protected void processBulkRegistration() {
+		for (Integer fogDeviceId : getFogDeviceIds()) {
+			SimEntity entity = CloudSim.getEntity(fogDeviceId);
+			if (entity instanceof FogDevice)
+				fogDeviceCharacteristics.put(fogDeviceId, ((FogDevice) entity).getFogDeviceCharacteristics());
+			else
+				sendNow(fogDeviceId, CloudSimTags.RESOURCE_CHARACTERISTICS, getId());
+		}
+		for (Integer sensorId : getSensorIds()) {
+			SimEntity entity = CloudSim.getEntity(sensorId);
+			if (entity instanceof Sensor)
+				sensorCharacteristics.put(sensorId, ((Sensor) entity).getCharacteristics());
+			else if (entity instanceof SensorPopulation)
+				sensorCharacteristics.put(sensorId, ((SensorPopulation) entity).getCharacteristics());
+			else
+				sendNow(sensorId, CloudSimTags.RESOURCE_CHARACTERISTICS, getId());
+		}
+		for (Integer actuatorId : getActuatorIds()) {
+			SimEntity entity = CloudSim.getEntity(actuatorId);
+			if (entity instanceof Actuator)
+				actuatorCharacteristics.put(actuatorId, ((Actuator) entity).getCharacteristics());
+			else
+				sendNow(actuatorId, CloudSimTags.RESOURCE_CHARACTERISTICS, getId());
+		}
+		deployIfAllRegistered();
+	}
+
 	/**
 	 * Process the return of a request for the characteristics of a FogDevice/Actuator/Sensor.
 	 * 
@@ -116,22 +186,26 @@ public class FogBroker extends PowerDatacenterBroker{
 	protected void processResourceCharacteristics(SimEvent ev) {
 		Integer srcId = ev.getSource();
 		//System.out.println("Received characteristics from "+srcId);
-		if (getFogDeviceIds().contains(srcId)) {
+		if (fogDeviceIdSet.contains(srcId)) {
 			processFogDeviceResourceCharacteristics(ev);
-		} else if (getSensorIds().contains(srcId)) {
+		} else if (sensorIdSet.contains(srcId)) {
 			processSensorResourceCharacteristics(ev);
-		} else if (getActuatorIds().contains(srcId)) {
+		} else if (actuatorIdSet.contains(srcId)) {
 			processActuatorResourceCharacteristics(ev);
 		} else {
 			// New entity joining maybe
 		}
-		
+		deployIfAllRegistered();
+	}
+
+	/**
+	 * Deploys the submitted applications once all fog devices, sensors and actuators are registered.
+	 */
+	protected void deployIfAllRegistered() {
 		if (getFogDeviceCharacteristics().size() + getSensorCharacteristics().size() + getActuatorCharacteristics().size()
 				== getFogDeviceIds().size() + getSensorIds().size() + getActuatorIds().size()) {
 			// All devices responded
-			for (String appId : getApplications().keySet()) {
-				deployApplication(appId);
-			}
+			deployApplications(new ArrayList<String>(getApplications().keySet()));
 		}
 	}
 	
@@ -149,6 +223,8 @@ public class FogBroker extends PowerDatacenterBroker{
 	
 	public void submitApplication(Application application, double delay, ModulePlacementPolicy modulePlacement){
 		FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
+		application.assignRandomStreams();
+		application.compile();
 		getApplications().put(application.getAppId(), application);
 		getAppModulePlacementPolicy().put(application.getAppId(), modulePlacement);
 		getAppLaunchDelays().put(application.getAppId(), delay);
@@ -157,26 +233,183 @@ public class FogBroker extends PowerDatacenterBroker{
 		send(getId(), delay, FogEvents.APP_SUBMIT, application.getAppId());
 	}
 	
+	/**
+	 * Submits applications whose modules are placed together by a batch placement policy, in a single decision.
+	 */
+	public void submitApplications(List<Application> applications, double delay, BatchModulePlacementPolicy batchPlacement){
+		List<String> appIds = new ArrayList<String>();
+		for (Application application : applications) {
+			FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
+			application.assignRandomStreams();
+			application.compile();
+			getApplications().put(application.getAppId(), application);
+			getAppBatchPlacementPolicy().put(application.getAppId(), batchPlacement);
+			getAppLaunchDelays().put(application.getAppId(), delay);
+			appIds.add(application.getAppId());
+		}
+		
+		send(getId(), delay, FogEvents.APP_SUBMIT, appIds);
+	}
+	
+	/**
+	 * Deploys applications, those sharing a batch placement policy with a single placement decision. The placements of
+	 * other applications are computed in parallel if {@link Config#PARALLEL_PLACEMENT} is set and their policies allow it,
+	 * and are committed in the order of the applications, between the placements of the sequentially placed ones.
+	 */
+	protected void deployApplications(List<String> appIds) {
+		// all applications are placed against the same characteristics
+		List<FogDeviceCharacteristics> fogDeviceCharacteristics = getFogDeviceCharacteristicsList();
+		List<SensorCharacteristics> sensorCharacteristics = getSensorCharacteristicsList();
+		List<ActuatorCharacteristics> actuatorCharacteristics = getActuatorCharacteristicsList();
+		
+		Map<BatchModulePlacementPolicy, List<Application>> batches = new LinkedHashMap<BatchModulePlacementPolicy, List<Application>>();
+		List<String> parallelAppIds = new ArrayList<String>();
+		for (String appId : appIds) {
+			BatchModulePlacementPolicy batchPlacement = getAppBatchPlacementPolicy().get(appId);
+			if (batchPlacement != null) {
+				if (!batches.containsKey(batchPlacement))
+					batches.put(batchPlacement, new ArrayList<Application>());
+				batches.get(batchPlacement).add(getApplications().get(appId));
+			} else if (Config.PARALLEL_PLACEMENT && getAppModulePlacementPolicy().get(appId).isParallelSafe()) {
+				parallelAppIds.add(appId);
+			}
+		}
+		Map<String, Future<DeferredPlacement>> parallelPlacements = new HashMap<String, Future<DeferredPlacement>>();
+		if (!parallelAppIds.isEmpty())
+			parallelPlacements = computePlacementsInParallel(parallelAppIds, fogDeviceCharacteristics, sensorCharacteristics, actuatorCharacteristics);
+		for (String appId : appIds) {
+			if (getAppBatchPlacementPolicy().containsKey(appId))
+				continue;
+			if (parallelPlacements.containsKey(appId))
+				deployPlacedApplication(appId, parallelPlacements.get(appId), fogDeviceCharacteristics, sensorCharacteristics, actuatorCharacteristics);
+			else
+				deployApplication(appId, fogDeviceCharacteristics, sensorCharacteristics, actuatorCharacteristics);
+		}
+		for (Entry<BatchModulePlacementPolicy, List<Application>> batch : batches.entrySet()) {
+			for (Application application : batch.getValue()) {
+				activateApplication(application);
+			}
+			Map<String, List<ModulePlacement>> placements = batch.getKey().computeModulePlacements(batch.getValue(),
+					fogDeviceCharacteristics, sensorCharacteristics, actuatorCharacteristics);
+			for (Application application : batch.getValue()) {
+				launchModules(application, placements.get(application.getAppId()));
+			}
+		}
+	}
+	
 	protected void deployApplication(String appId) {
+		deployApplication(appId, getFogDeviceCharacteristicsList(), getSensorCharacteristicsList(), getActuatorCharacteristicsList());
+	}
+	
+	private void deployApplication(String appId, List<FogDeviceCharacteristics> fogDeviceCharacteristics,
+			List<SensorCharacteristics> sensorCharacteristics, List<ActuatorCharacteristics> actuatorCharacteristics) {
 		Application application = getApplications().get(appId);
 		ModulePlacementPolicy modulePlacementPolicy = getAppModulePlacementPolicy().get(application.getAppId());
+		activateApplication(application);
+		
+		List<ModulePlacement> placements = modulePlacementPolicy.computeModulePlacements(fogDeviceCharacteristics, 
+				sensorCharacteristics, actuatorCharacteristics);
+		
+		launchModules(application, placements);
+	}
+	
+	/**
+	 * Computes the placements of applications in parallel, all against the same capacities, with their reservations
+	 * deferred until {@link #deployPlacedApplication} commits them.
+	 * @return map from application ID to its deferred placement
+	 */
+	private Map<String, Future<DeferredPlacement>> computePlacementsInParallel(List<String> appIds,
+			final List<FogDeviceCharacteristics> fogDeviceCharacteristics, final List<SensorCharacteristics> sensorCharacteristics,
+			final List<ActuatorCharacteristics> actuatorCharacteristics) {
+		final CapacityIndex capacityIndex = PlacementContext.getInstance().getCapacityIndex();
+		List<Callable<DeferredPlacement>> tasks = new ArrayList<Callable<DeferredPlacement>>();
+		for (String appId : appIds) {
+			final ModulePlacementPolicy modulePlacementPolicy = getAppModulePlacementPolicy().get(appId);
+			tasks.add(new Callable<DeferredPlacement>() {
+				@Override
+				public DeferredPlacement call() {
+					capacityIndex.deferReservations();
+					DeferredPlacement result = new DeferredPlacement();
+					try {
+						result.placements = modulePlacementPolicy.computeModulePlacements(fogDeviceCharacteristics, 
+								sensorCharacteristics, actuatorCharacteristics);
+					} finally {
+						result.reservations = capacityIndex.takeDeferredReservations();
+					}
+					return result;
+				}
+			});
+		}
+		
+		List<Future<DeferredPlacement>> results = getPlacementPool().invokeAll(tasks);
+		Map<String, Future<DeferredPlacement>> placements = new HashMap<String, Future<DeferredPlacement>>();
+		for (int i = 0; i < appIds.size(); i++)
+			placements.put(appIds.get(i), results.get(i));
+		return placements;
+	}
+	
+	/**
+	 * Commits the reservations of a placement computed in parallel and deploys its application. An application whose
+	 * reservations no longer fit once those of the applications deployed before it are committed is placed again.
+	 */
+	private void deployPlacedApplication(String appId, Future<DeferredPlacement> placement, List<FogDeviceCharacteristics> fogDeviceCharacteristics,
+			List<SensorCharacteristics> sensorCharacteristics, List<ActuatorCharacteristics> actuatorCharacteristics) {
+		DeferredPlacement result;
+		try {
+			result = placement.get();
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Placement of application "+appId+" failed", e.getCause());
+		}
+		if (PlacementContext.getInstance().getCapacityIndex().commit(result.reservations)) {
+			Application application = getApplications().get(appId);
+			activateApplication(application);
+			launchModules(application, result.placements);
+		} else {
+			Logger.debug(LOG_TAG, getName(), "Placing "+appId+" again, its reservations conflict with earlier applications");
+			deployApplication(appId, fogDeviceCharacteristics, sensorCharacteristics, actuatorCharacteristics);
+		}
+	}
+	
+	private ForkJoinPool getPlacementPool() {
+		if (placementPool == null)
+			placementPool = (Config.PLACEMENT_PARALLELISM > 0) ? new ForkJoinPool(Config.PLACEMENT_PARALLELISM) : new ForkJoinPool();
+		return placementPool;
+	}
+	
+	private void activateApplication(Application application) {
 		for(Integer fogDeviceId : fogDeviceIds){
 			// TODO Check necessity of this step
 			sendNow(fogDeviceId, FogEvents.ACTIVE_APP_UPDATE, application);
 		}
-		
+	}
+	
+	private List<FogDeviceCharacteristics> getFogDeviceCharacteristicsList() {
 		List<FogDeviceCharacteristics> fogDeviceCharacteristics = new ArrayList<FogDeviceCharacteristics>();
 		for (Integer f : getFogDeviceCharacteristics().keySet())
 			fogDeviceCharacteristics.add(getFogDeviceCharacteristics().get(f));
+		return fogDeviceCharacteristics;
+	}
+	
+	private List<SensorCharacteristics> getSensorCharacteristicsList() {
 		List<SensorCharacteristics> sensorCharacteristics = new ArrayList<SensorCharacteristics>();
 		for (Integer s : getSensorCharacteristics().keySet())
 			sensorCharacteristics.add(getSensorCharacteristics().get(s));
+		return sensorCharacteristics;
+	}
+	
+	private List<ActuatorCharacteristics> getActuatorCharacteristicsList() {
 		List<ActuatorCharacteristics> actuatorCharacteristics = new ArrayList<ActuatorCharacteristics>();
 		for (Integer a : getActuatorCharacteristics().keySet())
 			actuatorCharacteristics.add(getActuatorCharacteristics().get(a));
-		
-		List<ModulePlacement> placements = modulePlacementPolicy.computeModulePlacements(fogDeviceCharacteristics, sensorCharacteristics, actuatorCharacteristics);
-		
+		return actuatorCharacteristics;
+	}
+	
+	/**
+	 * Links the modules of the placements of an application and launches them on their devices.
+	 */
+	private void launchModules(Application application, List<ModulePlacement> placements) {
 		 ModuleLinks moduleLinks = linkModules(placements, application);
 		 
 		 Map<AppModule, Integer> modulesToDispatch = moduleLinks.getModulesToDispatch();
@@ -246,11 +479,15 @@ public class FogBroker extends PowerDatacenterBroker{
 		return moduleLinks;
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public void processEvent(SimEvent ev) {
 		switch(ev.getTag()) {
 		case FogEvents.APP_SUBMIT:
-			deployApplication(ev.getData().toString());
+			if (ev.getData() instanceof List)
+				deployApplications((List<String>) ev.getData());
+			else
+				deployApplication(ev.getData().toString());
 			break;
 		case CloudSimTags.RESOURCE_CHARACTERISTICS_REQUEST:
 			processResourceCharacteristicsRequest(ev);
@@ -258,6 +495,9 @@ public class FogBroker extends PowerDatacenterBroker{
 		case CloudSimTags.RESOURCE_CHARACTERISTICS:
 			processResourceCharacteristics(ev);
 			break;
+		case FogEvents.BULK_REGISTRATION:
+			processBulkRegistration();
+			break;
 		}
 	}
 
@@ -281,10 +521,6 @@ public class FogBroker extends PowerDatacenterBroker{
 		System.out.println("-----------------------------------------");
 		System.out.println(TimeKeeper.getInstance().getTupleTypeToAverageCpuTime());
 		System.out.println("-----------------------------------------");
-		System.out.println("CpuStartTime");
-		System.out.println("-----------------------------------------");
-		System.out.println(TimeKeeper.getInstance().getTupleIdToCpuStartTime());
-		System.out.println("-----------------------------------------");
 		System.out.println("ExecutedTupleCount");
 		System.out.println("-----------------------------------------");
 		System.out.println(TimeKeeper.getInstance().getTupleTypeToExecutedTupleCount());
@@ -300,11 +536,76 @@ public class FogBroker extends PowerDatacenterBroker{
 		}
 		
 		System.out.println("=========================================");
+		System.out.println("LATENCY PERCENTILES");
+		System.out.println("=========================================");
+		Map<Integer, LatencyHistogram> loopHistograms = TimeKeeper.getInstance().getLoopIdToLatencyHistogram();
+		for(Integer loopId : loopHistograms.keySet()){
+			System.out.println("Loop " + loopId + " ---> "+loopHistograms.get(loopId));
+		}
+		for(String tupleType : TimeKeeper.getInstance().getTupleTypeToCpuTimeHistogram().keySet()){
+			System.out.println(tupleType + " CPU ---> "+TimeKeeper.getInstance().getTupleTypeToCpuTimeHistogram().get(tupleType));
+		}
+		
+		SteadyStateController steadyState = TimeKeeper.getInstance().getSteadyStateController();
+		if(steadyState != null){
+			System.out.println("=========================================");
+			System.out.println("STEADY STATE" + (steadyState.isConverged() ? " (converged at " + steadyState.getConvergenceTime() + ")" : " (not converged)"));
+			System.out.println("=========================================");
+			for(SteadyStateController.Series series : steadyState.getSeries()){
+				System.out.println("Loop " + series.getLoopId() + " ---> "+series);
+			}
+		}
+		
+		System.out.println("=========================================");
+	}
+	
+	/**
+	 * Writes the results of the run to the results directory instead of printing them on the console.
+	 */
+	private void writeResults() {
+		double now = CloudSim.clock();
+		ResultsWriter writer = null;
+		try {
+			writer = new ResultsWriter(Config.RESULTS_DIRECTORY, Config.RUN_ID);
+			for(Integer fogDeviceId : getFogDeviceIds()){
+				FogDevice device = (FogDevice)CloudSim.getEntity(fogDeviceId);
+				writer.writeDevice(device.getId(), device.getName(), device.getEnergyConsumption(now), device.getTotalCost());
+			}
+			for(Link link : PhysicalTopology.getInstance().getLinks()){
+				writer.writeLink(link.getId(), link.getName(), 
+						link.getNorthTupleCount(), link.getNorthBusyTime(), (now > 0) ? link.getNorthBusyTime()/now : 0, 
+						link.getSouthTupleCount(), link.getSouthBusyTime(), (now > 0) ? link.getSouthBusyTime()/now : 0);
+			}
+			Map<Integer, LatencyHistogram> loopHistograms = TimeKeeper.getInstance().getLoopIdToLatencyHistogram();
+			for(Integer loopId : loopHistograms.keySet()){
+				writer.writeLoop(loopId, loopHistograms.get(loopId));
+			}
+			for(String tupleType : TimeKeeper.getInstance().getTupleTypeToCpuTimeHistogram().keySet()){
+				writer.writeTupleType(tupleType, TimeKeeper.getInstance().getTupleTypeToCpuTimeHistogram().get(tupleType));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			if(writer != null){
+				try {
+					writer.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
 	}
 	
 	@Override
 	public void shutdownEntity() {
-		printTimeDetails();
+		if(Config.RESULTS_DIRECTORY != null)
+			writeResults();
+		else
+			printTimeDetails();
+		TupleTracer.getInstance().close();
+		SimulationMonitor.getInstance().stop();
+		if(placementPool != null)
+			placementPool.shutdown();
 	//	printEnergyConsumptionDetails();
 	}
 	
@@ -321,14 +622,17 @@ public class FogBroker extends PowerDatacenterBroker{
 
 	public void setFogDeviceIds(List<Integer> fogDeviceIds) {
 		this.fogDeviceIds = fogDeviceIds;
+		this.fogDeviceIdSet = new HashSet<Integer>(fogDeviceIds);
 	}
 	
 	public void setSensorIds(List<Integer> sensorIds) {
 		this.sensorIds = sensorIds;
+		this.sensorIdSet = new HashSet<Integer>(sensorIds);
 	}
 	
 	public void setActuatorIds(List<Integer> actuatorIds) {
 		this.actuatorIds = actuatorIds;
+		this.actuatorIdSet = new HashSet<Integer>(actuatorIds);
 	}
 	
 	public List<Integer> getFogDeviceIds() {
@@ -386,6 +690,14 @@ public class FogBroker extends PowerDatacenterBroker{
 		this.appModulePlacementPolicy = appModulePlacementPolicy;
 	}
 
+	public Map<String, BatchModulePlacementPolicy> getAppBatchPlacementPolicy() {
+		return appBatchPlacementPolicy;
+	}
+
+	public void setAppBatchPlacementPolicy(Map<String, BatchModulePlacementPolicy> appBatchPlacementPolicy) {
+		this.appBatchPlacementPolicy = appBatchPlacementPolicy;
+	}
+
 	public Map<String, Double> getAppLaunchDelays() {
 		return appLaunchDelays;
 	}
@@ -33,8 +33,17 @@ import org.fog.utils.Config;
 import org.fog.utils.FogEvents;
 import org.fog.utils.Logger;
 import org.fog.utils.TimeKeeper;
+import org.fog.utils.TupleTraceRecord;
+import org.fog.utils.TupleTracer;
 
 public class FogDevice extends PowerDatacenter {
+	/**
+	 * Acknowledgement protocols for tuples received by a fog device
+	 */
+	public static final int TUPLE_ACK_PER_TUPLE = 0;
+	public static final int TUPLE_ACK_NONE = 1;
+	public static final int TUPLE_ACK_CUMULATIVE = 2;
+	
 	private static String LOG_TAG = "FOG_DEVICE";
 	
 	protected Queue<Tuple> northTupleQueue;
@@ -91,7 +100,19 @@ public class FogDevice extends PowerDatacenter {
 	protected Map<Integer, AppModule> moduleMap;
 	
 	protected int linkId;
-
+	
+	/**
+	 * Acknowledgement protocol used for tuples received by this device. One of the TUPLE_ACK_* constants.
+	 */
+	protected int tupleAckMode;
+	/**
+	 * Number of tuples covered by a cumulative acknowledgement
+	 */
+	protected int tupleAckInterval;
+	/**
+	 * Number of tuples received from each source and not acknowledged yet, for cumulative acknowledgements
+	 */
+	protected Map<Integer, Integer> unacknowledgedTupleCount;
 	
 	public FogDevice(
 			String name, 
@@ -125,6 +146,9 @@ public class FogDevice extends PowerDatacenter {
 		this.lastUtilization = 0;
 		setTotalCost(0);
 		moduleMap = new HashMap<Integer, AppModule>();
+		setTupleAckMode(TUPLE_ACK_PER_TUPLE);
+		setTupleAckInterval(1);
+		unacknowledgedTupleCount = new HashMap<Integer, Integer>();
 	}
 	
 	public FogDevice(
@@ -159,6 +183,9 @@ public class FogDevice extends PowerDatacenter {
 		this.lastUtilization = 0;
 		setTotalCost(0);
 		moduleMap = new HashMap<Integer, AppModule>();
+		setTupleAckMode(TUPLE_ACK_PER_TUPLE);
+		setTupleAckInterval(1);
+		unacknowledgedTupleCount = new HashMap<Integer, Integer>();
 	}
 
 	/**
@@ -196,9 +223,6 @@ public class FogDevice extends PowerDatacenter {
 		case FogEvents.ACTUATOR_JOINED:
 			processActuatorJoined(ev);
 			break;
-		case FogEvents.RESOURCE_MGMT:
-			manageResources(ev);
-			break;
 		case FogEvents.TUPLE_FINISHED:
 			processTupleFinished(ev);
 			break;
@@ -223,45 +247,54 @@ public class FogDevice extends PowerDatacenter {
 	}
 
 	protected void routeTuple(Tuple resTuple, AppModule module) {
+		boolean sent = false;
 		if (resTuple.getDirection() != Tuple.ACTUATOR) {
-			for (AppModuleAddress addr : module.getDestModules().get(resTuple.getTupleType())) {
-				sendTuple(resTuple, addr.getFogDeviceId(), addr.getVmId());				
+			List<AppModuleAddress> destModules = module.getDestModules().get(resTuple.getTupleType());
+			if (destModules != null) {
+				for (AppModuleAddress addr : destModules) {
+					if (sent)
+						resTuple.retain();
+					sendTuple(resTuple, addr.getFogDeviceId(), addr.getVmId());
+					sent = true;
+				}
 			}
 		} else {
 			try {
 				for (Integer actuatorId : module.getActuatorSubscriptions().get(resTuple.getTupleType())) {
+					if (sent)
+						resTuple.retain();
 					sendTuple(resTuple, actuatorId);
+					sent = true;
 				}
 			}catch(Exception p) {	
 				
 			}
 		}
 		updateTimingsOnSending(resTuple);
+		// a tuple with nowhere to go terminates here
+		if (!sent)
+			TuplePool.getInstance().release(resTuple);
 	}
 
 	protected void processTupleFinished(SimEvent ev) {
 		Tuple tuple = (Tuple) ev.getData();
+		TuplePool.getInstance().checkLive(tuple);
+		TupleTracer.getInstance().record(TupleTraceRecord.EXECUTION_END, tuple, getId(), CloudSim.clock()-tuple.getCpuStartTime());
 		TimeKeeper.getInstance().tupleEndedExecution(tuple);
 		Application application = getApplicationMap().get(tuple.getAppId());
 		Logger.debug(LOG_TAG, getName(), "Completed execution of tuple "+tuple.getCloudletId()+"on "+tuple.getDestModuleName());
 		AppModule module = moduleMap.get(tuple.getVmId());
 
-		List<Tuple> resultantTuples = application.getResultantTuples(tuple.getDestModuleName(), tuple, getId(), module.getId());
+		List<Tuple> resultantTuples = application.getResultantTuples(module, tuple, getId());
 		for(Tuple resTuple : resultantTuples){
 			Logger.debug(LOG_TAG, getName(), "Finished executing "+tuple.getTupleType()+" , generating " + resTuple.getTupleType());
 			routeTuple(resTuple, module);
 
 		}
-		sendNow(tuple.getUserId(), CloudSimTags.CLOUDLET_RETURN, tuple);	
-	}
-
-	/**
-	 * Perform miscellaneous resource management tasks
-	 * @param ev
-	 */
-	private void manageResources(SimEvent ev) {
-		updateEnergyConsumption();
-		send(getId(), Config.RESOURCE_MGMT_INTERVAL, FogEvents.RESOURCE_MGMT);
+		if (Config.TUPLE_POOLING)
+			TuplePool.getInstance().release(tuple);
+		else
+			sendNow(tuple.getUserId(), CloudSimTags.CLOUDLET_RETURN, tuple);	
 	}
 
 	/**
@@ -274,6 +307,8 @@ public class FogDevice extends PowerDatacenter {
 		String tupleType = tupleInfo.getSecond();
 		AppEdge edge = getApplicationMap().get(module.getAppId()).getEdgeMap().get(tupleType);
 		Tuple tuple = applicationMap.get(module.getAppId()).createTuple(edge, getId(), module.getId());
+		TupleTracer.getInstance().sample(tuple);
+		TupleTracer.getInstance().record(TupleTraceRecord.PERIODIC_EMIT, tuple, getId(), 0);
 
 		routeTuple(tuple, module);
 
@@ -383,7 +418,7 @@ public class FogDevice extends PowerDatacenter {
 					Cloudlet cl = vm.getCloudletScheduler().getNextFinishedCloudlet();
 					if (cl != null) {
 						cloudletCompleted = true;
-						Tuple tuple = (Tuple)cl;
+						Tuple tuple = ((TupleCloudlet)cl).getTuple();
 						sendNow(getId(), FogEvents.TUPLE_FINISHED, tuple);
 					}
 				}
@@ -392,37 +427,42 @@ public class FogDevice extends PowerDatacenter {
 		if(cloudletCompleted) {
 			//AppModuleScheduler scheduler = (AppModuleScheduler) getHost().getVmScheduler();
 			//scheduler.updateAllocatedMips(getVmList());
+			updateEnergyConsumption();
 		}
 	}
 
 	protected void updateTimingsOnSending(Tuple resTuple) {
 		// TODO ADD CODE FOR UPDATING TIMINGS WHEN A TUPLE IS GENERATED FROM A PREVIOUSLY RECIEVED TUPLE. 
 		// WILL NEED TO CHECK IF A NEW LOOP STARTS AND INSERT A UNIQUE TUPLE ID TO IT.
-		String srcModule = resTuple.getSrcModuleName();
-		String destModule = resTuple.getDestModuleName();
-		for(AppLoop loop : getApplicationMap().get(resTuple.getAppId()).getLoops()){
-			if(loop.hasEdge(srcModule, destModule) && loop.isStartModule(srcModule)){
-				int tupleId = TimeKeeper.getInstance().getUniqueId();
-				resTuple.setActualTupleId(tupleId);
-				if(!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-					TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-				TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-				TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
-
-			}
+		for(AppLoop loop : getApplicationMap().get(resTuple.getAppId()).getLoopsStartingOn(resTuple)){
+			int tupleId = TimeKeeper.getInstance().getUniqueId();
+			resTuple.setActualTupleId(tupleId);
+			resTuple.setEmitTime(CloudSim.clock());
 		}
 	}
 
-	private void updateEnergyConsumption() {
+	/**
+	 * Integrates energy and cost up to the current time and starts a new segment at the current utilization.
+	 * Called wherever the utilization of the device may change (module arrival/release, tuple start/finish),
+	 * so that power is constant within each integrated segment.
+	 */
+	protected void updateEnergyConsumption() {
+		closeEnergySegment(CloudSim.clock());
+
 		double totalMipsAllocated = 0;
 		for(final Vm vm : getHost().getVmList()){
-			AppModule operator = (AppModule)vm;
-			operator.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(operator).getVmScheduler()
-					.getAllocatedMipsForVm(operator));
 			totalMipsAllocated += getHost().getTotalAllocatedMipsForVm(vm);
 		}
+		lastUtilization = Math.min(1, totalMipsAllocated/getHost().getTotalMips());
+	}
 
-		double timeNow = CloudSim.clock();
+	/**
+	 * Integrates energy and cost at the last computed utilization from the start of the current segment up to <b>timeNow</b>.
+	 * @param timeNow end of the segment
+	 */
+	private void closeEnergySegment(double timeNow) {
+		if (timeNow <= lastUtilizationUpdateTime)
+			return;
 		double currentEnergyConsumption = getEnergyConsumption();
 		double newEnergyConsumption = currentEnergyConsumption + (timeNow-lastUtilizationUpdateTime)*getHost().getPowerModel().getPower(lastUtilization);
 		setEnergyConsumption(newEnergyConsumption);
@@ -431,7 +471,6 @@ public class FogDevice extends PowerDatacenter {
 		double newcost = currentCost + (timeNow-lastUtilizationUpdateTime)*getRatePerMips()*lastUtilization*getHost().getTotalMips();
 		setTotalCost(newcost);
 
-		lastUtilization = Math.min(1, totalMipsAllocated/getHost().getTotalMips());
 		lastUtilizationUpdateTime = timeNow;
 	}
 
@@ -449,6 +488,7 @@ public class FogDevice extends PowerDatacenter {
 
 	protected void processTupleArrival(SimEvent ev){
 		Tuple tuple = (Tuple)ev.getData();
+		TuplePool.getInstance().checkLive(tuple);
 
 		Logger.debug(LOG_TAG, getName(), "Received tuple "+tuple.getCloudletId()+"with tupleType = "+tuple.getTupleType()+"\t| Source : "+
 				CloudSim.getEntityName(ev.getSource())+"|Dest : "+CloudSim.getEntityName(ev.getDestination()));
@@ -459,7 +499,7 @@ public class FogDevice extends PowerDatacenter {
 
 		Logger.debug(LOG_TAG, getName(), "Received tuple "+tuple.getCloudletId()+"with tupleType = "+tuple.getTupleType()+"\t| Source : "+
 				CloudSim.getEntityName(ev.getSource())+"|Dest : "+CloudSim.getEntityName(ev.getDestination()));
-		send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+		acknowledgeTuple(ev.getSource());
 
 		if (getHost().getVm(tuple.getVmId(), tuple.getUserId()) == null) {
 			// TODO throw an exception as specified vm id is not present on specified device
@@ -529,48 +569,79 @@ public class FogDevice extends PowerDatacenter {
 	
 	protected void updateTimingsOnReceipt(Tuple tuple) {
 		Application app = getApplicationMap().get(tuple.getAppId());
-		String srcModule = tuple.getSrcModuleName();
-		String destModule = tuple.getDestModuleName();
-		List<AppLoop> loops = app.getLoops();
-		for(AppLoop loop : loops){
-			if(loop.hasEdge(srcModule, destModule) && loop.isEndModule(destModule)){				
-				Double startTime = TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				if(startTime==null)
-					break;
-				if(!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())){
-					TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
-					TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
-				}
-				double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
-				int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
-				double delay = CloudSim.clock()- TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-				TimeKeeper.getInstance().getEmitTimes().remove(tuple.getActualTupleId());
-				double newAverage = (currentAverage*currentCount + delay)/(currentCount+1);
-				TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
-				TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount+1);
+		for(AppLoop loop : app.getLoopsEndingOn(tuple)){
+			double startTime = tuple.getEmitTime();
+			if(startTime < 0)
 				break;
-			}
+			double delay = CloudSim.clock()- startTime;
+			tuple.setEmitTime(-1);
+			TimeKeeper.getInstance().loopLatencyRecorded(loop, delay);
+			break;
 		}
 	}
 
 	protected void processSensorJoining(SimEvent ev){
-		send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+		if (getTupleAckMode() != TUPLE_ACK_NONE)
+			send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+	}
+
+	/**
+	 * Acknowledges a tuple received from an entity according to the acknowledgement protocol of this device.
+	 * A cumulative acknowledgement carries the number of tuples it covers.
+	 * @param srcId ID of the entity the tuple was received from
+	 */
+	protected void acknowledgeTuple(int srcId) {
+		switch (getTupleAckMode()) {
+		case TUPLE_ACK_NONE:
+			break;
+		case TUPLE_ACK_CUMULATIVE:
+			Integer count = unacknowledgedTupleCount.get(srcId);
+			int received = (count == null) ? 1 : count + 1;
+			if (received >= getTupleAckInterval()) {
+				send(srcId, CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK, received);
+				received = 0;
+			}
+			unacknowledgedTupleCount.put(srcId, received);
+			break;
+		default:
+			send(srcId, CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+			break;
+		}
 	}
 
 	protected void executeTuple(SimEvent ev, int vmId) {
 		Tuple tuple = ((Tuple)ev.getData());
 		tuple.setVmId(vmId);
 		TimeKeeper.getInstance().tupleStartedExecution(tuple);
+		TupleTracer.getInstance().record(TupleTraceRecord.EXECUTION_START, tuple, getId(), 0);
 		final Vm vm = getHost().getVm(vmId, tuple.getUserId());
 		try {
 			getHost().getVmScheduler().allocatePesForVm(vm, new ArrayList<Double>() {{ add(vm.getMips()); }});
-			processCloudletSubmit(ev, false);
+			processTupleSubmit(new TupleCloudlet(tuple));
 			getHost().getVmScheduler().allocatePesForVm(vm, new ArrayList<Double>() {{ add(vm.getMips()); }});
+			updateEnergyConsumption();
 		}catch(Exception d) {
 			//d.printStackTrace();
 		}
 	}
 
+	/**
+	 * Submits the cloudlet wrapping an arrived tuple to the scheduler of its VM.
+	 * Mirrors processCloudletSubmit without an acknowledgement, since the wrapper is created fresh for each execution.
+	 * @param cl cloudlet wrapping the tuple to execute
+	 */
+	protected void processTupleSubmit(TupleCloudlet cl) {
+		updateCloudletProcessing();
+		cl.setResourceParameter(getId(), getCharacteristics().getCostPerSecond(), getCharacteristics().getCostPerBw());
+		Vm vm = getVmAllocationPolicy().getHost(cl.getVmId(), cl.getUserId()).getVm(cl.getVmId(), cl.getUserId());
+		double estimatedFinishTime = vm.getCloudletScheduler().cloudletSubmit(cl, 0.0);
+		if (estimatedFinishTime > 0.0 && !Double.isInfinite(estimatedFinishTime)) {
+			send(getId(), CloudSim.getMinTimeBetweenEvents()+estimatedFinishTime, CloudSimTags.VM_DATACENTER_EVENT);
+		}
+		setCloudletSubmitted(CloudSim.clock());
+		checkCloudletCompletion();
+	}
+
 	protected void processModuleArrival(SimEvent ev){
 		AppModule module = (AppModule)ev.getData();
 
@@ -596,7 +667,7 @@ public class FogDevice extends PowerDatacenter {
 
 		module.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(module).getVmScheduler()
 				.getAllocatedMipsForVm(module));
-		
+		updateEnergyConsumption();
 	}
 
 	private void initializePeriodicTuples(AppModule module) {
@@ -610,11 +681,18 @@ public class FogDevice extends PowerDatacenter {
 
 	protected void processOperatorRelease(SimEvent ev){
 		this.processVmMigrate(ev, false);
+		updateEnergyConsumption();
 	}
 
 	public PowerHost getHost(){
 		return (PowerHost) getHostList().get(0);
 	}
+	public boolean isCloudDatacenter() {
+		return getFogDeviceCharacteristics().isCloudDatacenter();
+	}
+	public FogDeviceCharacteristics getFogDeviceCharacteristics() {
+		return (FogDeviceCharacteristics)getCharacteristics();
+	}
 	public int getParentId() {
 		return parentId;
 	}
@@ -708,6 +786,23 @@ public class FogDevice extends PowerDatacenter {
 		return energyConsumption;
 	}
 
+	/**
+	 * Returns the utilization of the device since its last utilization change.
+	 */
+	public double getUtilization() {
+		return lastUtilization;
+	}
+
+	/**
+	 * Returns the energy consumed up to <b>timeNow</b>, closing the current constant-utilization segment at that time.
+	 * @param timeNow time up to which energy is integrated, not earlier than the last utilization change
+	 * @return energy consumed by the device
+	 */
+	public double getEnergyConsumption(double timeNow) {
+		closeEnergySegment(timeNow);
+		return getEnergyConsumption();
+	}
+
 	public void setEnergyConsumption(double energyConsumption) {
 		this.energyConsumption = energyConsumption;
 	}
@@ -749,4 +844,20 @@ public class FogDevice extends PowerDatacenter {
 	public void setLinkId(int linkId) {
 		this.linkId = linkId;
 	}
+
+	public int getTupleAckMode() {
+		return tupleAckMode;
+	}
+
+	public void setTupleAckMode(int tupleAckMode) {
+		this.tupleAckMode = tupleAckMode;
+	}
+
+	public int getTupleAckInterval() {
+		return tupleAckInterval;
+	}
+
+	public void setTupleAckInterval(int tupleAckInterval) {
+		this.tupleAckInterval = tupleAckInterval;
+	}
 }
\ No newline at end of file
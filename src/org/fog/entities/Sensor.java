@@ -6,9 +6,6 @@
 
 package org.fog.entities;
 
-import java.util.ArrayList;
-
-import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEntity;
@@ -16,13 +13,18 @@ import org.cloudbus.cloudsim.core.SimEvent;
 import org.fog.application.AppEdge;
 import org.fog.application.AppLoop;
 import org.fog.application.Application;
+import org.fog.application.CompiledEdge;
 import org.fog.utils.AppModuleAddress;
 import org.fog.utils.FogEvents;
 import org.fog.utils.FogUtils;
 import org.fog.utils.GeoLocation;
 import org.fog.utils.Logger;
+import org.fog.utils.RandomStreams;
 import org.fog.utils.TimeKeeper;
+import org.fog.utils.TupleTraceRecord;
+import org.fog.utils.TupleTracer;
 import org.fog.utils.distribution.Distribution;
+import org.fog.utils.distribution.TraceDistribution;
 
 public class Sensor extends SimEntity{
 	private static String LOG_TAG = "SENSOR";
@@ -43,6 +45,12 @@ public class Sensor extends SimEntity{
 	private AppModuleAddress destModuleAddr;
 	private EndDevice device;
 	private int endDeviceId;
+	/**
+	 * Compiled application edge carrying the tuples of this sensor, resolved on first transmission
+	 */
+	private CompiledEdge sensorEdge;
+	private int sensorTupleTypeIndex;
+	private TupleTracer.AppSampler traceSampler;
 	
 	public Sensor(String name, int userId, String appId, int gatewayDeviceId, double latency, GeoLocation geoLocation, 
 			Distribution transmitDistribution, int cpuLength, int nwLength, String tupleType, String destModuleName, Application application) {
@@ -77,11 +85,7 @@ public class Sensor extends SimEntity{
 		setLatency(latency);
 		setApplication(application);
 		
-		AppEdge _edge = null;
-		for(AppEdge edge : getApplication().getEdges()){
-			if(edge.getSource().equals(getTupleType()))
-				_edge = edge;
-		}
+		AppEdge _edge = getApplication().getSensorEdge(getTupleType()).getEdge();
 		int cpuLength = (int) _edge.getTupleCpuLength();
 		int nwLength = (int) _edge.getTupleNwLength();
 		
@@ -99,11 +103,7 @@ public class Sensor extends SimEntity{
 		setUserId(userId);
 		setApplication(application);
 		
-		AppEdge _edge = null;
-		for(AppEdge edge : getApplication().getEdges()){
-			if(edge.getSource().equals(getTupleType()))
-				_edge = edge;
-		}
+		AppEdge _edge = getApplication().getSensorEdge(getTupleType()).getEdge();
 		int cpuLength = (int) _edge.getTupleCpuLength();
 		int nwLength = (int) _edge.getTupleNwLength();
 		
@@ -136,25 +136,37 @@ public class Sensor extends SimEntity{
 	public void transmit(){
 		if (getDestModuleAddr() == null) return;
 		
-		AppEdge _edge = null;
-		for(AppEdge edge : getApplication().getEdges()){
-			if(edge.getSource().equals(getTupleType()))
-				_edge = edge;
+		if (sensorEdge == null) {
+			sensorEdge = getApplication().getSensorEdge(getTupleType());
+			sensorTupleTypeIndex = getApplication().getTupleTypeIndex(getTupleType());
+			traceSampler = TupleTracer.getInstance().getSampler(getAppId());
+		}
+		AppEdge _edge = sensorEdge.getEdge();
+		long cpuLength = sensorEdge.getTupleCpuLength();
+		long nwLength = sensorEdge.getTupleNwLength();
+		if (getTransmitDistribution() instanceof TraceDistribution) {
+			// replayed records carry their own sizes
+			TraceDistribution trace = (TraceDistribution) getTransmitDistribution();
+			if (trace.hasCurrentRecord()) {
+				cpuLength = trace.getCurrentCpuLength();
+				nwLength = trace.getCurrentPayloadBytes();
+			}
 		}
-		long cpuLength = (long) _edge.getTupleCpuLength();
-		long nwLength = (long) _edge.getTupleNwLength();
 		
-		Tuple tuple = new Tuple(getAppId(), FogUtils.generateTupleId(), Tuple.UP, cpuLength, 1, nwLength, outputSize, 
-				new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
+		Tuple tuple = TuplePool.getInstance().acquire(getAppId(), FogUtils.generateTupleId(), Tuple.UP, cpuLength, 1, nwLength, outputSize);
 		tuple.setUserId(getUserId());
 		tuple.setTupleType(getTupleType());
 		
 		tuple.setDestModuleName(_edge.getDestination());
 		tuple.setSrcModuleName(getSensorName());
+		Application.setCompiledIndices(tuple, sensorEdge);
+		tuple.setTupleTypeIndex(sensorTupleTypeIndex);
 		Logger.debug(LOG_TAG, getName(), "Sending tuple with tupleId = "+tuple.getCloudletId());
 
-		int actualTupleId = updateTimings(getSensorName(), tuple.getDestModuleName());
+		int actualTupleId = updateTimings(tuple);
 		tuple.setActualTupleId(actualTupleId);
+		TupleTracer.getInstance().sample(tuple, traceSampler);
+		TupleTracer.getInstance().record(TupleTraceRecord.SENSOR_EMIT, tuple, getId(), 0);
 		
 		//TODO Correct these
 		//sendTuple(tuple, getDestModuleAddr().getFogDeviceId(), getDestModuleAddr().getVmId());
@@ -168,34 +180,39 @@ public class Sensor extends SimEntity{
 		send(dstDeviceId, getLatency(), FogEvents.TUPLE_ARRIVAL, tuple);
 	}
 	
-	private int updateTimings(String src, String dest){
+	private int updateTimings(Tuple tuple){
 		Application application = getApplication();
-		for(AppLoop loop : application.getLoops()){
-			if(loop.hasEdge(src, dest)){
-				
-				int tupleId = TimeKeeper.getInstance().getUniqueId();
-				if(!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-					TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-				TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-				TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
-				return tupleId;
-			}
+		for(AppLoop loop : application.getLoopsContaining(tuple)){
+			int tupleId = TimeKeeper.getInstance().getUniqueId();
+			tuple.setEmitTime(CloudSim.clock());
+			return tupleId;
 		}
 		return -1;
 	}
 	
 	@Override
 	public void startEntity() {
-		System.out.println("Starting sensor with ID "+getId());
+		Logger.debug(LOG_TAG, getName(), "Starting sensor with ID "+getId());
+		// each sensor draws its transmission times from its own stream of the run
+		getTransmitDistribution().setRandom(RandomStreams.getInstance().getStream("sensor/"+getName()));
 		//send(gatewayDeviceId, CloudSim.getMinTimeBetweenEvents(), FogEvents.SENSOR_JOINED, geoLocation);
-		send(getId(), getTransmitDistribution().getNextValue(), FogEvents.EMIT_TUPLE);
+		scheduleNextEmission();
+	}
+	
+	/**
+	 * Schedules the next emission, unless the distribution has no more values (e.g. a replayed trace is exhausted).
+	 */
+	private void scheduleNextEmission() {
+		double delay = getTransmitDistribution().getNextValue();
+		if (!Double.isInfinite(delay))
+			send(getId(), delay, FogEvents.EMIT_TUPLE);
 	}
 
 	@Override
 	public void processEvent(SimEvent ev) {
 		switch(ev.getTag()){
 		case CloudSimTags.RESOURCE_CHARACTERISTICS:
-			System.out.println(getName()+" received charac req");
+			Logger.debug(LOG_TAG, getName(), "Received characteristics request");
 			int srcId = ((Integer) ev.getData()).intValue();
 			sendNow(srcId, ev.getTag(), getCharacteristics());
 			break;
@@ -204,7 +221,7 @@ public class Sensor extends SimEntity{
 			break;
 		case FogEvents.EMIT_TUPLE:
 			transmit();
-			send(getId(), getTransmitDistribution().getNextValue(), FogEvents.EMIT_TUPLE);
+			scheduleNextEmission();
 			break;
 		case FogEvents.ENDPOINT_CONNECTION:
 			AppModuleAddress addr = (AppModuleAddress) ev.getData();
@@ -253,6 +270,7 @@ public class Sensor extends SimEntity{
 
 	public void setTupleType(String tupleType) {
 		this.tupleType = tupleType;
+		this.sensorEdge = null;
 	}
 
 	public String getSensorName() {
@@ -317,6 +335,7 @@ public class Sensor extends SimEntity{
 
 	public void setApplication(Application application) {
 		this.application = application;
+		this.sensorEdge = null;
 	}
 
 	public AppModuleAddress getDestModuleAddr() {
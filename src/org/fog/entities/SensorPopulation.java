@@ -0,0 +1,296 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.entities;
+
+import java.util.Arrays;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.fog.application.AppEdge;
+import org.fog.application.Application;
+import org.fog.application.CompiledEdge;
+import org.fog.utils.AppModuleAddress;
+import org.fog.utils.FogEvents;
+import org.fog.utils.FogUtils;
+import org.fog.utils.Logger;
+import org.fog.utils.RandomStreams;
+import org.fog.utils.TimeKeeper;
+import org.fog.utils.TupleTraceRecord;
+import org.fog.utils.TupleTracer;
+import org.fog.utils.distribution.Distribution;
+import org.fog.utils.distribution.MmppDistribution;
+import org.fog.utils.distribution.OnOffDistribution;
+import org.fog.utils.distribution.TraceDistribution;
+
+/**
+ * A single entity standing for many homogeneous sensors of the same application and tuple type, each attached to its
+ * own {@link EndDevice}. Instead of one entity and one pending event per sensor, the population keeps the next emission
+ * time of every member in a primitive binary heap and schedules one event for the earliest emission. Tuples are sent
+ * onto the link of the member's end device, as a {@link Sensor} attached to that device would do.
+ *
+ * Inter-arrival times are i.i.d. draws from the transmit distribution, so each member behaves like an individual
+ * sensor with that distribution. Distributions carrying state between draws (MMPP, on/off, traces) would be shared
+ * by all members and are rejected.
+ *
+ * The population registers with the broker as one sensor: its ID goes in the broker's sensor IDs, and all members
+ * are connected to the module instance the placement assigns to it.
+ */
+public class SensorPopulation extends SimEntity {
+	private static String LOG_TAG = "SENSOR_POPULATION";
+
+	/**
+	 * Number of inter-arrival times generated at once
+	 */
+	private static final int BUFFER_SIZE = 1024;
+
+	private String appId;
+	private int userId;
+	private String tupleType;
+	private Distribution transmitDistribution;
+	private Application application;
+	private SensorCharacteristics characteristics;
+	private AppModuleAddress destModuleAddr;
+	private long outputSize;
+	private CompiledEdge sensorEdge;
+	private int sensorTupleTypeIndex;
+	private TupleTracer.AppSampler traceSampler;
+
+	/**
+	 * End device of each member
+	 */
+	private EndDevice[] devices;
+	private int memberCount;
+
+	/**
+	 * Binary min-heap of the next emission times, heapMembers[i] being the member emitting at heapTimes[i]
+	 */
+	private double[] heapTimes;
+	private int[] heapMembers;
+	private int heapSize;
+	/**
+	 * Emission time the pending EMIT_TUPLE event was scheduled for, -1 if none is pending
+	 */
+	private double scheduledTime;
+
+	private double[] interArrivalBuffer;
+	private int bufferPosition;
+	private long emittedTupleCount;
+
+	public SensorPopulation(String name, String tupleType, int userId, String appId, Distribution transmitDistribution, Application application) {
+		super(name);
+		if (transmitDistribution instanceof MmppDistribution || transmitDistribution instanceof OnOffDistribution
+				|| transmitDistribution instanceof TraceDistribution)
+			throw new IllegalArgumentException("A sensor population needs a distribution of independent inter-arrival times");
+		this.appId = appId;
+		this.userId = userId;
+		this.tupleType = tupleType;
+		this.transmitDistribution = transmitDistribution;
+		this.application = application;
+		this.outputSize = 3;
+		this.devices = new EndDevice[16];
+		this.interArrivalBuffer = new double[BUFFER_SIZE];
+		this.bufferPosition = BUFFER_SIZE;
+		this.scheduledTime = -1;
+
+		AppEdge _edge = application.getSensorEdge(tupleType).getEdge();
+		setCharacteristics(new SensorCharacteristics(getId(), appId, tupleType, transmitDistribution,
+				(int) _edge.getTupleCpuLength(), (int) _edge.getTupleNwLength(), null));
+	}
+
+	/**
+	 * Adds a sensor attached to the given end device.
+	 * @return index of the member in the population
+	 */
+	public int addMember(EndDevice device) {
+		if (memberCount == devices.length)
+			devices = Arrays.copyOf(devices, 2 * devices.length);
+		devices[memberCount] = device;
+		return memberCount++;
+	}
+
+	@Override
+	public void startEntity() {
+		transmitDistribution.setRandom(RandomStreams.getInstance().getStream("population/" + getName()));
+		heapTimes = new double[memberCount];
+		heapMembers = new int[memberCount];
+		heapSize = 0;
+		for (int member = 0; member < memberCount; member++)
+			push(nextInterArrival(), member);
+		scheduleNextEmission();
+	}
+
+	@Override
+	public void processEvent(SimEvent ev) {
+		switch (ev.getTag()) {
+		case CloudSimTags.RESOURCE_CHARACTERISTICS:
+			int srcId = ((Integer) ev.getData()).intValue();
+			sendNow(srcId, ev.getTag(), getCharacteristics());
+			break;
+		case FogEvents.EMIT_TUPLE:
+			processEmissions();
+			break;
+		case FogEvents.ENDPOINT_CONNECTION:
+			setDestModuleAddr((AppModuleAddress) ev.getData());
+			break;
+		}
+	}
+
+	/**
+	 * Emits the tuples of all members due at the scheduled time, then draws their next emission times.
+	 */
+	private void processEmissions() {
+		double time = scheduledTime;
+		scheduledTime = -1;
+		while (heapSize > 0 && heapTimes[0] <= time) {
+			double emissionTime = heapTimes[0];
+			int member = heapMembers[0];
+			transmit(member);
+			// the member keeps its heap slot, only its time moves down
+			heapTimes[0] = emissionTime + nextInterArrival();
+			siftDown(0);
+		}
+		scheduleNextEmission();
+	}
+
+	private void scheduleNextEmission() {
+		if (heapSize == 0 || Double.isInfinite(heapTimes[0]))
+			return;
+		scheduledTime = heapTimes[0];
+		send(getId(), Math.max(0, scheduledTime - CloudSim.clock()), FogEvents.EMIT_TUPLE);
+	}
+
+	private void transmit(int member) {
+		if (destModuleAddr == null)
+			return;
+		if (sensorEdge == null) {
+			sensorEdge = application.getSensorEdge(tupleType);
+			sensorTupleTypeIndex = application.getTupleTypeIndex(tupleType);
+			traceSampler = TupleTracer.getInstance().getSampler(appId);
+		}
+		AppEdge _edge = sensorEdge.getEdge();
+		Tuple tuple = TuplePool.getInstance().acquire(appId, FogUtils.generateTupleId(), Tuple.UP,
+				sensorEdge.getTupleCpuLength(), 1, sensorEdge.getTupleNwLength(), outputSize);
+		tuple.setUserId(userId);
+		tuple.setTupleType(tupleType);
+		tuple.setDestModuleName(_edge.getDestination());
+		tuple.setSrcModuleName(tupleType);
+		Application.setCompiledIndices(tuple, sensorEdge);
+		tuple.setTupleTypeIndex(sensorTupleTypeIndex);
+		Logger.debug(LOG_TAG, getName(), "Sending tuple with tupleId = " + tuple.getCloudletId() + " for member " + member);
+
+		if (application.getLoopsContaining(tuple).length > 0) {
+			tuple.setActualTupleId(TimeKeeper.getInstance().getUniqueId());
+			tuple.setEmitTime(CloudSim.clock());
+		} else {
+			tuple.setActualTupleId(-1);
+		}
+		TupleTracer.getInstance().sample(tuple, traceSampler);
+		TupleTracer.getInstance().record(TupleTraceRecord.SENSOR_EMIT, tuple, devices[member].getId(), 0);
+		emittedTupleCount++;
+		devices[member].sendTuple(tuple, destModuleAddr.getFogDeviceId(), destModuleAddr.getVmId());
+	}
+
+	private double nextInterArrival() {
+		if (bufferPosition == BUFFER_SIZE) {
+			for (int i = 0; i < BUFFER_SIZE; i++)
+				interArrivalBuffer[i] = transmitDistribution.getNextValue();
+			bufferPosition = 0;
+		}
+		return interArrivalBuffer[bufferPosition++];
+	}
+
+	private void push(double time, int member) {
+		int i = heapSize++;
+		heapTimes[i] = time;
+		heapMembers[i] = member;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (heapTimes[parent] <= heapTimes[i])
+				break;
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int left = 2 * i + 1;
+			if (left >= heapSize)
+				return;
+			int smallest = (left + 1 < heapSize && heapTimes[left + 1] < heapTimes[left]) ? left + 1 : left;
+			if (heapTimes[i] <= heapTimes[smallest])
+				return;
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int i, int j) {
+		double time = heapTimes[i];
+		heapTimes[i] = heapTimes[j];
+		heapTimes[j] = time;
+		int member = heapMembers[i];
+		heapMembers[i] = heapMembers[j];
+		heapMembers[j] = member;
+	}
+
+	@Override
+	public void shutdownEntity() {
+
+	}
+
+	public int getMemberCount() {
+		return memberCount;
+	}
+
+	public EndDevice getMemberDevice(int member) {
+		return devices[member];
+	}
+
+	public long getEmittedTupleCount() {
+		return emittedTupleCount;
+	}
+
+	public String getAppId() {
+		return appId;
+	}
+
+	public int getUserId() {
+		return userId;
+	}
+
+	public String getTupleType() {
+		return tupleType;
+	}
+
+	public Distribution getTransmitDistribution() {
+		return transmitDistribution;
+	}
+
+	public Application getApplication() {
+		return application;
+	}
+
+	public SensorCharacteristics getCharacteristics() {
+		return characteristics;
+	}
+
+	public void setCharacteristics(SensorCharacteristics characteristics) {
+		this.characteristics = characteristics;
+	}
+
+	public AppModuleAddress getDestModuleAddr() {
+		return destModuleAddr;
+	}
+
+	public void setDestModuleAddr(AppModuleAddress destModuleAddr) {
+		this.destModuleAddr = destModuleAddr;
+	}
+
+}
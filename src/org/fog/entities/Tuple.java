@@ -9,15 +9,42 @@ package org.fog.entities;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
 
-public class Tuple extends Cloudlet{
+/**
+ * Data unit flowing along the edges of an application.
+ * A tuple only carries the state needed by the fog entities while it is in flight. It is wrapped in a 
+ * {@link TupleCloudlet} only while it executes on a fog device, so that CloudSim schedulers can process it.
+ */
+public class Tuple {
 
 	public static final int UP = 1;
 	public static final int DOWN = 2;
 	public static final int ACTUATOR = 3;
 	
+	/**
+	 * Utilization model shared by all tuples. UtilizationModelFull is stateless, hence can be shared safely.
+	 */
+	public static final UtilizationModel UTILIZATION_MODEL_FULL = new UtilizationModelFull();
+	
+	private int cloudletId;
+	/**
+	 * CPU length of the tuple in Million Instructions
+	 */
+	private long cloudletLength;
+	private int numberOfPes;
+	/**
+	 * Network length of the tuple in bytes
+	 */
+	private long cloudletFileSize;
+	private long cloudletOutputSize;
+	private int userId;
+	private int vmId;
+	private UtilizationModel utilizationModelCpu;
+	private UtilizationModel utilizationModelRam;
+	private UtilizationModel utilizationModelBw;
+	
 	private String appId;
 	
 	private String tupleType;
@@ -29,25 +56,192 @@ public class Tuple extends Cloudlet{
 	private int sourceDeviceId;
 	private int sourceModuleId;
 	private int destinationDeviceId;
+	/**
+	 * Dense ids of the source vertex, destination vertex and tuple type in the compiled application plan.
+	 * Equal to -1 if the tuple was not created from a compiled application.
+	 */
+	private int srcModuleIndex;
+	private int destModuleIndex;
+	private int tupleTypeIndex;
+	/**
+	 * Time at which the tuple (or the tuple it was derived from) started an application loop, -1 if it is not in a loop
+	 */
+	private double emitTime;
+	/**
+	 * Time at which the tuple started executing on a fog device, -1 if it has not
+	 */
+	private double cpuStartTime;
+	/**
+	 * ID of the sampled tuple this tuple derives from, -1 if the tuple is not traced
+	 */
+	private int traceId;
 	/**
 	 * Map to keep track of which module instances has a tuple traversed.
 	 * 
-	 * Map from moduleName to vmId of a module instance
+	 * Map from moduleName to vmId of a module instance. Created on first use.
 	 */
 	private Map<String, Integer> moduleCopyMap;
+	/**
+	 * Number of pending deliveries of this tuple. A pooled tuple is recycled only once all of them have terminated.
+	 */
+	private int references;
+	/**
+	 * True once the tuple has been released to the {@link TuplePool}, until it is acquired again.
+	 */
+	private boolean released;
+	
+	public Tuple(String appId, int cloudletId, int direction, long cloudletLength, int pesNumber,
+			long cloudletFileSize, long cloudletOutputSize) {
+		this(appId, cloudletId, direction, cloudletLength, pesNumber, cloudletFileSize, cloudletOutputSize, 
+				UTILIZATION_MODEL_FULL, UTILIZATION_MODEL_FULL, UTILIZATION_MODEL_FULL);
+	}
 	
 	public Tuple(String appId, int cloudletId, int direction, long cloudletLength, int pesNumber,
 			long cloudletFileSize, long cloudletOutputSize,
 			UtilizationModel utilizationModelCpu,
 			UtilizationModel utilizationModelRam,
 			UtilizationModel utilizationModelBw) {
-		super(cloudletId, cloudletLength, pesNumber, cloudletFileSize,
-				cloudletOutputSize, utilizationModelCpu, utilizationModelRam,
-				utilizationModelBw);
+		reset(appId, cloudletId, direction, cloudletLength, pesNumber, cloudletFileSize, cloudletOutputSize);
+		setUtilizationModelCpu(utilizationModelCpu);
+		setUtilizationModelRam(utilizationModelRam);
+		setUtilizationModelBw(utilizationModelBw);
+	}
+	
+	/**
+	 * Brings the tuple back to the state of a freshly constructed one, so that it can be reused by the {@link TuplePool}.
+	 */
+	void reset(String appId, int cloudletId, int direction, long cloudletLength, int pesNumber,
+			long cloudletFileSize, long cloudletOutputSize) {
+		this.cloudletId = cloudletId;
+		// CPU length, network length and output size should be at least 1, as for a Cloudlet
+		setCloudletLength(Math.max(1, cloudletLength));
+		setNumberOfPes(pesNumber);
+		setCloudletFileSize(Math.max(1, cloudletFileSize));
+		setCloudletOutputSize(Math.max(1, cloudletOutputSize));
+		setUserId(-1);
+		setVmId(-1);
+		setUtilizationModelCpu(UTILIZATION_MODEL_FULL);
+		setUtilizationModelRam(UTILIZATION_MODEL_FULL);
+		setUtilizationModelBw(UTILIZATION_MODEL_FULL);
 		setAppId(appId);
+		setTupleType(null);
+		setDestModuleName(null);
+		setSrcModuleName(null);
+		setActualTupleId(0);
 		setDirection(direction);
+		setActuatorId(0);
 		setSourceDeviceId(-1);
-		setModuleCopyMap(new HashMap<String, Integer>());
+		setSourceModuleId(0);
+		setDestinationDeviceId(0);
+		setSrcModuleIndex(-1);
+		setDestModuleIndex(-1);
+		setTupleTypeIndex(-1);
+		setEmitTime(-1);
+		setCpuStartTime(-1);
+		setTraceId(-1);
+		if (moduleCopyMap != null)
+			moduleCopyMap.clear();
+		references = 1;
+		released = false;
+	}
+
+	/**
+	 * Registers one more pending delivery of this tuple, e.g. when it is sent to several destinations.
+	 */
+	public void retain() {
+		references++;
+	}
+
+	/**
+	 * Terminates one pending delivery of this tuple.
+	 * @return true if no delivery of the tuple is pending anymore
+	 */
+	boolean unreference() {
+		return --references <= 0;
+	}
+
+	public boolean isReleased() {
+		return released;
+	}
+
+	void setReleased(boolean released) {
+		this.released = released;
+	}
+
+	public int getCloudletId() {
+		return cloudletId;
+	}
+
+	public long getCloudletLength() {
+		return cloudletLength;
+	}
+
+	public void setCloudletLength(long cloudletLength) {
+		this.cloudletLength = cloudletLength;
+	}
+
+	public int getNumberOfPes() {
+		return numberOfPes;
+	}
+
+	public void setNumberOfPes(int numberOfPes) {
+		this.numberOfPes = numberOfPes;
+	}
+
+	public long getCloudletFileSize() {
+		return cloudletFileSize;
+	}
+
+	public void setCloudletFileSize(long cloudletFileSize) {
+		this.cloudletFileSize = cloudletFileSize;
+	}
+
+	public long getCloudletOutputSize() {
+		return cloudletOutputSize;
+	}
+
+	public void setCloudletOutputSize(long cloudletOutputSize) {
+		this.cloudletOutputSize = cloudletOutputSize;
+	}
+
+	public int getUserId() {
+		return userId;
+	}
+
+	public void setUserId(int userId) {
+		this.userId = userId;
+	}
+
+	public int getVmId() {
+		return vmId;
+	}
+
+	public void setVmId(int vmId) {
+		this.vmId = vmId;
+	}
+
+	public UtilizationModel getUtilizationModelCpu() {
+		return utilizationModelCpu;
+	}
+
+	public void setUtilizationModelCpu(UtilizationModel utilizationModelCpu) {
+		this.utilizationModelCpu = utilizationModelCpu;
+	}
+
+	public UtilizationModel getUtilizationModelRam() {
+		return utilizationModelRam;
+	}
+
+	public void setUtilizationModelRam(UtilizationModel utilizationModelRam) {
+		this.utilizationModelRam = utilizationModelRam;
+	}
+
+	public UtilizationModel getUtilizationModelBw() {
+		return utilizationModelBw;
+	}
+
+	public void setUtilizationModelBw(UtilizationModel utilizationModelBw) {
+		this.utilizationModelBw = utilizationModelBw;
 	}
 
 	public int getActualTupleId() {
@@ -115,6 +309,8 @@ public class Tuple extends Cloudlet{
 	}
 
 	public Map<String, Integer> getModuleCopyMap() {
+		if (moduleCopyMap == null)
+			moduleCopyMap = new HashMap<String, Integer>();
 		return moduleCopyMap;
 	}
 
@@ -138,4 +334,52 @@ public class Tuple extends Cloudlet{
 		return destinationDeviceId;
 	}
 
+	public int getSrcModuleIndex() {
+		return srcModuleIndex;
+	}
+
+	public void setSrcModuleIndex(int srcModuleIndex) {
+		this.srcModuleIndex = srcModuleIndex;
+	}
+
+	public int getDestModuleIndex() {
+		return destModuleIndex;
+	}
+
+	public void setDestModuleIndex(int destModuleIndex) {
+		this.destModuleIndex = destModuleIndex;
+	}
+
+	public int getTupleTypeIndex() {
+		return tupleTypeIndex;
+	}
+
+	public void setTupleTypeIndex(int tupleTypeIndex) {
+		this.tupleTypeIndex = tupleTypeIndex;
+	}
+
+	public double getEmitTime() {
+		return emitTime;
+	}
+
+	public void setEmitTime(double emitTime) {
+		this.emitTime = emitTime;
+	}
+
+	public double getCpuStartTime() {
+		return cpuStartTime;
+	}
+
+	public void setCpuStartTime(double cpuStartTime) {
+		this.cpuStartTime = cpuStartTime;
+	}
+
+	public int getTraceId() {
+		return traceId;
+	}
+
+	public void setTraceId(int traceId) {
+		this.traceId = traceId;
+	}
+
 }
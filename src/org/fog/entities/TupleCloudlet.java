@@ -0,0 +1,36 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.entities;
+
+import org.cloudbus.cloudsim.Cloudlet;
+
+/**
+ * Adapter presenting a {@link Tuple} as a Cloudlet to the CloudSim schedulers.
+ * Created when a tuple starts executing on a fog device and dropped once its execution has finished,
+ * so that the Cloudlet bookkeeping state only exists for tuples that are actually being executed.
+ */
+public class TupleCloudlet extends Cloudlet {
+
+	/**
+	 * The tuple executed through this cloudlet
+	 */
+	private final Tuple tuple;
+	
+	public TupleCloudlet(Tuple tuple) {
+		super(tuple.getCloudletId(), tuple.getCloudletLength(), tuple.getNumberOfPes(), tuple.getCloudletFileSize(), 
+				tuple.getCloudletOutputSize(), tuple.getUtilizationModelCpu(), tuple.getUtilizationModelRam(), 
+				tuple.getUtilizationModelBw());
+		this.tuple = tuple;
+		setUserId(tuple.getUserId());
+		setVmId(tuple.getVmId());
+	}
+
+	public Tuple getTuple() {
+		return tuple;
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.entities;
+
+import java.util.ArrayDeque;
+
+import org.fog.utils.Config;
+
+/**
+ * Opt-in pool of tuples, enabled by {@link Config#TUPLE_POOLING}.
+ * Tuples are released at their terminal points (end of execution on a fog device, arrival on an actuator) and
+ * handed out again to sensors and applications creating new tuples.
+ *
+ * In debug mode ({@link Config#TUPLE_POOL_DEBUG}) released tuples are never reused, so that any later use of them
+ * is reported by {@link #checkLive(Tuple)} instead of silently reading the state of another tuple.
+ */
+public class TuplePool {
+
+	private static TuplePool instance;
+
+	/**
+	 * Maximum number of free tuples kept in the pool
+	 */
+	private int capacity;
+	private ArrayDeque<Tuple> freeTuples;
+
+	private long allocatedCount;
+	private long reusedCount;
+	private long releasedCount;
+
+	public static TuplePool getInstance(){
+		if(instance == null)
+			instance = new TuplePool();
+		return instance;
+	}
+
+	private TuplePool(){
+		setCapacity(Config.TUPLE_POOL_CAPACITY);
+		freeTuples = new ArrayDeque<Tuple>();
+	}
+
+	/**
+	 * Returns a tuple initialised as by the corresponding Tuple constructor, reusing a released tuple if one is available.
+	 */
+	public Tuple acquire(String appId, int cloudletId, int direction, long cloudletLength, int pesNumber,
+			long cloudletFileSize, long cloudletOutputSize){
+		Tuple tuple = Config.TUPLE_POOLING ? freeTuples.pollLast() : null;
+		if(tuple == null){
+			allocatedCount++;
+			return new Tuple(appId, cloudletId, direction, cloudletLength, pesNumber, cloudletFileSize, cloudletOutputSize);
+		}
+		reusedCount++;
+		tuple.reset(appId, cloudletId, direction, cloudletLength, pesNumber, cloudletFileSize, cloudletOutputSize);
+		return tuple;
+	}
+
+	/**
+	 * Terminates one delivery of the tuple. Once all its deliveries have terminated, the tuple goes back to the pool.
+	 * Does nothing if pooling is disabled.
+	 * @param tuple tuple that reached a terminal point
+	 */
+	public void release(Tuple tuple){
+		if(!Config.TUPLE_POOLING)
+			return;
+		checkLive(tuple);
+		if(!tuple.unreference())
+			return;
+		tuple.setReleased(true);
+		releasedCount++;
+		if(!Config.TUPLE_POOL_DEBUG && freeTuples.size() < getCapacity())
+			freeTuples.addLast(tuple);
+	}
+
+	/**
+	 * Checks, in debug mode, that the tuple has not been released to the pool.
+	 * @param tuple tuple about to be used
+	 * @throws IllegalStateException if the tuple was released
+	 */
+	public void checkLive(Tuple tuple){
+		if(Config.TUPLE_POOL_DEBUG && tuple.isReleased())
+			throw new IllegalStateException("Tuple "+tuple.getCloudletId()+" of type "+tuple.getTupleType()+" used after release");
+	}
+
+	/**
+	 * Drops all pooled tuples and clears the counters.
+	 */
+	public void clear(){
+		freeTuples.clear();
+		allocatedCount = 0;
+		reusedCount = 0;
+		releasedCount = 0;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public int getFreeCount() {
+		return freeTuples.size();
+	}
+
+	public long getAllocatedCount() {
+		return allocatedCount;
+	}
+
+	public long getReusedCount() {
+		return reusedCount;
+	}
+
+	public long getReleasedCount() {
+		return releasedCount;
+	}
+
+}
@@ -31,12 +31,17 @@ import org.fog.entities.Tuple;
 import org.fog.network.EdgeSwitch;
 import org.fog.network.PhysicalTopology;
 import org.fog.network.Switch;
+import org.fog.placement.BatchModulePlacementLatencyAware;
 import org.fog.placement.ModulePlacementPolicy_MohitTaneja;
 import org.fog.policy.AppModuleAllocationPolicy;
 import org.fog.scheduler.AppModuleScheduler;
 import org.fog.utils.FogLinearPowerModel;
 import org.fog.utils.FogUtils;
+import org.fog.utils.GeoHash;
+import org.fog.utils.GeoLocation;
 import org.fog.utils.Logger;
+import org.fog.utils.RandomStreams;
+import org.fog.utils.SpatialIndex;
 import org.fog.utils.TimeKeeper;
 import org.fog.utils.distribution.DeterministicDistribution;
 
@@ -49,6 +54,15 @@ public class Muhamud {
 	static List<Actuator> actuators = new ArrayList<Actuator>();
 	static List<Application> applications = new ArrayList<Application>();
 	
+	//Distance in km within which an end device is local to its switch
+	static final double LOCAL_SWITCH_RADIUS = 1000;
+	
+	//Place the modules of all applications in a single decision, instead of one placement policy per application
+	static final boolean BATCH_PLACEMENT = true;
+	
+	//Stream of the random assignments, drawn from the master seed so that replications are reproducible
+	private static Random assignmentRandom;
+	
 	public static void main(String[] args) {
 		
 		Logger.ENABLED = false;
@@ -64,6 +78,7 @@ public class Muhamud {
 			boolean trace_flag = false; // mean trace events
 			CloudSim.init(num_user, calendar, trace_flag);
 			FogBroker broker = new FogBroker("Broker");
+			assignmentRandom = RandomStreams.getInstance().getStream("muhamud/assignments");
 			
 		//-----------------------Create the Physical Topology Step 3 ----------------------------
 			createPhysicalTopology(broker.getId(), broker);
@@ -104,8 +119,10 @@ public class Muhamud {
 			PhysicalTopology.getInstance().addEndDevice(dev);
 			PhysicalTopology.getInstance().addLink(dev.getId(), swId, enddevicelatency, 1000);
 			
-			broker.submitApplication(application, 0, 
-					new ModulePlacementPolicy_MohitTaneja(fogDevices, sensors, actuators, application));
+			if(!BATCH_PLACEMENT) {
+				broker.submitApplication(application, 0, 
+						new ModulePlacementPolicy_MohitTaneja(fogDevices, sensors, actuators, application));
+			}
 			
 	}
 	
@@ -113,7 +130,7 @@ public class Muhamud {
 		//-----------------------create Physical components-----------------------------------
 			//---------HL
 			FogDevice fd00 = createFogDevice("FD00", true, 102400, 100000, 10000);
-			Switch sw00 = new Switch("SW00",geoHash(90,90,7));
+			Switch sw00 = new Switch("SW00",GeoHash.encode(90,90,7));
 			//---------ML
 			FogDevice fd10 = createFogDevice("FD10", false, 10240, 10000, 1000);
 		    FogDevice fd11 = createFogDevice("FD11", false, 10240, 10000, 1000);
@@ -121,17 +138,17 @@ public class Muhamud {
 			FogDevice fd13 = createFogDevice("FD13", false, 10240, 10000, 1000);
 			FogDevice fd14 = createFogDevice("FD14", false, 10240, 10000, 1000);
 			FogDevice fd15 = createFogDevice("FD15", false, 10240, 10000, 1000);
-			Switch sw10 = new Switch("SW10",geoHash(-30,0,7));
-			Switch sw11 = new Switch("SW11",geoHash(30,0,7));
-			Switch sw14 = new Switch("SW14",geoHash(0,0,7));
+			Switch sw10 = new Switch("SW10",GeoHash.encode(-30,0,7));
+			Switch sw11 = new Switch("SW11",GeoHash.encode(30,0,7));
+			Switch sw14 = new Switch("SW14",GeoHash.encode(0,0,7));
 
 			//---------LL
 			FogDevice fd20 = createFogDevice("FD20", false, 10240, 10000, 1000);
 			FogDevice fd21 = createFogDevice("FD21", false, 10240, 10000, 1000);
 			FogDevice fd22 = createFogDevice("FD22", false, 10240, 10000, 1000);
-			Switch sw20 = new Switch("SW20",geoHash(-30,-30,7));
-			Switch sw21 = new Switch("SW21",geoHash(30,30,7));
-			Switch sw24 = new Switch("SW24",geoHash(45,45,7));
+			Switch sw20 = new Switch("SW20",GeoHash.encode(-30,-30,7));
+			Switch sw21 = new Switch("SW21",GeoHash.encode(30,30,7));
+			Switch sw24 = new Switch("SW24",GeoHash.encode(45,45,7));
 
 			int[] switchids = {sw20.getId(),sw21.getId(),sw24.getId()};
 		
@@ -193,12 +210,17 @@ public class Muhamud {
 			int min = -30;
 			
 			Switch[] Switches= {sw00,sw10,sw14,sw11,sw20,sw21,sw24};
+			SpatialIndex<Switch> switchIndex = new SpatialIndex<Switch>();
+			for(Switch switch1 : Switches){
+				switchIndex.add(GeoHash.decode(switch1.getGeomap()), switch1);
+			}
+			Random random = RandomStreams.getInstance().getStream("muhamud/locations");
 			//int loop = 1;
 			//for(int j=0;j<loop;j++) {
 				for(int i=0;i<count;i++) {
-					int lat = new Random().nextInt(max - min) + min;
-					int lon = new Random().nextInt(max - min) + min;
-					String devgeomap = geoHash(lat, lon, 7);
+					int lat = random.nextInt(max - min) + min;
+					int lon = random.nextInt(max - min) + min;
+					GeoLocation devlocation = new GeoLocation(lat, lon);
 					String appid = "_app".concat(Integer.toString(i));
 					String modulename = "MODULE".concat(Integer.toString(i)) ;
 					String sensorname = "IoT_Sensor".concat(Integer.toString(i));
@@ -217,17 +239,11 @@ public class Muhamud {
 					//}
 
 					
+					//Location based assignment: nearest switch, low latency if it is close to the device
+					Switch switchselected = switchIndex.nearest(devlocation);
 					int enddevicelatency = 50;
-					//Location based assignment
-					int diff = 10;
-					Switch switchselected = sw00;
-					for(Switch switch1 : Switches){
-						int diff1 = devgeomap.compareTo(switch1.getGeomap());
-						if(diff1 < diff) {
-							diff = diff1;
-							switchselected = switch1;
-							enddevicelatency = 1;
-						}
+					if(devlocation.distanceTo(GeoHash.decode(switchselected.getGeomap())) <= LOCAL_SWITCH_RADIUS) {
+						enddevicelatency = 1;
 					}
 					System.out.println("==========================================================================================================");
 					System.out.println(enddevicename +" is on ("+lat+","+lon+")");
@@ -235,6 +251,9 @@ public class Muhamud {
 					System.out.println("==========================================================================================================");
 					createApplicationandEndDeviceandSubmit(appid, userId, modulename, sensorname,actuatorname, switchselected.getId(), broker, enddevicename, enddevicelatency);
 				}
+				if(BATCH_PLACEMENT) {
+					broker.submitApplications(applications, 0, new BatchModulePlacementLatencyAware(Double.POSITIVE_INFINITY));
+				}
 				
 				//-----------------------validation---------------------------------------------------
 				if (PhysicalTopology.getInstance().validateTopology()) {
@@ -258,68 +277,6 @@ public class Muhamud {
 			}
 	//}
 	
-	private static String geoHash(double latitude, double longitude, int precision) {
-		/**
-		Encode a point into a geohash string.
-
-	    Args:
-	        latitude (float): The latitude of the point in degrees.
-	        longitude (float): The longitude of the point in degrees.
-	        precision (int): The desired length of the geohash string.
-
-	    Returns:
-	        str: The geohash string of the point.
-		***/
-		
-		// Define the geohash alphabet
-		int[] _base32 = {'0','1','2','3','4','5','6','7','8','9','b','c','d','e','f','g','h','j','k','m','n','p','q','r','s','t','u','v','w','x','y','z'};
-
-		// Define the ranges of latitude and longitude
-	    double[] lat_range = {-90.0, 90.0};
-	    double[] lon_range = {-180.0, 180.0};
-		
-	    // Initialize variables
-	    String geohash = "";
-	    int bits = 0;
-	    int bits_total = 0;
-	    int mid;
-
-	    while(geohash.length() < precision){
-	    	//Check if we need to encode the longitude or the latitude
-	        if(bits_total % 2 == 0) {
-	            mid = (int) ((lon_range[0] + lon_range[1]) / 2);
-	            if(longitude > mid) {
-	                bits |= 1 << (4 - bits_total % 5);
-	                lon_range[0] = mid;
-	                lon_range[1] = lon_range[1];
-	            }else {
-	            	lon_range[0] = lon_range[0];
-	            	lon_range[1] = mid;
-	            }    
-	        }else {
-	        	mid = (int) ((lat_range[0] + lat_range[1]) / 2);
-	            if(latitude > mid){
-	            	bits |= 1 << (4 - bits_total % 5);
-	            	lat_range[0] = mid;
-	                lat_range[1] = lon_range[1];
-	            }else{
-	            	lat_range[0] = lon_range[0];
-	            	lat_range[1] = mid;       	
-	            }
-	        }
-	        
-	        bits_total += 1;
-	        
-	        // Add a character to the geohash string every 5 bits
-	        if(bits_total % 5 == 0) {
-	            geohash += _base32[bits];
-	            bits = 0;
-	        }
-	    }
-	   
-		return geohash;
-	}
-	
 	private static FogDevice createFogDevice(String nodeName, boolean isCloud, long mips, int ram, int bw) {
 		
 		List<Pe> peList = new ArrayList<Pe>();
@@ -379,7 +336,7 @@ public class Muhamud {
 	}
 	
 	public static int getRandom(int[] array) {
-	    int rnd = new Random().nextInt(array.length);
+	    int rnd = assignmentRandom.nextInt(array.length);
 	    return array[rnd];
 	}
 }
\ No newline at end of file
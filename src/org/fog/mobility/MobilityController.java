@@ -0,0 +1,157 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.mobility;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.fog.entities.EndDevice;
+import org.fog.network.EdgeSwitch;
+import org.fog.network.PhysicalTopology;
+import org.fog.network.Switch;
+import org.fog.utils.Config;
+import org.fog.utils.FogEvents;
+import org.fog.utils.GeoHash;
+import org.fog.utils.GeoLocation;
+import org.fog.utils.Logger;
+import org.fog.utils.RandomStreams;
+import org.fog.utils.SpatialIndex;
+
+/**
+ * Moves mobile end-devices and hands them over between edge switches. At every update interval, a single event moves
+ * all devices to the location given by their mobility model, and a device leaving the zone of its switch, i.e. closer
+ * to another edge switch, is handed over to that switch through {@link PhysicalTopology#handover(EndDevice, Switch)}.
+ *
+ * The zone of an edge switch is located by {@link EdgeSwitch#getGeoLocation()}, or by its geohash when no location
+ * is set. Switches with neither are not zones. The topology must be set up before the simulation starts.
+ */
+public class MobilityController extends SimEntity {
+	private static String LOG_TAG = "MOBILITY";
+
+	/**
+	 * Time between position updates, in ms
+	 */
+	private double updateInterval;
+	/**
+	 * Distance in km by which another switch must be closer than the current one for a handover, to avoid ping-pong
+	 * handovers of devices moving along a zone border
+	 */
+	private double handoverMargin;
+
+	private List<EndDevice> devices;
+	private List<MobilityModel> models;
+
+	private SpatialIndex<Switch> zoneIndex;
+	private Map<Integer, GeoLocation> zoneLocations;
+	private long handoverCount;
+
+	public MobilityController(String name, double updateInterval) {
+		super(name);
+		if (updateInterval <= 0)
+			throw new IllegalArgumentException("Update interval must be positive: " + updateInterval);
+		this.updateInterval = updateInterval;
+		this.devices = new ArrayList<EndDevice>();
+		this.models = new ArrayList<MobilityModel>();
+	}
+
+	/**
+	 * Makes an end-device mobile.
+	 */
+	public void addDevice(EndDevice device, MobilityModel model) {
+		devices.add(device);
+		models.add(model);
+	}
+
+	@Override
+	public void startEntity() {
+		zoneIndex = new SpatialIndex<Switch>();
+		zoneLocations = new HashMap<Integer, GeoLocation>();
+		for (Switch sw : PhysicalTopology.getInstance().getSwitches()) {
+			if (!sw.isEdgeSwitch())
+				continue;
+			GeoLocation location = ((EdgeSwitch) sw).getGeoLocation();
+			if (location == null && GeoHash.isValid(sw.getGeomap()))
+				location = GeoHash.decode(sw.getGeomap());
+			if (location != null) {
+				zoneIndex.add(location, sw);
+				zoneLocations.put(sw.getId(), location);
+			}
+		}
+		for (int i = 0; i < devices.size(); i++) {
+			models.get(i).setRandom(RandomStreams.getInstance().getStream("mobility/" + devices.get(i).getName()));
+			if (devices.get(i).getGeoLocation() == null)
+				devices.get(i).setGeoLocation(new GeoLocation(0, 0));
+		}
+		updateLocations();
+	}
+
+	@Override
+	public void processEvent(SimEvent ev) {
+		switch (ev.getTag()) {
+		case FogEvents.MOBILITY_UPDATE:
+			updateLocations();
+			break;
+		}
+	}
+
+	private void updateLocations() {
+		double time = CloudSim.clock();
+		for (int i = 0; i < devices.size(); i++) {
+			EndDevice device = devices.get(i);
+			GeoLocation location = device.getGeoLocation();
+			models.get(i).updateLocation(time, location);
+			if (zoneIndex.size() == 0)
+				continue;
+			Switch nearest = zoneIndex.nearest(location);
+			if (nearest.getId() != device.getEdgeSwitchId() && isBeyondMargin(location, device.getEdgeSwitchId(), nearest)) {
+				Logger.debug(LOG_TAG, getName(), device.getName() + " at " + location + " moves to zone of " + nearest.getName());
+				PhysicalTopology.getInstance().handover(device, nearest);
+				handoverCount++;
+			}
+		}
+		if (time + updateInterval <= Config.MAX_SIMULATION_TIME)
+			send(getId(), updateInterval, FogEvents.MOBILITY_UPDATE);
+	}
+
+	private boolean isBeyondMargin(GeoLocation location, int currentSwitchId, Switch nearest) {
+		GeoLocation current = zoneLocations.get(currentSwitchId);
+		if (current == null || handoverMargin <= 0)
+			return true;
+		return location.distanceTo(current) - location.distanceTo(zoneLocations.get(nearest.getId())) > handoverMargin;
+	}
+
+	@Override
+	public void shutdownEntity() {
+
+	}
+
+	public double getUpdateInterval() {
+		return updateInterval;
+	}
+
+	public double getHandoverMargin() {
+		return handoverMargin;
+	}
+
+	public void setHandoverMargin(double handoverMargin) {
+		this.handoverMargin = handoverMargin;
+	}
+
+	public long getHandoverCount() {
+		return handoverCount;
+	}
+
+	public List<EndDevice> getDevices() {
+		return devices;
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.mobility;
+
+import java.util.Random;
+
+import org.fog.utils.GeoLocation;
+import org.fog.utils.RandomStream;
+
+/**
+ * Movement of one end-device over simulated time. Models are driven by a {@link MobilityController}, which asks each
+ * of them for the location of its device at every update, with non-decreasing times. Times are in milliseconds of
+ * simulated time, as link latencies, and speeds in metres per second.
+ */
+public abstract class MobilityModel {
+
+	private Random random;
+
+	public MobilityModel() {
+		setRandom(new RandomStream());
+	}
+
+	/**
+	 * Writes the location of the device at the given time into the given location.
+	 * @param time current simulation time, not less than the time of the previous call
+	 * @param location location of the device, updated in place
+	 */
+	public abstract void updateLocation(double time, GeoLocation location);
+
+	/**
+	 * Returns the time taken to cover a distance at a speed.
+	 * @param distance distance in km
+	 * @param speed speed in m/s
+	 * @return time in ms
+	 */
+	protected static double travelTime(double distance, double speed) {
+		return distance * 1e6 / speed;
+	}
+
+	protected static void interpolate(double lat1, double lon1, double lat2, double lon2, double fraction, GeoLocation location) {
+		location.setLatitude(lat1 + (lat2 - lat1) * fraction);
+		location.setLongitude(lon1 + (lon2 - lon1) * fraction);
+	}
+
+	public Random getRandom() {
+		return random;
+	}
+
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.mobility;
+
+import org.fog.utils.GeoCoverage;
+import org.fog.utils.GeoLocation;
+
+/**
+ * Random waypoint model: the device starts at a random point of an area, then repeatedly moves in a straight line to
+ * another random point at a speed drawn uniformly between a minimum and a maximum, and pauses there for a time drawn
+ * uniformly up to a maximum. The minimum speed should be positive, otherwise the average speed decays over time.
+ */
+public class RandomWaypointMobility extends MobilityModel {
+
+	private GeoCoverage area;
+	private double minSpeed;
+	private double maxSpeed;
+	private double maxPauseTime;
+
+	private boolean started;
+	private double fromLat, fromLon;
+	private double toLat, toLon;
+	private double departureTime;
+	private double arrivalTime;
+	private double nextDepartureTime;
+
+	/**
+	 * @param area area the device moves in
+	 * @param minSpeed minimum speed in m/s
+	 * @param maxSpeed maximum speed in m/s
+	 * @param maxPauseTime maximum pause at a waypoint in ms
+	 */
+	public RandomWaypointMobility(GeoCoverage area, double minSpeed, double maxSpeed, double maxPauseTime) {
+		if (minSpeed <= 0 || maxSpeed < minSpeed)
+			throw new IllegalArgumentException("Speeds must satisfy 0 < minSpeed <= maxSpeed");
+		this.area = area;
+		this.minSpeed = minSpeed;
+		this.maxSpeed = maxSpeed;
+		this.maxPauseTime = maxPauseTime;
+	}
+
+	@Override
+	public void updateLocation(double time, GeoLocation location) {
+		if (!started) {
+			toLat = randomLatitude();
+			toLon = randomLongitude();
+			arrivalTime = nextDepartureTime = time;
+			started = true;
+		}
+		while (time > nextDepartureTime) {
+			fromLat = toLat;
+			fromLon = toLon;
+			toLat = randomLatitude();
+			toLon = randomLongitude();
+			double speed = minSpeed + (maxSpeed - minSpeed) * getRandom().nextDouble();
+			double distance = new GeoLocation(fromLat, fromLon).distanceTo(new GeoLocation(toLat, toLon));
+			departureTime = nextDepartureTime;
+			arrivalTime = departureTime + travelTime(distance, speed);
+			nextDepartureTime = arrivalTime + maxPauseTime * getRandom().nextDouble();
+		}
+		if (time >= arrivalTime) {
+			location.setLatitude(toLat);
+			location.setLongitude(toLon);
+		} else {
+			interpolate(fromLat, fromLon, toLat, toLon, (time - departureTime) / (arrivalTime - departureTime), location);
+		}
+	}
+
+	private double randomLatitude() {
+		return area.getLat_l() + (area.getLat_u() - area.getLat_l()) * getRandom().nextDouble();
+	}
+
+	private double randomLongitude() {
+		return area.getLong_l() + (area.getLong_u() - area.getLong_l()) * getRandom().nextDouble();
+	}
+
+	public GeoCoverage getArea() {
+		return area;
+	}
+
+	public double getMinSpeed() {
+		return minSpeed;
+	}
+
+	public double getMaxSpeed() {
+		return maxSpeed;
+	}
+
+	public double getMaxPauseTime() {
+		return maxPauseTime;
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.mobility;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import org.fog.utils.GeoCoverage;
+import org.fog.utils.GeoLocation;
+import org.fog.utils.SpatialIndex;
+
+/**
+ * Road network for {@link RoadGraphMobility}: intersections are nodes located on the Earth, and roads are undirected
+ * edges whose length is the great-circle distance between their ends. Can be shared by all devices moving on it.
+ */
+public class RoadGraph {
+
+	private GeoLocation[] nodes;
+	private int nodeCount;
+	/**
+	 * Neighbours of each node and length in km of the road to each of them
+	 */
+	private int[][] neighbours;
+	private double[][] lengths;
+	private int[] degrees;
+	private SpatialIndex<Integer> nodeIndex;
+
+	public RoadGraph() {
+		nodes = new GeoLocation[16];
+		neighbours = new int[16][];
+		lengths = new double[16][];
+		degrees = new int[16];
+	}
+
+	/**
+	 * Adds an intersection.
+	 * @return index of the node
+	 */
+	public int addNode(GeoLocation location) {
+		if (nodeCount == nodes.length) {
+			nodes = Arrays.copyOf(nodes, 2 * nodeCount);
+			neighbours = Arrays.copyOf(neighbours, 2 * nodeCount);
+			lengths = Arrays.copyOf(lengths, 2 * nodeCount);
+			degrees = Arrays.copyOf(degrees, 2 * nodeCount);
+		}
+		nodes[nodeCount] = location;
+		neighbours[nodeCount] = new int[4];
+		lengths[nodeCount] = new double[4];
+		nodeIndex = null;
+		return nodeCount++;
+	}
+
+	/**
+	 * Adds a road, usable in both directions, between two nodes.
+	 */
+	public void addRoad(int node1, int node2) {
+		double length = nodes[node1].distanceTo(nodes[node2]);
+		addEdge(node1, node2, length);
+		addEdge(node2, node1, length);
+	}
+
+	private void addEdge(int from, int to, double length) {
+		if (degrees[from] == neighbours[from].length) {
+			neighbours[from] = Arrays.copyOf(neighbours[from], 2 * degrees[from]);
+			lengths[from] = Arrays.copyOf(lengths[from], 2 * degrees[from]);
+		}
+		neighbours[from][degrees[from]] = to;
+		lengths[from][degrees[from]] = length;
+		degrees[from]++;
+	}
+
+	/**
+	 * Returns a grid of roads covering an area, as the streets of a city.
+	 * @param rows number of east-west roads, at least 2
+	 * @param columns number of north-south roads, at least 2
+	 */
+	public static RoadGraph grid(GeoCoverage area, int rows, int columns) {
+		RoadGraph graph = new RoadGraph();
+		for (int r = 0; r < rows; r++) {
+			double lat = area.getLat_l() + (area.getLat_u() - area.getLat_l()) * r / (rows - 1);
+			for (int c = 0; c < columns; c++) {
+				double lon = area.getLong_l() + (area.getLong_u() - area.getLong_l()) * c / (columns - 1);
+				int node = graph.addNode(new GeoLocation(lat, lon));
+				if (c > 0)
+					graph.addRoad(node - 1, node);
+				if (r > 0)
+					graph.addRoad(node - columns, node);
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * Returns the nodes of a shortest path between two nodes, both included, or null if they are not connected.
+	 */
+	public int[] shortestPath(int source, int target) {
+		final double[] distances = new double[nodeCount];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		int[] previous = new int[nodeCount];
+		Arrays.fill(previous, -1);
+		boolean[] settled = new boolean[nodeCount];
+		// entries are added again when their distance decreases, stale entries are skipped when polled
+		PriorityQueue<double[]> queue = new PriorityQueue<double[]>(16, new Comparator<double[]>() {
+			@Override
+			public int compare(double[] e1, double[] e2) {
+				return Double.compare(e1[0], e2[0]);
+			}
+		});
+		distances[source] = 0;
+		queue.add(new double[]{0, source});
+		while (!queue.isEmpty()) {
+			int node = (int) queue.poll()[1];
+			if (settled[node])
+				continue;
+			settled[node] = true;
+			if (node == target)
+				break;
+			for (int i = 0; i < degrees[node]; i++) {
+				int next = neighbours[node][i];
+				double distance = distances[node] + lengths[node][i];
+				if (distance < distances[next]) {
+					distances[next] = distance;
+					previous[next] = node;
+					queue.add(new double[]{distance, next});
+				}
+			}
+		}
+		if (!settled[target])
+			return null;
+		int length = 1;
+		for (int node = target; node != source; node = previous[node])
+			length++;
+		int[] path = new int[length];
+		for (int node = target, i = length - 1; i >= 0; node = previous[node], i--)
+			path[i] = node;
+		return path;
+	}
+
+	/**
+	 * Returns the node nearest to a location.
+	 */
+	public int nearestNode(GeoLocation location) {
+		if (nodeIndex == null) {
+			nodeIndex = new SpatialIndex<Integer>();
+			for (int i = 0; i < nodeCount; i++)
+				nodeIndex.add(nodes[i], i);
+		}
+		return nodeIndex.nearest(location);
+	}
+
+	/**
+	 * Returns the length in km of the road between two adjacent nodes.
+	 */
+	public double getRoadLength(int from, int to) {
+		for (int i = 0; i < degrees[from]; i++)
+			if (neighbours[from][i] == to)
+				return lengths[from][i];
+		throw new IllegalArgumentException("No road between nodes " + from + " and " + to);
+	}
+
+	public GeoLocation getNode(int node) {
+		return nodes[node];
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+}
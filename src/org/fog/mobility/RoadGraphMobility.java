@@ -0,0 +1,115 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.mobility;
+
+import org.fog.utils.GeoLocation;
+
+/**
+ * Road-constrained random trips, as vehicles in a city: the device repeatedly drives along a shortest path of a
+ * {@link RoadGraph} to a node drawn at random, at a speed drawn uniformly between a minimum and a maximum for each
+ * trip, and pauses at the destination for a time drawn uniformly up to a maximum.
+ */
+public class RoadGraphMobility extends MobilityModel {
+
+	/**
+	 * Time waited before drawing another destination when the last one was unreachable, in ms
+	 */
+	private static final double UNREACHABLE_RETRY_TIME = 1000;
+
+	private RoadGraph roadGraph;
+	private double minSpeed;
+	private double maxSpeed;
+	private double maxPauseTime;
+
+	private int currentNode;
+	/**
+	 * Nodes of the current trip, null while pausing
+	 */
+	private int[] path;
+	private int leg;
+	private double speed;
+	private double legStartTime;
+	private double legEndTime;
+	private double nextDepartureTime;
+
+	/**
+	 * @param roadGraph roads the device moves on
+	 * @param startNode node the device starts from
+	 * @param minSpeed minimum speed in m/s
+	 * @param maxSpeed maximum speed in m/s
+	 * @param maxPauseTime maximum pause at a destination in ms
+	 */
+	public RoadGraphMobility(RoadGraph roadGraph, int startNode, double minSpeed, double maxSpeed, double maxPauseTime) {
+		if (minSpeed <= 0 || maxSpeed < minSpeed)
+			throw new IllegalArgumentException("Speeds must satisfy 0 < minSpeed <= maxSpeed");
+		this.roadGraph = roadGraph;
+		this.currentNode = startNode;
+		this.minSpeed = minSpeed;
+		this.maxSpeed = maxSpeed;
+		this.maxPauseTime = maxPauseTime;
+	}
+
+	@Override
+	public void updateLocation(double time, GeoLocation location) {
+		while (true) {
+			if (path == null) {
+				if (time <= nextDepartureTime || roadGraph.getNodeCount() < 2) {
+					GeoLocation node = roadGraph.getNode(currentNode);
+					location.setLatitude(node.getLatitude());
+					location.setLongitude(node.getLongitude());
+					return;
+				}
+				startTrip();
+				continue;
+			}
+			if (time < legEndTime) {
+				GeoLocation from = roadGraph.getNode(path[leg]);
+				GeoLocation to = roadGraph.getNode(path[leg + 1]);
+				interpolate(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude(),
+						(time - legStartTime) / (legEndTime - legStartTime), location);
+				return;
+			}
+			leg++;
+			if (leg == path.length - 1) {
+				// arrived, pause before the next trip
+				currentNode = path[leg];
+				path = null;
+				nextDepartureTime = legEndTime + maxPauseTime * getRandom().nextDouble();
+			} else {
+				startLeg(legEndTime);
+			}
+		}
+	}
+
+	private void startTrip() {
+		int destination = getRandom().nextInt(roadGraph.getNodeCount() - 1);
+		if (destination >= currentNode)
+			destination++;
+		path = roadGraph.shortestPath(currentNode, destination);
+		if (path == null) {
+			nextDepartureTime += UNREACHABLE_RETRY_TIME;
+			return;
+		}
+		speed = minSpeed + (maxSpeed - minSpeed) * getRandom().nextDouble();
+		leg = 0;
+		startLeg(nextDepartureTime);
+	}
+
+	private void startLeg(double startTime) {
+		legStartTime = startTime;
+		legEndTime = startTime + travelTime(roadGraph.getRoadLength(path[leg], path[leg + 1]), speed);
+	}
+
+	public RoadGraph getRoadGraph() {
+		return roadGraph;
+	}
+
+	public int getCurrentNode() {
+		return currentNode;
+	}
+
+}
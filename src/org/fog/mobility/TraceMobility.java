@@ -0,0 +1,143 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.mobility;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.util.WorkloadFileReader;
+import org.fog.utils.GeoLocation;
+
+/**
+ * Trace-driven model replaying recorded positions of a device, with linear interpolation between consecutive records.
+ * The device stays at its first position before the first record and at its last position after the last one.
+ */
+public class TraceMobility extends MobilityModel {
+
+	private final double[] times;
+	private final double[] latitudes;
+	private final double[] longitudes;
+	/**
+	 * Index of the last record not after the time of the previous update
+	 */
+	private int cursor;
+
+	/**
+	 * @param times record times in ms, in non-decreasing order
+	 * @param latitudes latitudes of the records
+	 * @param longitudes longitudes of the records
+	 */
+	public TraceMobility(double[] times, double[] latitudes, double[] longitudes) {
+		if (times.length == 0 || times.length != latitudes.length || times.length != longitudes.length)
+			throw new IllegalArgumentException("A mobility trace needs the same, non-zero number of times and positions");
+		for (int i = 1; i < times.length; i++)
+			if (times[i] < times[i - 1])
+				throw new IllegalArgumentException("Mobility trace records must be sorted by time");
+		this.times = times;
+		this.latitudes = latitudes;
+		this.longitudes = longitudes;
+	}
+
+	@Override
+	public void updateLocation(double time, GeoLocation location) {
+		while (cursor + 1 < times.length && times[cursor + 1] <= time)
+			cursor++;
+		if (time <= times[cursor] || cursor + 1 == times.length) {
+			location.setLatitude(latitudes[cursor]);
+			location.setLongitude(longitudes[cursor]);
+		} else {
+			double fraction = (time - times[cursor]) / (times[cursor + 1] - times[cursor]);
+			interpolate(latitudes[cursor], longitudes[cursor], latitudes[cursor + 1], longitudes[cursor + 1], fraction, location);
+		}
+	}
+
+	/**
+	 * Reads the traces of several devices from a CSV file. Each line holds a time in ms, a device name, a latitude and a
+	 * longitude, separated by commas. Empty lines, lines starting with '#' and a header line are skipped. Records of a
+	 * device need not be sorted. The file may be plain, gzipped or zipped.
+	 * @return trace of each device, by device name
+	 * @throws IOException if the file cannot be read or a line is malformed
+	 */
+	public static Map<String, TraceMobility> load(String fileName) throws IOException {
+		Map<String, double[][]> records = new LinkedHashMap<String, double[][]>();
+		Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+		BufferedReader reader = WorkloadFileReader.openReader(new File(fileName));
+		try {
+			String line;
+			int lineNum = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNum++;
+				String trimmed = line.trim();
+				if (trimmed.length() == 0 || trimmed.startsWith("#"))
+					continue;
+				String[] fields = trimmed.split("\\s*,\\s*");
+				if (fields.length < 4)
+					throw new IOException("Line " + lineNum + ": expected time, device, latitude and longitude");
+				double time;
+				try {
+					time = Double.parseDouble(fields[0]);
+				} catch (NumberFormatException e) {
+					if (lineNum == 1)
+						continue; // header
+					throw new IOException("Line " + lineNum + ": invalid time " + fields[0]);
+				}
+				double[][] deviceRecords = records.get(fields[1]);
+				int count = (deviceRecords == null) ? 0 : counts.get(fields[1]);
+				if (deviceRecords == null || count == deviceRecords[0].length) {
+					int capacity = (deviceRecords == null) ? 16 : 2 * count;
+					double[][] grown = new double[3][];
+					for (int i = 0; i < 3; i++)
+						grown[i] = (deviceRecords == null) ? new double[capacity] : Arrays.copyOf(deviceRecords[i], capacity);
+					deviceRecords = grown;
+					records.put(fields[1], deviceRecords);
+				}
+				deviceRecords[0][count] = time;
+				deviceRecords[1][count] = Double.parseDouble(fields[2]);
+				deviceRecords[2][count] = Double.parseDouble(fields[3]);
+				counts.put(fields[1], count + 1);
+			}
+		} finally {
+			reader.close();
+		}
+		Map<String, TraceMobility> traces = new LinkedHashMap<String, TraceMobility>();
+		for (Map.Entry<String, double[][]> entry : records.entrySet()) {
+			double[][] deviceRecords = sortByTime(entry.getValue(), counts.get(entry.getKey()));
+			traces.put(entry.getKey(), new TraceMobility(deviceRecords[0], deviceRecords[1], deviceRecords[2]));
+		}
+		return traces;
+	}
+
+	/**
+	 * Returns the first count records sorted by time, keeping the order of records with equal times.
+	 */
+	private static double[][] sortByTime(final double[][] records, int count) {
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(records[0][i1], records[0][i2]);
+			}
+		});
+		double[][] sorted = new double[3][count];
+		for (int i = 0; i < count; i++)
+			for (int j = 0; j < 3; j++)
+				sorted[j][i] = records[j][order[i]];
+		return sorted;
+	}
+
+	public int getRecordCount() {
+		return times.length;
+	}
+
+}
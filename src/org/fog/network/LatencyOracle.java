@@ -0,0 +1,322 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Fog Simulation) Toolkit for Modeling and Simulation of Fog Computing
+ */
+package org.fog.network;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.fog.entities.Actuator;
+import org.fog.entities.Sensor;
+import org.fog.utils.Config;
+
+/**
+ * Answers latency and bandwidth queries between entities of the physical topology, for placement and offloading
+ * decisions. Fog devices and end-devices hang off a switch through their access link, so a route between two entities
+ * is made of the two access links and of a path between their switches. Paths between switches are the paths of lowest
+ * latency, found by a Dijkstra search from the source switch over switch-to-switch links. Each search yields the paths
+ * to all switches at once and is kept as a row of the oracle.
+ *
+ * Rows of switches end-devices attach to are computed when the oracle is built and kept, since sensors are the source
+ * of most queries; rows of other switches are computed on first use and kept in a least-recently-used cache of
+ * {@link Config#LATENCY_ORACLE_CACHE_ROWS} rows. Once rows are computed, a query costs a few map lookups.
+ *
+ * Queries may run concurrently.
+ *
+ * Switches forward tuples on the paths of fewest hops. On topologies where the path of lowest latency between two
+ * switches also has the fewest hops, as trees, the oracle predicts the route tuples actually take.
+ */
+public class LatencyOracle {
+
+	private Map<Integer, Integer> switchIndex;
+	private int[] switchIds;
+	/**
+	 * Switch-to-switch links of each switch, by switch index
+	 */
+	private int[][] neighbours;
+	private Link[][] neighbourLinks;
+
+	/**
+	 * Rows of switches end-devices are attached to
+	 */
+	private Map<Integer, Row> edgeRows;
+	/**
+	 * Rows of other switches, in access order
+	 */
+	private LinkedHashMap<Integer, Row> cachedRows;
+
+	private Map<Integer, Link> accessLinks;
+
+	private long rowComputations;
+
+	/**
+	 * Lowest-latency paths from one switch to every switch, by switch index
+	 */
+	private static class Row {
+		final double[] latency;
+		/**
+		 * Sum over the links of the path of the inverse of their bandwidth, giving the transmission time of a tuple
+		 */
+		final double[] inverseBandwidth;
+		final double[] bottleneckBandwidth;
+		final int[] hops;
+
+		Row(int size) {
+			latency = new double[size];
+			inverseBandwidth = new double[size];
+			bottleneckBandwidth = new double[size];
+			hops = new int[size];
+		}
+	}
+
+	LatencyOracle(PhysicalTopology topology) {
+		switchIndex = new HashMap<Integer, Integer>();
+		switchIds = new int[topology.getSwitches().size()];
+		for (Switch sw : topology.getSwitches()) {
+			switchIds[switchIndex.size()] = sw.getId();
+			switchIndex.put(sw.getId(), switchIndex.size());
+		}
+		int[] degrees = new int[switchIds.length];
+		accessLinks = new HashMap<Integer, Link>();
+		for (Link l : topology.getLinks()) {
+			Integer north = switchIndex.get(l.getEndpointNorth());
+			Integer south = switchIndex.get(l.getEndpointSouth());
+			if (north != null && south != null) {
+				degrees[north]++;
+				degrees[south]++;
+			} else if (north != null) {
+				accessLinks.put(l.getEndpointSouth(), l);
+			} else if (south != null) {
+				accessLinks.put(l.getEndpointNorth(), l);
+			}
+		}
+		neighbours = new int[switchIds.length][];
+		neighbourLinks = new Link[switchIds.length][];
+		for (int i = 0; i < switchIds.length; i++) {
+			neighbours[i] = new int[degrees[i]];
+			neighbourLinks[i] = new Link[degrees[i]];
+			degrees[i] = 0;
+		}
+		for (Link l : topology.getLinks()) {
+			Integer north = switchIndex.get(l.getEndpointNorth());
+			Integer south = switchIndex.get(l.getEndpointSouth());
+			if (north != null && south != null) {
+				neighbours[north][degrees[north]] = south;
+				neighbourLinks[north][degrees[north]++] = l;
+				neighbours[south][degrees[south]] = north;
+				neighbourLinks[south][degrees[south]++] = l;
+			}
+		}
+
+		cachedRows = new LinkedHashMap<Integer, Row>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Row> eldest) {
+				return size() > Config.LATENCY_ORACLE_CACHE_ROWS;
+			}
+		};
+		edgeRows = new HashMap<Integer, Row>();
+		for (Switch sw : topology.getSwitches()) {
+			if (sw.isEdgeSwitch() || !sw.getAdjacentEndDevices().isEmpty()) {
+				int index = switchIndex.get(sw.getId());
+				edgeRows.put(index, computeRow(index));
+			}
+		}
+	}
+
+	/**
+	 * Returns the latency of the route between two entities, the sum of the latencies of its links.
+	 * @param sourceId ID of a switch, fog device, end-device, sensor or actuator
+	 * @param destinationId ID of a switch, fog device, end-device, sensor or actuator
+	 * @return latency in ms, infinity if there is no route
+	 */
+	public double getLatency(int sourceId, int destinationId) {
+		return getDelay(sourceId, destinationId, 0);
+	}
+
+	/**
+	 * Returns the delay of a tuple sent between two entities: the latency of the route plus the time to transmit the
+	 * tuple on each of its links, without queueing.
+	 * @param bytes size of the tuple
+	 * @return delay in ms, infinity if there is no route
+	 */
+	public double getDelay(int sourceId, int destinationId, double bytes) {
+		if (sourceId == destinationId)
+			return 0;
+		int sourceSwitch = getSwitchIndex(sourceId);
+		int destinationSwitch = getSwitchIndex(destinationId);
+		if (sourceSwitch < 0 || destinationSwitch < 0)
+			return Double.POSITIVE_INFINITY;
+		double bits = bytes * 8;
+		double delay = 0;
+		Link sourceLink = getAccessLink(sourceId);
+		if (sourceLink != null)
+			delay += sourceLink.getLatency() + transmissionTime(bits, sourceLink.getBandwidth());
+		Link destinationLink = getAccessLink(destinationId);
+		if (destinationLink != null)
+			delay += destinationLink.getLatency() + transmissionTime(bits, destinationLink.getBandwidth());
+		if (sourceSwitch != destinationSwitch) {
+			Row row = getRow(sourceSwitch);
+			delay += row.latency[destinationSwitch] + 1000 * bits * row.inverseBandwidth[destinationSwitch] / (1024 * 1024);
+		}
+		return delay;
+	}
+
+	/**
+	 * Returns the lowest bandwidth of the links of the route between two entities.
+	 * @return bandwidth in Mbps, 0 if there is no route, infinity if source and destination are the same
+	 */
+	public double getBottleneckBandwidth(int sourceId, int destinationId) {
+		if (sourceId == destinationId)
+			return Double.POSITIVE_INFINITY;
+		int sourceSwitch = getSwitchIndex(sourceId);
+		int destinationSwitch = getSwitchIndex(destinationId);
+		if (sourceSwitch < 0 || destinationSwitch < 0)
+			return 0;
+		double bandwidth = Double.POSITIVE_INFINITY;
+		Link sourceLink = getAccessLink(sourceId);
+		if (sourceLink != null)
+			bandwidth = Math.min(bandwidth, sourceLink.getBandwidth());
+		Link destinationLink = getAccessLink(destinationId);
+		if (destinationLink != null)
+			bandwidth = Math.min(bandwidth, destinationLink.getBandwidth());
+		if (sourceSwitch != destinationSwitch)
+			bandwidth = Math.min(bandwidth, getRow(sourceSwitch).bottleneckBandwidth[destinationSwitch]);
+		return bandwidth;
+	}
+
+	/**
+	 * Returns the number of links of the route between two entities, -1 if there is no route.
+	 */
+	public int getHopCount(int sourceId, int destinationId) {
+		if (sourceId == destinationId)
+			return 0;
+		int sourceSwitch = getSwitchIndex(sourceId);
+		int destinationSwitch = getSwitchIndex(destinationId);
+		if (sourceSwitch < 0 || destinationSwitch < 0)
+			return -1;
+		int hops = (getAccessLink(sourceId) != null ? 1 : 0) + (getAccessLink(destinationId) != null ? 1 : 0);
+		if (sourceSwitch == destinationSwitch)
+			return hops;
+		int pathHops = getRow(sourceSwitch).hops[destinationSwitch];
+		return (pathHops < 0) ? -1 : hops + pathHops;
+	}
+
+	/**
+	 * Returns the ID of the switch an entity hangs off, the entity itself if it is a switch, -1 if unknown.
+	 */
+	public int getAttachmentSwitch(int entityId) {
+		int index = getSwitchIndex(entityId);
+		return (index < 0) ? -1 : switchIds[index];
+	}
+
+	/**
+	 * Returns the number of rows computed so far, including rows evicted from the cache and computed again.
+	 */
+	public long getRowComputations() {
+		return rowComputations;
+	}
+
+	private static double transmissionTime(double bits, double bandwidth) {
+		return 1000 * bits / (bandwidth * 1024 * 1024);
+	}
+
+	/**
+	 * Returns the access link of an entity, null for a switch. Sensors and actuators use the link of their end-device.
+	 */
+	private Link getAccessLink(int entityId) {
+		if (switchIndex.containsKey(entityId))
+			return null;
+		Link link = accessLinks.get(entityId);
+		if (link != null)
+			return link;
+		SimEntity entity = CloudSim.getEntity(entityId);
+		if (entity instanceof Sensor && ((Sensor) entity).getDevice() != null)
+			return accessLinks.get(((Sensor) entity).getDevice().getId());
+		if (entity instanceof Actuator)
+			return accessLinks.get(((Actuator) entity).getEndDeviceId());
+		return null;
+	}
+
+	/**
+	 * Returns the index of the switch an entity hangs off, -1 if unknown. An access link has a single switch endpoint,
+	 * which moves on handover.
+	 */
+	private int getSwitchIndex(int entityId) {
+		Integer index = switchIndex.get(entityId);
+		if (index != null)
+			return index;
+		Link link = getAccessLink(entityId);
+		if (link == null)
+			return -1;
+		index = switchIndex.get(link.getEndpointNorth());
+		if (index == null)
+			index = switchIndex.get(link.getEndpointSouth());
+		return (index == null) ? -1 : index;
+	}
+
+	private Row getRow(int switchIndex) {
+		Row row = edgeRows.get(switchIndex);
+		if (row != null)
+			return row;
+		// the cache is shared by placement policies computing in parallel
+		synchronized (cachedRows) {
+			row = cachedRows.get(switchIndex);
+			if (row == null) {
+				row = computeRow(switchIndex);
+				cachedRows.put(switchIndex, row);
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Dijkstra search from a switch over switch-to-switch links.
+	 */
+	private Row computeRow(int source) {
+		rowComputations++;
+		int n = switchIds.length;
+		Row row = new Row(n);
+		Arrays.fill(row.latency, Double.POSITIVE_INFINITY);
+		Arrays.fill(row.hops, -1);
+		boolean[] settled = new boolean[n];
+		row.latency[source] = 0;
+		row.bottleneckBandwidth[source] = Double.POSITIVE_INFINITY;
+		row.hops[source] = 0;
+		// entries are added again when their latency decreases, stale entries are skipped when polled
+		PriorityQueue<double[]> queue = new PriorityQueue<double[]>(16, new Comparator<double[]>() {
+			@Override
+			public int compare(double[] e1, double[] e2) {
+				return Double.compare(e1[0], e2[0]);
+			}
+		});
+		queue.add(new double[]{0, source});
+		while (!queue.isEmpty()) {
+			int node = (int) queue.poll()[1];
+			if (settled[node])
+				continue;
+			settled[node] = true;
+			for (int i = 0; i < neighbours[node].length; i++) {
+				int next = neighbours[node][i];
+				Link link = neighbourLinks[node][i];
+				double latency = row.latency[node] + link.getLatency();
+				if (latency < row.latency[next]) {
+					row.latency[next] = latency;
+					row.inverseBandwidth[next] = row.inverseBandwidth[node] + 1 / link.getBandwidth();
+					row.bottleneckBandwidth[next] = Math.min(row.bottleneckBandwidth[node], link.getBandwidth());
+					row.hops[next] = row.hops[node] + 1;
+					queue.add(new double[]{latency, next});
+				}
+			}
+		}
+		return row;
+	}
+
+}
@@ -4,14 +4,19 @@
  */
 package org.fog.network;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.fog.entities.Tuple;
+import org.fog.entities.TuplePool;
 import org.fog.utils.FogEvents;
 import org.fog.utils.Logger;
+import org.fog.utils.TupleTraceRecord;
+import org.fog.utils.TupleTracer;
 
 /**
  * Point-to-point network link connecting two entities.
@@ -60,6 +65,25 @@ public class Link extends SimEntity {
 	 * ID of entity on the South end.
 	 */
 	private int endpointSouth;
+	/**
+	 * Entities the North and South ends were attached to before handovers. Tuples they send after a handover, e.g.
+	 * tuples that were in flight towards them, are still carried over the link, however many handovers happen in
+	 * between. An entity is forgotten when the end is attached to it again, so these lists are bounded by the number
+	 * of entities the end was ever attached to.
+	 */
+	private List<Integer> formerEndpointsNorth = new ArrayList<Integer>();
+	private List<Integer> formerEndpointsSouth = new ArrayList<Integer>();
+	/**
+	 * Number of tuples received from entities never attached to the link, which are dropped
+	 */
+	private long droppedTupleCount;
+	/**
+	 * Number of tuples and total transmission time in each direction, for link utilization
+	 */
+	private long northTupleCount;
+	private double northBusyTime;
+	private long southTupleCount;
+	private double southBusyTime;
 	
 	public Link(String name, double latency, double bandwidth, int endpointNorth, int endpointSouth) {
 		super(name);
@@ -109,10 +133,43 @@ public class Link extends SimEntity {
 	 */
 	private void processTupleArrival(SimEvent ev) {
 		Tuple tuple = (Tuple) ev.getData();
-		if (ev.getSource() == endpointNorth)  // checks if tuple was received from the North endpoint
+		TuplePool.getInstance().checkLive(tuple);
+		TupleTracer.getInstance().record(TupleTraceRecord.LINK_ARRIVAL, tuple, getId(), 0);
+		if (ev.getSource() == endpointNorth || isFormerEndpoint(formerEndpointsNorth, ev.getSource()))  // checks if tuple was received from the North endpoint
 			sendSouth(tuple);  
-		else if (ev.getSource() == endpointSouth)  // checks if tuple was received from the South endpoint
+		else if (ev.getSource() == endpointSouth || isFormerEndpoint(formerEndpointsSouth, ev.getSource()))  // checks if tuple was received from the South endpoint
 			sendNorth(tuple);
+		else {
+			Logger.debug(LOG_TAG, getName(), "Dropping tuple from unknown endpoint "+ev.getSource());
+			droppedTupleCount++;
+			TuplePool.getInstance().release(tuple);
+		}
+	}
+	
+	private static boolean isFormerEndpoint(List<Integer> formerEndpoints, int entityId) {
+		for (int i = 0; i < formerEndpoints.size(); i++) {
+			if (formerEndpoints.get(i) == entityId)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Attaches one end of the link to another entity, as on handover of an end-device to another switch.
+	 * Tuples already queued are sent to the new endpoint.
+	 * @param oldEndpoint ID of entity currently attached
+	 * @param newEndpoint ID of entity to attach instead
+	 */
+	public void moveEndpoint(int oldEndpoint, int newEndpoint) {
+		if (getEndpointNorth() == oldEndpoint) {
+			formerEndpointsNorth.add(oldEndpoint);
+			formerEndpointsNorth.remove((Integer) newEndpoint);
+			setEndpointNorth(newEndpoint);
+		} else if (getEndpointSouth() == oldEndpoint) {
+			formerEndpointsSouth.add(oldEndpoint);
+			formerEndpointsSouth.remove((Integer) newEndpoint);
+			setEndpointSouth(newEndpoint);
+		}
 	}
 	
 	/**
@@ -138,6 +195,9 @@ public class Link extends SimEntity {
 		double transmissionDelay = 1000*(sizeInBits/bwInBitsPerSecond);
 		Logger.debug(LOG_TAG, "SizeInBits = "+sizeInBits);
 		Logger.debug(LOG_TAG, "Transmission delay = "+transmissionDelay );
+		TupleTracer.getInstance().record(TupleTraceRecord.LINK_TRANSMIT_SOUTH, tuple, getId(), transmissionDelay);
+		southTupleCount++;
+		southBusyTime += transmissionDelay;
 		setSouthLinkBusy(true); // South link has begun sending this tuple. Marking it as busy so next tuples are queued until this is sent. 
 		send(getId(), transmissionDelay , FogEvents.UPDATE_SOUTH_TUPLE_QUEUE);	// update South link once transmission is complete
 		send(endpointSouth, transmissionDelay  + getLatency(), FogEvents.TUPLE_ARRIVAL, tuple);	// Sent tuple arrives at other end of link after given delay
@@ -180,6 +240,9 @@ public class Link extends SimEntity {
 		double bwInBitsPerSecond = getBandwidth() * 1024 * 1024;
 		double networkDelay = 1000*(sizeInBits/bwInBitsPerSecond);
 		Logger.debug(LOG_TAG, "Transm	ission delay = "+networkDelay);
+		TupleTracer.getInstance().record(TupleTraceRecord.LINK_TRANSMIT_NORTH, tuple, getId(), networkDelay);
+		northTupleCount++;
+		northBusyTime += networkDelay;
 		setNorthLinkBusy(true);  // North link has begun sending this tuple. Marking it as busy so next tuples are queued until this is sent.
 		send(getId(), networkDelay, FogEvents.UPDATE_NORTH_TUPLE_QUEUE);  // update North link once transmission is complete
 		send(endpointNorth, networkDelay + getLatency(), FogEvents.TUPLE_ARRIVAL, tuple);  // Sent tuple arrives at other end of link after given delay
@@ -277,4 +340,24 @@ public class Link extends SimEntity {
 	public void setSouthLinkBusy(boolean isSouthLinkBusy) {
 		this.isSouthLinkBusy = isSouthLinkBusy;
 	}
+
+	public long getNorthTupleCount() {
+		return northTupleCount;
+	}
+
+	public double getNorthBusyTime() {
+		return northBusyTime;
+	}
+
+	public long getSouthTupleCount() {
+		return southTupleCount;
+	}
+
+	public double getSouthBusyTime() {
+		return southBusyTime;
+	}
+
+	public long getDroppedTupleCount() {
+		return droppedTupleCount;
+	}
 }
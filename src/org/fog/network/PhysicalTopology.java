@@ -8,6 +8,7 @@ package org.fog.network;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -16,6 +17,7 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.fog.entities.Actuator;
 import org.fog.entities.EndDevice;
 import org.fog.entities.FogDevice;
+import org.fog.entities.Sensor;
 import org.fog.utils.Logger;
 
 public class PhysicalTopology {
@@ -48,6 +50,29 @@ public class PhysicalTopology {
 	 * List of links in the physical topology
 	 */
 	private List<Link> links;
+	/**
+	 * Acknowledgement protocol used by fog devices for the tuples they receive. One of the FogDevice.TUPLE_ACK_* constants.
+	 */
+	private int tupleAckMode;
+	/**
+	 * Number of tuples covered by a cumulative acknowledgement
+	 */
+	private int tupleAckInterval;
+	/**
+	 * Lookup of switches, links and end-devices by entity ID, built when the topology is set up
+	 */
+	private Map<Integer, Switch> switchesById;
+	private Map<Integer, Link> linksById;
+	private Map<Integer, EndDevice> endDevicesById;
+	/**
+	 * Switch ID --> { Neighbour switch ID --> ID of link connecting them }
+	 */
+	private Map<Integer, Map<Integer, Integer>> switchLinks;
+	/**
+	 * Target switch ID --> { Switch ID --> ID of link on a shortest path to target }, computed on first handover to target
+	 */
+	private Map<Integer, Map<Integer, Integer>> routesToSwitch;
+	private LatencyOracle latencyOracle;
 
 	/**
 	 * Add link in physical topology
@@ -122,8 +147,11 @@ public class PhysicalTopology {
 	 * Makes the physical topology ready.
 	 */
 	public void setUpEntities() {
+		latencyOracle = null;
+		indexEntities();
 		assignLinksToFogDevices();
 		assignLinksToEndDevices();
+		assignTupleAckProtocol();
 		calculateAdjacentEntities();
 		calculateNeighbourSwitches();
 		//printAdjacentEntities();
@@ -177,22 +205,109 @@ public class PhysicalTopology {
 		}
 	}
 
-	private Switch getSwitch(int id) {
-		Switch res = null;
-		for (Switch sw : getSwitches()) {
-			if (sw.getId() == id) 
-				res = sw;
+	private void indexEntities() {
+		switchesById = new HashMap<Integer, Switch>();
+		for (Switch sw : getSwitches())
+			switchesById.put(sw.getId(), sw);
+		linksById = new HashMap<Integer, Link>();
+		switchLinks = new HashMap<Integer, Map<Integer, Integer>>();
+		for (Link l : getLinks()) {
+			linksById.put(l.getId(), l);
+			if (switchesById.containsKey(l.getEndpointNorth()) && switchesById.containsKey(l.getEndpointSouth())) {
+				addSwitchLink(l.getEndpointNorth(), l.getEndpointSouth(), l.getId());
+				addSwitchLink(l.getEndpointSouth(), l.getEndpointNorth(), l.getId());
+			}
 		}
-		return res;
+		endDevicesById = new HashMap<Integer, EndDevice>();
+		for (EndDevice dev : getEndDevices())
+			endDevicesById.put(dev.getId(), dev);
+		routesToSwitch = new HashMap<Integer, Map<Integer, Integer>>();
+	}
+	
+	private void addSwitchLink(int swId, int neighbourId, int linkId) {
+		if (!switchLinks.containsKey(swId))
+			switchLinks.put(swId, new HashMap<Integer, Integer>());
+		switchLinks.get(swId).put(neighbourId, linkId);
+	}
+	
+	private Switch getSwitch(int id) {
+		if (switchesById == null)
+			indexEntities();
+		return switchesById.get(id);
 	}
 	
 	private Link getLink(int id) {
-		Link res = null;
-		for (Link l : getLinks()) {
-			if (l.getId() == id) 
-				res = l;
+		if (linksById == null)
+			indexEntities();
+		return linksById.get(id);
+	}
+	
+	/**
+	 * Returns the latency oracle of the topology, built on first use once the topology is set up.
+	 */
+	public LatencyOracle getLatencyOracle() {
+		if (latencyOracle == null)
+			latencyOracle = new LatencyOracle(this);
+		return latencyOracle;
+	}
+	
+	/**
+	 * Hands an end-device over to another switch, as a mobile device entering a new zone.
+	 * The access link of the device is attached to the new switch, and the switching table entries of the actuators
+	 * of the device are updated on each switch, without recomputing the routing tables.
+	 * @param dev the end-device moving
+	 * @param newSwitch the switch to connect it to
+	 */
+	public void handover(EndDevice dev, Switch newSwitch) {
+		Link link = getLink(dev.getLinkId());
+		int oldSwitchId = link.getOtherEndpoint(dev.getId());
+		if (oldSwitchId == newSwitch.getId())
+			return;
+		Logger.debug(LOG_TAG, "Handover of "+dev.getName()+" from "+CloudSim.getEntityName(oldSwitchId)+" to "+newSwitch.getName());
+		link.moveEndpoint(oldSwitchId, newSwitch.getId());
+		Switch oldSwitch = getSwitch(oldSwitchId);
+		if (oldSwitch != null)
+			oldSwitch.getAdjacentEndDevices().remove((Integer) dev.getId());
+		newSwitch.getAdjacentEndDevices().add(dev.getId());
+		dev.setEdgeSwitchId(newSwitch.getId());
+		for (Sensor s : dev.getSensors())
+			s.setGatewayDeviceId(newSwitch.getId());
+		
+		Map<Integer, Integer> routes = getRoutesToSwitch(newSwitch.getId());
+		for (Actuator a : dev.getActuators()) {
+			a.setGatewayDeviceId(newSwitch.getId());
+			for (Map.Entry<Integer, Integer> route : routes.entrySet())
+				getSwitch(route.getKey()).getSwitchingTable().put(a.getId(), route.getValue());
+			newSwitch.getSwitchingTable().put(a.getId(), link.getId());
 		}
-		return res;
+	}
+	
+	/**
+	 * Returns for each switch the link to forward to for reaching the given switch in the fewest hops,
+	 * from a breadth-first search over switch-to-switch links.
+	 */
+	private Map<Integer, Integer> getRoutesToSwitch(int targetId) {
+		Map<Integer, Integer> routes = routesToSwitch.get(targetId);
+		if (routes != null)
+			return routes;
+		routes = new HashMap<Integer, Integer>();
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+		queue.add(targetId);
+		while (!queue.isEmpty()) {
+			int current = queue.poll();
+			Map<Integer, Integer> neighbours = switchLinks.get(current);
+			if (neighbours == null)
+				continue;
+			for (Map.Entry<Integer, Integer> neighbour : neighbours.entrySet()) {
+				int neighbourId = neighbour.getKey();
+				if (neighbourId != targetId && !routes.containsKey(neighbourId)) {
+					routes.put(neighbourId, neighbour.getValue());
+					queue.add(neighbourId);
+				}
+			}
+		}
+		routesToSwitch.put(targetId, routes);
+		return routes;
 	}
 	
 	private List<Actuator> getActuators() {
@@ -263,12 +378,9 @@ public class PhysicalTopology {
 	}
 	
 	private EndDevice getEndDevice(int adjDevId) {
-		EndDevice dev = null;
-		for (EndDevice e : getEndDevices()) {
-			if (e.getId() == adjDevId)
-				dev = e;
-		}
-		return dev;
+		if (endDevicesById == null)
+			indexEntities();
+		return endDevicesById.get(adjDevId);
 	}
 
 	private void assignLinksToFogDevices() {
@@ -280,11 +392,20 @@ public class PhysicalTopology {
 		}
 	}
 
+	private void assignTupleAckProtocol() {
+		for (FogDevice dev : getFogDevices()) {
+			dev.setTupleAckMode(getTupleAckMode());
+			dev.setTupleAckInterval(getTupleAckInterval());
+		}
+	}
+
 	private void assignLinksToEndDevices() {
 		for (EndDevice dev : getEndDevices()) {
 			for (Link l : getLinks()) {
-				if (l.getEndpointNorth() == dev.getId() || l.getEndpointSouth() == dev.getId())
+				if (l.getEndpointNorth() == dev.getId() || l.getEndpointSouth() == dev.getId()) {
 					dev.setLinkId(l.getId());
+					dev.setEdgeSwitchId(l.getOtherEndpoint(dev.getId()));
+				}
 			}
 		}
 	}
@@ -383,11 +504,34 @@ public class PhysicalTopology {
 		this.links = links;
 	}
 	
+	/**
+	 * Sets the acknowledgement protocol of fog devices. Must be called before {@link #setUpEntities()}.
+	 * @param tupleAckMode one of the FogDevice.TUPLE_ACK_* constants
+	 * @param tupleAckInterval number of tuples covered by a cumulative acknowledgement
+	 */
+	public void setTupleAckProtocol(int tupleAckMode, int tupleAckInterval) {
+		setTupleAckMode(tupleAckMode);
+		setTupleAckInterval(tupleAckInterval);
+	}
+	public int getTupleAckMode() {
+		return tupleAckMode;
+	}
+	public void setTupleAckMode(int tupleAckMode) {
+		this.tupleAckMode = tupleAckMode;
+	}
+	public int getTupleAckInterval() {
+		return tupleAckInterval;
+	}
+	public void setTupleAckInterval(int tupleAckInterval) {
+		this.tupleAckInterval = tupleAckInterval;
+	}
+	
 	private PhysicalTopology() {
 		setLinks(new ArrayList<Link>());
 		setFogDevices(new ArrayList<FogDevice>());
 		setSwitches(new ArrayList<Switch>());
 		setEndDevices(new ArrayList<EndDevice>());
+		setTupleAckProtocol(FogDevice.TUPLE_ACK_PER_TUPLE, 1);
 	}
 
 /*	public static void main(String args[]) {
@@ -13,8 +13,11 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.fog.entities.Tuple;
+import org.fog.entities.TuplePool;
 import org.fog.utils.FogEvents;
 import org.fog.utils.Logger;
+import org.fog.utils.TupleTraceRecord;
+import org.fog.utils.TupleTracer;
 
 /**
  * Network switch (L2/L3) used for creating a network topology. 
@@ -70,6 +73,8 @@ public class Switch extends SimEntity {
 	 */
 	private void processTupleArrival(SimEvent ev) {
 		Tuple tuple = (Tuple) ev.getData();
+		TuplePool.getInstance().checkLive(tuple);
+		TupleTracer.getInstance().record(TupleTraceRecord.SWITCH_HOP, tuple, getId(), 0);
 		Logger.debug(LOG_TAG, getName(), "Received tuple with dst = "
 		+CloudSim.getEntityName(tuple.getDestinationDeviceId())+" & tupleType = "+tuple.getTupleType());
 		
@@ -0,0 +1,567 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Fog Simulation) Toolkit for Modeling and Simulation of Fog Computing
+ *
+ */
+package org.fog.placement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.fog.application.AppEdge;
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.entities.Actuator;
+import org.fog.entities.ActuatorCharacteristics;
+import org.fog.entities.FogDeviceCharacteristics;
+import org.fog.entities.SensorCharacteristics;
+import org.fog.network.LatencyOracle;
+import org.fog.network.PhysicalTopology;
+import org.fog.utils.Logger;
+
+/**
+ * Batch placement policy that places the modules of all submitted applications so as to minimize the sum of their
+ * predicted loop latencies, under the capacity of fog devices shown by the {@link CapacityIndex} of the
+ * {@link PlacementContext}. As with {@link ModulePlacementLatencyAware}, each sensor-actuator pair gets its own instance
+ * of its application, latencies are predicted by a {@link LoopLatencyModel}, and a fog device is eligible for an
+ * instance only if the loops of the instance meet their latency target. The cloud is always eligible and has no capacity limit.
+ *
+ * Instances of single-module applications are assigned to devices by a min-cost flow, where the capacity of a device is
+ * the number of instances it can host. Instances with the same latency to every device, as those of end-devices on the
+ * same switch, share a node of the flow network. The assignment is optimal for instances of equal demand; instances of
+ * different demand are assigned one demand after the other, largest MIPS demand first.
+ *
+ * Instances of applications with several modules are placed greedily, largest MIPS demand first, module after module
+ * in topological order of the application graph, on the device adding the least delay to the modules already placed.
+ * A repair pass then moves single modules between devices while this brings loops within their target or lowers their
+ * latency.
+ */
+public class BatchModulePlacementLatencyAware extends BatchModulePlacementPolicy {
+	private static String LOG_TAG = "BATCH_PLACEMENT";
+
+	/**
+	 * Maximum number of passes of the repair over all multi-module instances
+	 */
+	private static final int MAX_REPAIR_ROUNDS = 10;
+
+	/**
+	 * Latency targets of the loops and prediction of their latencies
+	 */
+	private LoopLatencyModel latencyModel;
+
+	private LatencyOracle latencyOracle;
+	private CapacityIndex capacityIndex;
+	/**
+	 * Fog devices other than the cloud, in the order of the characteristics
+	 */
+	private List<FogDeviceCharacteristics> fogDevices;
+	private FogDeviceCharacteristics cloud;
+
+	/**
+	 * Instance of an application serving a sensor-actuator pair
+	 */
+	private static class Instance {
+		final Application application;
+		final SensorCharacteristics sensor;
+		final ActuatorCharacteristics actuator;
+		final int endDeviceId;
+		/**
+		 * Map from module name to ID of the device it is placed on
+		 */
+		final Map<String, Integer> mapping;
+
+		Instance(Application application, SensorCharacteristics sensor, ActuatorCharacteristics actuator, int endDeviceId) {
+			this.application = application;
+			this.sensor = sensor;
+			this.actuator = actuator;
+			this.endDeviceId = endDeviceId;
+			this.mapping = new HashMap<String, Integer>();
+		}
+
+		int getActuatorId() {
+			return (actuator == null) ? -1 : actuator.getId();
+		}
+
+		boolean isPlaced() {
+			return mapping.size() == application.getModules().size();
+		}
+
+		double getRequiredMips() {
+			double mips = 0;
+			for (AppModule module : application.getModules())
+				mips += CapacityIndex.getRequiredMips(module);
+			return mips;
+		}
+	}
+
+	public BatchModulePlacementLatencyAware(double latencyTarget) {
+		this.latencyModel = new LoopLatencyModel(latencyTarget);
+	}
+
+	@Override
+	public Map<String, List<ModulePlacement>> computeModulePlacements(List<Application> applications,
+			List<FogDeviceCharacteristics> fogDeviceCharacteristics, List<SensorCharacteristics> sensorCharacteristics,
+			List<ActuatorCharacteristics> actuatorCharacteristics) {
+		latencyOracle = PhysicalTopology.getInstance().getLatencyOracle();
+		capacityIndex = PlacementContext.getInstance().getCapacityIndex();
+		fogDevices = new ArrayList<FogDeviceCharacteristics>();
+		cloud = null;
+		for (FogDeviceCharacteristics fc : fogDeviceCharacteristics) {
+			if (fc.isCloudDatacenter())
+				cloud = fc;
+			else
+				fogDevices.add(fc);
+		}
+
+		Map<String, List<ActuatorCharacteristics>> actuatorsByApp = new HashMap<String, List<ActuatorCharacteristics>>();
+		for (ActuatorCharacteristics ac : actuatorCharacteristics) {
+			SimEntity actuator = CloudSim.getEntity(ac.getId());
+			if (!(actuator instanceof Actuator))
+				continue;
+			String appId = ((Actuator) actuator).getAppId();
+			if (!actuatorsByApp.containsKey(appId))
+				actuatorsByApp.put(appId, new ArrayList<ActuatorCharacteristics>());
+			actuatorsByApp.get(appId).add(ac);
+		}
+
+		List<Instance> instances = new ArrayList<Instance>();
+		Map<List<Double>, List<Instance>> singleModuleInstances = new LinkedHashMap<List<Double>, List<Instance>>();
+		List<Instance> multiModuleInstances = new ArrayList<Instance>();
+		for (Application application : applications) {
+			List<ActuatorCharacteristics> appActuators = actuatorsByApp.get(application.getAppId());
+			if (appActuators == null)
+				appActuators = Collections.emptyList();
+			for (SensorCharacteristics sc : sensorCharacteristics) {
+				if (!sc.getAppId().equals(application.getAppId()) || application.getModules().isEmpty())
+					continue;
+				Instance instance = new Instance(application, sc, LoopLatencyModel.getCorrespondingActuator(sc, appActuators),
+						LoopLatencyModel.getEndDeviceId(sc.getId()));
+				instances.add(instance);
+				if (application.getModules().size() == 1) {
+					AppModule module = application.getModules().get(0);
+					List<Double> demand = Arrays.asList(CapacityIndex.getRequiredMips(module), (double) module.getRam(), (double) module.getBw());
+					if (!singleModuleInstances.containsKey(demand))
+						singleModuleInstances.put(demand, new ArrayList<Instance>());
+					singleModuleInstances.get(demand).add(instance);
+				} else {
+					multiModuleInstances.add(instance);
+				}
+			}
+		}
+
+		List<List<Double>> demands = new ArrayList<List<Double>>(singleModuleInstances.keySet());
+		Collections.sort(demands, new Comparator<List<Double>>() {
+			@Override
+			public int compare(List<Double> d1, List<Double> d2) {
+				return Double.compare(d2.get(0), d1.get(0));
+			}
+		});
+		for (List<Double> demand : demands)
+			assignByFlow(singleModuleInstances.get(demand));
+		assignGreedily(multiModuleInstances);
+		repair(multiModuleInstances);
+
+		Map<String, List<ModulePlacement>> placements = new HashMap<String, List<ModulePlacement>>();
+		for (Application application : applications)
+			placements.put(application.getAppId(), new ArrayList<ModulePlacement>());
+		for (Instance instance : instances) {
+			if (!instance.isPlaced()) {
+				Logger.debug(LOG_TAG, "No device for modules of "+CloudSim.getEntityName(instance.sensor.getId()));
+				continue;
+			}
+			ModulePlacement placement = new ModulePlacement();
+			placement.addSensorId(instance.sensor.getTupleType(), instance.sensor.getId());
+			if (instance.actuator != null)
+				placement.addActuatorId(instance.actuator.getActuatorType(), instance.actuator.getId());
+			for (AppModule module : instance.application.getModules())
+				placement.addMapping(module.getName(), instance.mapping.get(module.getName()));
+			placements.get(instance.application.getAppId()).add(placement);
+		}
+		return placements;
+	}
+
+	/**
+	 * Assigns instances of single-module applications of equal demand by a min-cost flow from instances to devices.
+	 */
+	private void assignByFlow(List<Instance> instances) {
+		AppModule module = instances.get(0).application.getModules().get(0);
+		List<FogDeviceCharacteristics> devices = new ArrayList<FogDeviceCharacteristics>(fogDevices);
+		if (cloud != null)
+			devices.add(cloud);
+
+		// instances with the same latency to every device form a class
+		Map<List<Double>, List<Instance>> classes = new LinkedHashMap<List<Double>, List<Instance>>();
+		for (Instance instance : instances) {
+			List<Double> costs = new ArrayList<Double>(devices.size());
+			for (FogDeviceCharacteristics fc : devices)
+				costs.add(getCost(instance, fc));
+			if (!classes.containsKey(costs))
+				classes.put(costs, new ArrayList<Instance>());
+			classes.get(costs).add(instance);
+		}
+
+		int classCount = classes.size();
+		int source = 0, sink = 1;
+		MinCostFlow flow = new MinCostFlow(2 + classCount + devices.size(), classCount * (devices.size() + 1) + devices.size());
+		int[][] assignmentEdges = new int[classCount][devices.size()];
+		int c = 0;
+		for (Map.Entry<List<Double>, List<Instance>> entry : classes.entrySet()) {
+			flow.addEdge(source, 2 + c, entry.getValue().size(), 0);
+			for (int d = 0; d < devices.size(); d++) {
+				double cost = entry.getKey().get(d);
+				assignmentEdges[c][d] = (cost < Double.POSITIVE_INFINITY)
+						? flow.addEdge(2 + c, 2 + classCount + d, entry.getValue().size(), cost) : -1;
+			}
+			c++;
+		}
+		for (int d = 0; d < devices.size(); d++) {
+			FogDeviceCharacteristics fc = devices.get(d);
+			int capacity = fc.isCloudDatacenter() ? instances.size() : getInstanceCapacity(fc.getId(), module, instances.size());
+			if (capacity > 0)
+				flow.addEdge(2 + classCount + d, sink, capacity, 0);
+		}
+		flow.solve(source, sink);
+
+		c = 0;
+		for (List<Instance> members : classes.values()) {
+			Iterator<Instance> iterator = members.iterator();
+			for (int d = 0; d < devices.size(); d++) {
+				if (assignmentEdges[c][d] < 0)
+					continue;
+				FogDeviceCharacteristics fc = devices.get(d);
+				for (int k = flow.getFlow(assignmentEdges[c][d]); k > 0; k--) {
+					Instance instance = iterator.next();
+					instance.mapping.put(instance.application.getModules().get(0).getName(), fc.getId());
+					if (!fc.isCloudDatacenter())
+						capacityIndex.reserve(fc.getId(), instance.application.getModules());
+				}
+			}
+			c++;
+		}
+	}
+
+	/**
+	 * Returns the sum of the predicted loop latencies of a single-module instance placed on a device, infinity if the
+	 * device is a fog device on which a loop misses its target.
+	 */
+	private double getCost(Instance instance, FogDeviceCharacteristics fc) {
+		Map<String, Integer> mapping = new HashMap<String, Integer>();
+		mapping.put(instance.application.getModules().get(0).getName(), fc.getId());
+		double[] evaluation = evaluate(instance, mapping);
+		if (evaluation[0] > 0 && !fc.isCloudDatacenter())
+			return Double.POSITIVE_INFINITY;
+		return evaluation[1];
+	}
+
+	/**
+	 * Returns the number of copies of a module a device can host, up to a limit.
+	 */
+	private int getInstanceCapacity(int deviceId, AppModule module, int limit) {
+		double count = limit;
+		double mips = CapacityIndex.getRequiredMips(module);
+		if (mips > 0)
+			count = Math.min(count, Math.floor(capacityIndex.getFreeMips(deviceId) / mips));
+		if (module.getRam() > 0)
+			count = Math.min(count, Math.floor(capacityIndex.getFreeRam(deviceId) / module.getRam()));
+		if (module.getBw() > 0)
+			count = Math.min(count, Math.floor(capacityIndex.getFreeBw(deviceId) / module.getBw()));
+		return (int) Math.max(0, count);
+	}
+
+	/**
+	 * Places the modules of multi-module instances one after the other, on the device adding the least delay.
+	 */
+	private void assignGreedily(List<Instance> instances) {
+		List<Instance> ordered = new ArrayList<Instance>(instances);
+		Collections.sort(ordered, new Comparator<Instance>() {
+			@Override
+			public int compare(Instance i1, Instance i2) {
+				return Double.compare(i2.getRequiredMips(), i1.getRequiredMips());
+			}
+		});
+		Map<String, List<AppModule>> orders = new HashMap<String, List<AppModule>>();
+		for (Instance instance : ordered) {
+			String appId = instance.application.getAppId();
+			if (!orders.containsKey(appId))
+				orders.put(appId, getTopologicalOrder(instance.application));
+			for (AppModule module : orders.get(appId)) {
+				List<AppModule> modules = Collections.singletonList(module);
+				int selected = -1;
+				double selectedDelay = Double.POSITIVE_INFINITY;
+				double selectedHeadroom = 0;
+				for (FogDeviceCharacteristics fc : fogDevices) {
+					if (!capacityIndex.canHost(fc.getId(), modules))
+						continue;
+					double delay = getAddedDelay(instance, module, fc.getId());
+					double headroom = capacityIndex.getFreeMips(fc.getId());
+					if (delay < selectedDelay || (delay == selectedDelay && headroom > selectedHeadroom)) {
+						selected = fc.getId();
+						selectedDelay = delay;
+						selectedHeadroom = headroom;
+					}
+				}
+				if (cloud != null && getAddedDelay(instance, module, cloud.getId()) < selectedDelay)
+					selected = cloud.getId();
+				if (selected < 0) {
+					release(instance);
+					break;
+				}
+				instance.mapping.put(module.getName(), selected);
+				if (selected != getCloudId())
+					capacityIndex.reserve(selected, modules);
+			}
+		}
+	}
+
+	/**
+	 * Moves single modules of multi-module instances to other devices, while a move brings more loops of the instance
+	 * within their target, or lowers its total latency with as many loops within target.
+	 */
+	private void repair(List<Instance> instances) {
+		for (int round = 0; round < MAX_REPAIR_ROUNDS; round++) {
+			boolean moved = false;
+			for (Instance instance : instances) {
+				if (!instance.isPlaced())
+					continue;
+				for (AppModule module : instance.application.getModules()) {
+					int current = instance.mapping.get(module.getName());
+					int selected = current;
+					double[] selectedEvaluation = evaluate(instance, instance.mapping);
+					List<AppModule> modules = Collections.singletonList(module);
+					for (FogDeviceCharacteristics fc : getCandidates()) {
+						if (fc.getId() == current || (!fc.isCloudDatacenter() && !capacityIndex.canHost(fc.getId(), modules)))
+							continue;
+						instance.mapping.put(module.getName(), fc.getId());
+						double[] evaluation = evaluate(instance, instance.mapping);
+						if (evaluation[0] < selectedEvaluation[0]
+								|| (evaluation[0] == selectedEvaluation[0] && evaluation[1] < selectedEvaluation[1])) {
+							selected = fc.getId();
+							selectedEvaluation = evaluation;
+						}
+					}
+					instance.mapping.put(module.getName(), selected);
+					if (selected != current) {
+						if (current != getCloudId())
+							capacityIndex.release(current, CapacityIndex.getRequiredMips(module), module.getRam(), module.getBw());
+						if (selected != getCloudId())
+							capacityIndex.reserve(selected, modules);
+						moved = true;
+					}
+				}
+			}
+			if (!moved)
+				break;
+		}
+	}
+
+	/**
+	 * Gives back the capacity reserved for the modules of an instance placed so far, and clears its placement.
+	 */
+	private void release(Instance instance) {
+		for (Map.Entry<String, Integer> entry : instance.mapping.entrySet()) {
+			if (entry.getValue() == getCloudId())
+				continue;
+			AppModule module = instance.application.getModuleByName(entry.getKey());
+			capacityIndex.release(entry.getValue(), CapacityIndex.getRequiredMips(module), module.getRam(), module.getBw());
+		}
+		instance.mapping.clear();
+	}
+
+	/**
+	 * Returns the delay added by placing a module on a device, on the edges between the module and the sensor,
+	 * actuator and modules already placed.
+	 */
+	private double getAddedDelay(Instance instance, AppModule module, int deviceId) {
+		double delay = 0;
+		for (AppEdge edge : instance.application.getEdges()) {
+			if (edge.getDestination().equals(module.getName())) {
+				if (edge.getEdgeType() == AppEdge.SENSOR) {
+					if (instance.endDeviceId < 0)
+						return Double.POSITIVE_INFINITY;
+					delay += latencyOracle.getDelay(instance.endDeviceId, deviceId, edge.getTupleNwLength());
+				} else if (edge.getEdgeType() == AppEdge.MODULE && instance.mapping.containsKey(edge.getSource())) {
+					delay += latencyOracle.getDelay(instance.mapping.get(edge.getSource()), deviceId, edge.getTupleNwLength());
+				}
+			} else if (edge.getSource().equals(module.getName())) {
+				if (edge.getEdgeType() == AppEdge.ACTUATOR && instance.actuator != null) {
+					delay += latencyOracle.getDelay(deviceId, instance.actuator.getId(), edge.getTupleNwLength());
+				} else if (edge.getEdgeType() == AppEdge.MODULE && instance.mapping.containsKey(edge.getDestination())) {
+					delay += latencyOracle.getDelay(deviceId, instance.mapping.get(edge.getDestination()), edge.getTupleNwLength());
+				}
+			}
+		}
+		return delay;
+	}
+
+	/**
+	 * Evaluates a placement of the modules of an instance.
+	 * @param mapping map from module name to ID of the device it is placed on, for all modules of the instance
+	 * @return number of loops missing their latency target, and sum of the predicted latencies of the loops
+	 */
+	private double[] evaluate(Instance instance, Map<String, Integer> mapping) {
+		int[] deviceIds = new int[instance.application.getNumVertices()];
+		for (Map.Entry<String, Integer> entry : mapping.entrySet())
+			deviceIds[instance.application.getVertexIndex(entry.getKey())] = entry.getValue();
+		return latencyModel.evaluate(instance.application, deviceIds, instance.endDeviceId, instance.getActuatorId());
+	}
+
+	/**
+	 * Returns the modules of an application in topological order of the edges between modules. Modules on a cycle
+	 * follow the others, in the order of the application.
+	 */
+	private List<AppModule> getTopologicalOrder(Application application) {
+		Map<String, Integer> inDegrees = new HashMap<String, Integer>();
+		for (AppModule module : application.getModules())
+			inDegrees.put(module.getName(), 0);
+		for (AppEdge edge : application.getEdges()) {
+			if (edge.getEdgeType() == AppEdge.MODULE && inDegrees.containsKey(edge.getDestination()))
+				inDegrees.put(edge.getDestination(), inDegrees.get(edge.getDestination()) + 1);
+		}
+		List<AppModule> order = new ArrayList<AppModule>();
+		List<AppModule> remaining = new ArrayList<AppModule>(application.getModules());
+		while (!remaining.isEmpty()) {
+			Iterator<AppModule> iterator = remaining.iterator();
+			boolean progress = false;
+			while (iterator.hasNext()) {
+				AppModule module = iterator.next();
+				if (inDegrees.get(module.getName()) > 0)
+					continue;
+				order.add(module);
+				iterator.remove();
+				progress = true;
+				for (AppEdge edge : application.getEdges()) {
+					if (edge.getEdgeType() == AppEdge.MODULE && edge.getSource().equals(module.getName())
+							&& inDegrees.containsKey(edge.getDestination()))
+						inDegrees.put(edge.getDestination(), inDegrees.get(edge.getDestination()) - 1);
+				}
+			}
+			if (!progress) {
+				order.addAll(remaining);
+				break;
+			}
+		}
+		return order;
+	}
+
+	private List<FogDeviceCharacteristics> getCandidates() {
+		List<FogDeviceCharacteristics> candidates = new ArrayList<FogDeviceCharacteristics>(fogDevices);
+		if (cloud != null)
+			candidates.add(cloud);
+		return candidates;
+	}
+
+	private int getCloudId() {
+		return (cloud == null) ? -1 : cloud.getId();
+	}
+
+	/**
+	 * Min-cost flow by successive shortest paths, with Dijkstra searches on costs reduced by node potentials.
+	 * Costs must be non-negative.
+	 */
+	private static class MinCostFlow {
+		private final int[] head;
+		private final int[] next;
+		private final int[] to;
+		private final int[] capacity;
+		private final double[] cost;
+		private int edges;
+
+		MinCostFlow(int nodes, int maxEdges) {
+			head = new int[nodes];
+			Arrays.fill(head, -1);
+			next = new int[2 * maxEdges];
+			to = new int[2 * maxEdges];
+			capacity = new int[2 * maxEdges];
+			cost = new double[2 * maxEdges];
+		}
+
+		/**
+		 * Adds an edge and its residual reverse edge.
+		 * @return index of the edge
+		 */
+		int addEdge(int from, int destination, int edgeCapacity, double edgeCost) {
+			int e = edges;
+			to[e] = destination; capacity[e] = edgeCapacity; cost[e] = edgeCost; next[e] = head[from]; head[from] = e;
+			to[e + 1] = from; capacity[e + 1] = 0; cost[e + 1] = -edgeCost; next[e + 1] = head[destination]; head[destination] = e + 1;
+			edges += 2;
+			return e;
+		}
+
+		int getFlow(int edge) {
+			return capacity[edge + 1];
+		}
+
+		/**
+		 * Sends as much flow as possible from source to sink at minimum cost.
+		 * @return the flow sent
+		 */
+		int solve(int source, int sink) {
+			int nodes = head.length;
+			double[] potential = new double[nodes];
+			double[] distance = new double[nodes];
+			int[] previousEdge = new int[nodes];
+			int total = 0;
+			while (true) {
+				Arrays.fill(distance, Double.POSITIVE_INFINITY);
+				Arrays.fill(previousEdge, -1);
+				distance[source] = 0;
+				PriorityQueue<double[]> queue = new PriorityQueue<double[]>(16, new Comparator<double[]>() {
+					@Override
+					public int compare(double[] e1, double[] e2) {
+						return Double.compare(e1[0], e2[0]);
+					}
+				});
+				queue.add(new double[]{0, source});
+				while (!queue.isEmpty()) {
+					double[] entry = queue.poll();
+					int node = (int) entry[1];
+					if (entry[0] > distance[node])
+						continue;
+					for (int e = head[node]; e >= 0; e = next[e]) {
+						if (capacity[e] == 0)
+							continue;
+						// reduced costs are non-negative up to rounding
+						double reduced = Math.max(0, cost[e] + potential[node] - potential[to[e]]);
+						if (distance[node] + reduced < distance[to[e]]) {
+							distance[to[e]] = distance[node] + reduced;
+							previousEdge[to[e]] = e;
+							queue.add(new double[]{distance[to[e]], to[e]});
+						}
+					}
+				}
+				if (distance[sink] == Double.POSITIVE_INFINITY)
+					return total;
+				for (int node = 0; node < nodes; node++) {
+					if (distance[node] < Double.POSITIVE_INFINITY)
+						potential[node] += distance[node];
+				}
+				int push = Integer.MAX_VALUE;
+				for (int node = sink; node != source; node = to[previousEdge[node] ^ 1])
+					push = Math.min(push, capacity[previousEdge[node]]);
+				for (int node = sink; node != source; node = to[previousEdge[node] ^ 1]) {
+					capacity[previousEdge[node]] -= push;
+					capacity[previousEdge[node] ^ 1] += push;
+				}
+				total += push;
+			}
+		}
+	}
+
+	/**
+	 * Returns the latency targets of the loops and the prediction of their latencies.
+	 */
+	public LoopLatencyModel getLatencyModel() {
+		return latencyModel;
+	}
+
+}
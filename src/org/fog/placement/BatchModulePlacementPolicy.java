@@ -0,0 +1,35 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Fog Simulation) Toolkit for Modeling and Simulation of Fog Computing
+ *
+ */
+package org.fog.placement;
+
+import java.util.List;
+import java.util.Map;
+
+import org.fog.application.Application;
+import org.fog.entities.ActuatorCharacteristics;
+import org.fog.entities.FogDeviceCharacteristics;
+import org.fog.entities.SensorCharacteristics;
+
+/**
+ * Abstract class that performs placement of the modules of several applications at once, so that the applications
+ * share the capacity of fog devices by a joint decision instead of competing for it one after the other.
+ * Applications are submitted together through {@link org.fog.entities.FogBroker#submitApplications(List, double, BatchModulePlacementPolicy)}.
+ */
+public abstract class BatchModulePlacementPolicy {
+
+	/**
+	 * Compute policy-specific placement of the modules of all given applications on fog devices.
+	 * @param applications applications to place
+	 * @param fogDeviceCharacteristics
+	 * @param sensorCharacteristics sensors of all applications
+	 * @param actuatorCharacteristics actuators of all applications
+	 * @return map from application ID to the placements of the application
+	 */
+	public abstract Map<String, List<ModulePlacement>> computeModulePlacements(List<Application> applications,
+			List<FogDeviceCharacteristics> fogDeviceCharacteristics, List<SensorCharacteristics> sensorCharacteristics,
+			List<ActuatorCharacteristics> actuatorCharacteristics);
+
+}
@@ -0,0 +1,435 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Fog Simulation) Toolkit for Modeling and Simulation of Fog Computing
+ *
+ */
+package org.fog.placement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fog.application.AppModule;
+import org.fog.entities.FogDevice;
+import org.fog.network.LatencyOracle;
+import org.fog.utils.Config;
+
+/**
+ * Remaining MIPS, RAM and bandwidth of fog devices, as seen by placement policies. Checking whether a module fits on a
+ * device does not allocate anything, unlike {@link ModulePlacementPolicy#canBeCreated(FogDevice, AppModule)}: policies
+ * reserve capacity when they decide a placement, and the modules are allocated when launched on the devices.
+ *
+ * Capacities start from what the hosts have available when the index is built. Searches for a device with enough
+ * capacity only consider fog devices, not cloud datacenters, and run on segment trees holding the largest free MIPS, RAM
+ * and bandwidth of each range of devices: the first device in the order of a tree with enough capacity is found in
+ * logarithmic time, unless many devices have enough of one resource but not of another. A tree ordering devices by
+ * latency from a switch is built on the first search near that switch, and kept for
+ * {@link Config#LATENCY_ORACLE_CACHE_ROWS} switches.
+ *
+ * Policies computing placements in parallel defer their reservations: between {@link #deferReservations()} and
+ * {@link #takeDeferredReservations()}, reservations made by a thread are only seen by that thread, and the index itself
+ * is not changed until they are committed with {@link #commit(Map)}. Updates must not run concurrently with reads.
+ */
+public class CapacityIndex {
+
+	private static final double[] NOTHING_DEFERRED = new double[3];
+
+	private final FogDevice[] devices;
+	private final Map<Integer, Integer> deviceIndex;
+	private final double[] freeMips;
+	private final double[] freeRam;
+	private final double[] freeBw;
+	private final boolean[] cloud;
+
+	private final LatencyOracle latencyOracle;
+	/**
+	 * Tree over fog devices in list order
+	 */
+	private final CapacityTree defaultTree;
+	/**
+	 * Trees over fog devices by latency from a switch, by switch ID, in access order
+	 */
+	private final LinkedHashMap<Integer, CapacityTree> proximityTrees;
+
+	/**
+	 * Incremented on every change of capacity
+	 */
+	private long epoch;
+	/**
+	 * Incremented on every increase of capacity
+	 */
+	private long releaseEpoch;
+
+	/**
+	 * Reservations deferred by the current thread: map from device ID to reserved MIPS, RAM and bandwidth
+	 */
+	private final ThreadLocal<Map<Integer, double[]>> deferredReservations;
+
+	/**
+	 * @param fogDevices devices whose capacity is indexed
+	 * @param latencyOracle oracle ordering devices by proximity, may be null if searches near a switch are not needed
+	 */
+	public CapacityIndex(List<FogDevice> fogDevices, LatencyOracle latencyOracle) {
+		int n = fogDevices.size();
+		devices = fogDevices.toArray(new FogDevice[n]);
+		deviceIndex = new HashMap<Integer, Integer>();
+		freeMips = new double[n];
+		freeRam = new double[n];
+		freeBw = new double[n];
+		cloud = new boolean[n];
+		List<Integer> fogIndices = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++) {
+			FogDevice device = devices[i];
+			deviceIndex.put(device.getId(), i);
+			freeMips[i] = device.getHost().getAvailableMips();
+			freeRam[i] = device.getHost().getRamProvisioner().getAvailableRam();
+			freeBw[i] = device.getHost().getBwProvisioner().getAvailableBw();
+			cloud[i] = device.isCloudDatacenter();
+			if (!cloud[i])
+				fogIndices.add(i);
+		}
+		this.latencyOracle = latencyOracle;
+		deferredReservations = new ThreadLocal<Map<Integer, double[]>>();
+		defaultTree = new CapacityTree(toArray(fogIndices));
+		proximityTrees = new LinkedHashMap<Integer, CapacityTree>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, CapacityTree> eldest) {
+				return size() > Config.LATENCY_ORACLE_CACHE_ROWS;
+			}
+		};
+	}
+
+	/**
+	 * Returns the total MIPS required by a module, over all its processing elements.
+	 */
+	public static double getRequiredMips(AppModule module) {
+		return module.getMips() * module.getNumberOfPes();
+	}
+
+	public double getFreeMips(int deviceId) {
+		return freeMips[getIndex(deviceId)] - getDeferred(deviceId)[0];
+	}
+
+	public double getFreeRam(int deviceId) {
+		return freeRam[getIndex(deviceId)] - getDeferred(deviceId)[1];
+	}
+
+	public double getFreeBw(int deviceId) {
+		return freeBw[getIndex(deviceId)] - getDeferred(deviceId)[2];
+	}
+
+	public boolean canHost(int deviceId, double mips, double ram, double bw) {
+		return canHostAt(getIndex(deviceId), mips, ram, bw);
+	}
+
+	/**
+	 * Checks, without allocating anything, whether a device can host all the given modules.
+	 */
+	public boolean canHost(int deviceId, Collection<AppModule> modules) {
+		double[] demand = getDemand(modules);
+		return canHost(deviceId, demand[0], demand[1], demand[2]);
+	}
+
+	/**
+	 * Returns the first fog device, in list order, with at least the given free capacity.
+	 * @return ID of the device, -1 if none
+	 */
+	public int findDevice(double mips, double ram, double bw) {
+		int i = defaultTree.findFirst(mips, ram, bw);
+		return (i < 0) ? -1 : devices[i].getId();
+	}
+
+	/**
+	 * Returns the fog device of lowest latency from a switch, or from the switch an entity hangs off, among those with
+	 * at least the given free capacity.
+	 * @return ID of the device, -1 if none
+	 */
+	public int findNearestDevice(int entityId, double mips, double ram, double bw) {
+		int switchId = latencyOracle.getAttachmentSwitch(entityId);
+		if (switchId < 0)
+			return -1;
+		CapacityTree tree;
+		synchronized (proximityTrees) {
+			tree = proximityTrees.get(switchId);
+			if (tree == null) {
+				tree = new CapacityTree(sortByLatency(switchId));
+				proximityTrees.put(switchId, tree);
+			}
+		}
+		int i = tree.findFirst(mips, ram, bw);
+		return (i < 0) ? -1 : devices[i].getId();
+	}
+
+	/**
+	 * Reserves capacity on a device, if it has enough.
+	 * @return true if the capacity was reserved
+	 */
+	public synchronized boolean reserve(int deviceId, double mips, double ram, double bw) {
+		if (!canHost(deviceId, mips, ram, bw))
+			return false;
+		if (isDeferring())
+			defer(deviceId, mips, ram, bw);
+		else
+			update(getIndex(deviceId), -mips, -ram, -bw);
+		return true;
+	}
+
+	/**
+	 * Reserves the capacity of modules on a device, if it has enough for all of them.
+	 * @return true if the capacity was reserved
+	 */
+	public boolean reserve(int deviceId, Collection<AppModule> modules) {
+		double[] demand = getDemand(modules);
+		return reserve(deviceId, demand[0], demand[1], demand[2]);
+	}
+
+	/**
+	 * Reserves capacity on several devices at once: either all reservations are made, or none if a device lacks
+	 * capacity for the sum of its reservations.
+	 * @param reservations map from device ID to the modules to reserve capacity for
+	 * @return true if all reservations were made
+	 */
+	public synchronized boolean reserveAll(Map<Integer, ? extends Collection<AppModule>> reservations) {
+		for (Map.Entry<Integer, ? extends Collection<AppModule>> entry : reservations.entrySet())
+			if (!canHost(entry.getKey(), entry.getValue()))
+				return false;
+		for (Map.Entry<Integer, ? extends Collection<AppModule>> entry : reservations.entrySet()) {
+			double[] demand = getDemand(entry.getValue());
+			reserve(entry.getKey(), demand[0], demand[1], demand[2]);
+		}
+		return true;
+	}
+
+	/**
+	 * Gives back capacity reserved on a device, as when a module is released.
+	 */
+	public synchronized void release(int deviceId, double mips, double ram, double bw) {
+		if (isDeferring())
+			defer(deviceId, -mips, -ram, -bw);
+		else
+			update(getIndex(deviceId), mips, ram, bw);
+	}
+
+	/**
+	 * Defers the reservations made by the current thread until they are taken with
+	 * {@link #takeDeferredReservations()}.
+	 */
+	public void deferReservations() {
+		deferredReservations.set(new HashMap<Integer, double[]>());
+	}
+
+	/**
+	 * Returns the reservations deferred by the current thread, and stops deferring them.
+	 * @return map from device ID to reserved MIPS, RAM and bandwidth
+	 */
+	public Map<Integer, double[]> takeDeferredReservations() {
+		Map<Integer, double[]> reservations = deferredReservations.get();
+		deferredReservations.remove();
+		return (reservations == null) ? new HashMap<Integer, double[]>() : reservations;
+	}
+
+	/**
+	 * Commits deferred reservations: either all are made, or none if a device lacks capacity for them.
+	 * @param reservations map from device ID to reserved MIPS, RAM and bandwidth
+	 * @return true if all reservations were made
+	 */
+	public synchronized boolean commit(Map<Integer, double[]> reservations) {
+		for (Map.Entry<Integer, double[]> entry : reservations.entrySet()) {
+			double[] demand = entry.getValue();
+			if (!canHost(entry.getKey(), demand[0], demand[1], demand[2]))
+				return false;
+		}
+		for (Map.Entry<Integer, double[]> entry : reservations.entrySet()) {
+			double[] demand = entry.getValue();
+			update(getIndex(entry.getKey()), -demand[0], -demand[1], -demand[2]);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a counter incremented on every change of capacity. Decisions taken at the same epoch saw the same
+	 * capacities.
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Returns a counter incremented on every increase of capacity, as when modules are released. While it does not
+	 * change, capacity only decreases.
+	 */
+	public long getReleaseEpoch() {
+		return releaseEpoch;
+	}
+
+	/**
+	 * Returns true if the current thread defers its reservations.
+	 */
+	public boolean isDeferring() {
+		return deferredReservations.get() != null;
+	}
+
+	private void update(int i, double mips, double ram, double bw) {
+		freeMips[i] += mips;
+		freeRam[i] += ram;
+		freeBw[i] += bw;
+		epoch++;
+		if (mips > 0 || ram > 0 || bw > 0)
+			releaseEpoch++;
+		if (cloud[i])
+			return;
+		defaultTree.update(i);
+		for (CapacityTree tree : proximityTrees.values())
+			tree.update(i);
+	}
+
+	private void defer(int deviceId, double mips, double ram, double bw) {
+		Map<Integer, double[]> reservations = deferredReservations.get();
+		double[] reserved = reservations.get(deviceId);
+		if (reserved == null) {
+			reserved = new double[3];
+			reservations.put(deviceId, reserved);
+		}
+		reserved[0] += mips;
+		reserved[1] += ram;
+		reserved[2] += bw;
+	}
+
+	private double[] getDeferred(int deviceId) {
+		Map<Integer, double[]> reservations = deferredReservations.get();
+		double[] reserved = (reservations == null) ? null : reservations.get(deviceId);
+		return (reserved == null) ? NOTHING_DEFERRED : reserved;
+	}
+
+	/**
+	 * Checks capacity net of the reservations deferred by the current thread.
+	 */
+	private boolean canHostAt(int i, double mips, double ram, double bw) {
+		double[] deferred = getDeferred(devices[i].getId());
+		return freeMips[i] - deferred[0] >= mips && freeRam[i] - deferred[1] >= ram && freeBw[i] - deferred[2] >= bw;
+	}
+
+	private static double[] getDemand(Collection<AppModule> modules) {
+		double[] demand = new double[3];
+		for (AppModule module : modules) {
+			demand[0] += getRequiredMips(module);
+			demand[1] += module.getRam();
+			demand[2] += module.getBw();
+		}
+		return demand;
+	}
+
+	private int getIndex(int deviceId) {
+		Integer i = deviceIndex.get(deviceId);
+		if (i == null)
+			throw new IllegalArgumentException("Fog device " + deviceId + " is not in the capacity index");
+		return i;
+	}
+
+	private int[] sortByLatency(int switchId) {
+		List<Integer> fogIndices = new ArrayList<Integer>();
+		final double[] latencies = new double[devices.length];
+		for (int i = 0; i < devices.length; i++) {
+			if (cloud[i])
+				continue;
+			latencies[i] = latencyOracle.getLatency(switchId, devices[i].getId());
+			if (latencies[i] < Double.POSITIVE_INFINITY)
+				fogIndices.add(i);
+		}
+		Integer[] order = fogIndices.toArray(new Integer[fogIndices.size()]);
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(latencies[i1], latencies[i2]);
+			}
+		});
+		return toArray(Arrays.asList(order));
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = list.get(i);
+		return array;
+	}
+
+	/**
+	 * Segment tree over devices in a given order, holding the largest free capacity of each range.
+	 */
+	private class CapacityTree {
+		/**
+		 * Device index at each position, and position of each device index, -1 if absent
+		 */
+		private final int[] order;
+		private final int[] position;
+		private final int leaves;
+		private final double[] maxMips;
+		private final double[] maxRam;
+		private final double[] maxBw;
+
+		CapacityTree(int[] order) {
+			this.order = order;
+			position = new int[devices.length];
+			Arrays.fill(position, -1);
+			int size = 1;
+			while (size < Math.max(1, order.length))
+				size *= 2;
+			leaves = size;
+			maxMips = new double[2 * size];
+			maxRam = new double[2 * size];
+			maxBw = new double[2 * size];
+			Arrays.fill(maxMips, Double.NEGATIVE_INFINITY);
+			Arrays.fill(maxRam, Double.NEGATIVE_INFINITY);
+			Arrays.fill(maxBw, Double.NEGATIVE_INFINITY);
+			for (int p = 0; p < order.length; p++) {
+				position[order[p]] = p;
+				maxMips[size + p] = freeMips[order[p]];
+				maxRam[size + p] = freeRam[order[p]];
+				maxBw[size + p] = freeBw[order[p]];
+			}
+			for (int node = size - 1; node > 0; node--)
+				pull(node);
+		}
+
+		private void pull(int node) {
+			maxMips[node] = Math.max(maxMips[2 * node], maxMips[2 * node + 1]);
+			maxRam[node] = Math.max(maxRam[2 * node], maxRam[2 * node + 1]);
+			maxBw[node] = Math.max(maxBw[2 * node], maxBw[2 * node + 1]);
+		}
+
+		void update(int deviceIndex) {
+			int p = position[deviceIndex];
+			if (p < 0)
+				return;
+			int node = leaves + p;
+			maxMips[node] = freeMips[deviceIndex];
+			maxRam[node] = freeRam[deviceIndex];
+			maxBw[node] = freeBw[deviceIndex];
+			for (node /= 2; node > 0; node /= 2)
+				pull(node);
+		}
+
+		/**
+		 * Returns the index of the first device in order with enough capacity, -1 if none.
+		 */
+		int findFirst(double mips, double ram, double bw) {
+			return findFirst(1, mips, ram, bw);
+		}
+
+		private int findFirst(int node, double mips, double ram, double bw) {
+			if (maxMips[node] < mips || maxRam[node] < ram || maxBw[node] < bw)
+				return -1;
+			if (node >= leaves)
+				return canHostAt(order[node - leaves], mips, ram, bw) ? order[node - leaves] : -1;
+			int result = findFirst(2 * node, mips, ram, bw);
+			return (result >= 0) ? result : findFirst(2 * node + 1, mips, ram, bw);
+		}
+	}
+
+}
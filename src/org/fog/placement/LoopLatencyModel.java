@@ -0,0 +1,152 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Fog Simulation) Toolkit for Modeling and Simulation of Fog Computing
+ *
+ */
+package org.fog.placement;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.fog.application.AppEdge;
+import org.fog.application.AppLoop;
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.application.CompiledEdge;
+import org.fog.entities.ActuatorCharacteristics;
+import org.fog.entities.EndDevice;
+import org.fog.entities.Sensor;
+import org.fog.entities.SensorCharacteristics;
+import org.fog.entities.SensorPopulation;
+import org.fog.network.LatencyOracle;
+import org.fog.network.PhysicalTopology;
+
+/**
+ * Loop latency model shared by the latency-aware placement policies. Holds the latency targets of the loops, pairs
+ * sensors with actuators, and predicts the latency of a loop of an application instance under a placement of its
+ * modules: the delays given by the {@link LatencyOracle} on the edges of the loop, from the end-device of the sensor to
+ * the modules, between modules and from the modules to the actuator, plus the processing time of each module.
+ */
+public class LoopLatencyModel {
+
+	/**
+	 * Latency target of loops without a specific target, in ms
+	 */
+	private double latencyTarget;
+
+	/**
+	 * Map from loop ID to latency target of the loop
+	 */
+	private Map<Integer, Double> loopLatencyTargets;
+
+	public LoopLatencyModel(double latencyTarget) {
+		this.setLatencyTarget(latencyTarget);
+		this.loopLatencyTargets = new HashMap<Integer, Double>();
+	}
+
+	/**
+	 * Evaluates a placement of the modules of an application instance.
+	 * @param deviceIds ID of the device hosting each module, indexed by {@link Application#getVertexIndex(String) vertex index}
+	 * @param endDeviceId ID of the end-device of the sensor of the instance, -1 if unknown
+	 * @param actuatorId ID of the actuator of the instance, -1 if none
+	 * @return number of loops missing their latency target, and sum of the predicted latencies of the loops
+	 */
+	public double[] evaluate(Application application, int[] deviceIds, int endDeviceId, int actuatorId) {
+		double[] evaluation = new double[2];
+		for (AppLoop loop : application.getLoops()) {
+			double latency = predictLatency(application, loop, deviceIds, endDeviceId, actuatorId);
+			if (latency > getLatencyTarget(loop.getLoopId()))
+				evaluation[0]++;
+			evaluation[1] += latency;
+		}
+		return evaluation;
+	}
+
+	/**
+	 * Predicts the latency of a loop of an application instance under a placement of its modules.
+	 * @param deviceIds ID of the device hosting each module, indexed by {@link Application#getVertexIndex(String) vertex index}
+	 * @param endDeviceId ID of the end-device of the sensor of the instance, -1 if unknown
+	 * @param actuatorId ID of the actuator of the instance, -1 if none
+	 * @return latency in ms, infinity if the sensor or actuator cannot reach the modules
+	 */
+	public double predictLatency(Application application, AppLoop loop, int[] deviceIds, int endDeviceId, int actuatorId) {
+		LatencyOracle latencyOracle = PhysicalTopology.getInstance().getLatencyOracle();
+		double latency = 0;
+		for (CompiledEdge compiledEdge : application.getLoopEdges(loop)) {
+			if (compiledEdge == null)
+				continue;
+			AppEdge edge = compiledEdge.getEdge();
+			if (edge.getEdgeType() == AppEdge.SENSOR) {
+				if (endDeviceId < 0)
+					return Double.POSITIVE_INFINITY;
+				latency += latencyOracle.getDelay(endDeviceId, deviceIds[compiledEdge.getDestIndex()], edge.getTupleNwLength());
+			} else if (edge.getEdgeType() == AppEdge.ACTUATOR) {
+				if (actuatorId < 0)
+					return Double.POSITIVE_INFINITY;
+				latency += latencyOracle.getDelay(deviceIds[compiledEdge.getSrcIndex()], actuatorId, edge.getTupleNwLength());
+			} else {
+				latency += latencyOracle.getDelay(deviceIds[compiledEdge.getSrcIndex()], deviceIds[compiledEdge.getDestIndex()],
+						edge.getTupleNwLength());
+			}
+			AppModule module = application.getModuleByIndex(compiledEdge.getDestIndex());
+			if (module != null)
+				latency += edge.getTupleCpuLength() / module.getMips();
+		}
+		return latency;
+	}
+
+	/**
+	 * Returns the ID of the end-device a sensor is attached to, -1 if unknown.
+	 */
+	public static int getEndDeviceId(int sensorId) {
+		SimEntity entity = CloudSim.getEntity(sensorId);
+		EndDevice device = null;
+		if (entity instanceof Sensor)
+			device = ((Sensor) entity).getDevice();
+		else if (entity instanceof SensorPopulation && ((SensorPopulation) entity).getMemberCount() > 0)
+			device = ((SensorPopulation) entity).getMemberDevice(0);
+		return (device == null) ? -1 : device.getId();
+	}
+
+	/**
+	 * Get the actuator paired with given sensor, among the actuators of its application. For example, the sensors and
+	 * actuators in a smartphone are coupled with each other. Association is checked by looking at names; an application
+	 * with a single actuator pairs it with all its sensors.
+	 * @param actuators actuators of the application of the sensor
+	 * @return the paired actuator, null if none
+	 */
+	public static ActuatorCharacteristics getCorrespondingActuator(SensorCharacteristics sensorCharacteristics,
+			Collection<ActuatorCharacteristics> actuators) {
+		// Look at the last part of name to check correspondence
+		String suffix = CloudSim.getEntityName(sensorCharacteristics.getId()).substring(2);
+		for (ActuatorCharacteristics ac : actuators) {
+			if (CloudSim.getEntityName(ac.getId()).contains(suffix))
+				return ac;
+		}
+		return (actuators.size() == 1) ? actuators.iterator().next() : null;
+	}
+
+	public double getLatencyTarget() {
+		return latencyTarget;
+	}
+
+	public void setLatencyTarget(double latencyTarget) {
+		this.latencyTarget = latencyTarget;
+	}
+
+	public double getLatencyTarget(int loopId) {
+		Double target = loopLatencyTargets.get(loopId);
+		return (target != null) ? target : getLatencyTarget();
+	}
+
+	/**
+	 * Sets the latency target of a loop, overriding the default target.
+	 */
+	public void setLatencyTarget(int loopId, double latencyTarget) {
+		loopLatencyTargets.put(loopId, latencyTarget);
+	}
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Fog Simulation) Toolkit for Modeling and Simulation of Fog Computing
+ *
+ */
+package org.fog.placement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.fog.application.AppLoop;
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.entities.Actuator;
+import org.fog.entities.ActuatorCharacteristics;
+import org.fog.entities.FogDevice;
+import org.fog.entities.FogDeviceCharacteristics;
+import org.fog.entities.Sensor;
+import org.fog.entities.SensorCharacteristics;
+import org.fog.network.LatencyOracle;
+import org.fog.utils.Logger;
+
+/**
+ * Module Placement policy that places the modules of each sensor-actuator pair on the fog device predicting the lowest
+ * loop latency, and on the cloud only when no fog device meets the latency target of the loops.
+ * Creates a separate instance of complete application for each sensor-actuator pair, as {@link ModulePlacementOnlyCloud}.
+ *
+ * The latency of a loop on a candidate device is predicted as the delay of the sensor tuple from the end-device of the
+ * sensor to the device, plus the processing time of each module, plus the delay of the actuator tuple from the device
+ * to the end-device of the actuator. Network delays are given by the {@link LatencyOracle} of the physical topology.
+ * A device is a candidate only if the {@link CapacityIndex} of the {@link PlacementContext} shows it can host all
+ * modules, net of the modules placed on it by this and other policies. Instances of applications created from the same template
+ * reuse placements through the {@link PlacementCache} of the {@link PlacementContext}.
+ */
+public class ModulePlacementLatencyAware extends ModulePlacementPolicy {
+	private static String LOG_TAG = "LATENCY_AWARE_PLACEMENT";
+
+	/**
+	 * List of sensors considered for placement
+	 */
+	private List<Sensor> sensors;
+
+	/**
+	 * List of actuators considered for placement
+	 */
+	private List<Actuator> actuators;
+
+	/**
+	 * Latency targets of the loops and prediction of their latencies
+	 */
+	private LoopLatencyModel latencyModel;
+
+	public ModulePlacementLatencyAware(List<FogDevice> fogDevices, List<Sensor> sensors, List<Actuator> actuators,
+			Application application, double latencyTarget){
+		super();
+		this.setFogDevices(fogDevices);
+		this.setApplication(application);
+		this.setSensors(sensors);
+		this.setActuators(actuators);
+		this.latencyModel = new LoopLatencyModel(latencyTarget);
+		this.setModuleToDeviceMap(new HashMap<String, List<Integer>>());
+		this.setDeviceToModuleMap(new HashMap<Integer, List<AppModule>>());
+	}
+
+	@Override
+	public List<ModulePlacement> computeModulePlacements(
+			List<FogDeviceCharacteristics> fogDeviceCharacteristics,
+			List<SensorCharacteristics> sensorCharacteristics,
+			List<ActuatorCharacteristics> actuatorCharacteristics) {
+
+		for (FogDeviceCharacteristics fc : fogDeviceCharacteristics) {
+			getFogDeviceCharacteristics().put(fc.getId(), fc);
+		}
+		for (SensorCharacteristics sc : sensorCharacteristics) {
+			if (sc.getAppId().equals(getApplication().getAppId()))
+				getSensorCharacteristics().put(sc.getId(), sc);
+		}
+		for (ActuatorCharacteristics ac : actuatorCharacteristics) {
+			SimEntity actuator = CloudSim.getEntity(ac.getId());
+			if (actuator instanceof Actuator && ((Actuator) actuator).getAppId().equals(getApplication().getAppId()))
+				getActuatorCharacteristics().put(ac.getId(), ac);
+		}
+
+		FogDeviceCharacteristics cloud = null;
+		for (FogDeviceCharacteristics fc : getFogDeviceCharacteristics().values()) {
+			if (fc.isCloudDatacenter())
+				cloud = fc;
+		}
+
+		CapacityIndex capacityIndex = PlacementContext.getInstance().getCapacityIndex();
+		// the cache is shared by all policies, while placements computed in parallel must not depend on each other
+		PlacementCache placementCache = capacityIndex.isDeferring() ? null : PlacementContext.getInstance().getPlacementCache();
+		String policyKey = getPolicyKey();
+		String fingerprint = (placementCache != null) ? getApplication().getFingerprint() : null;
+
+		List<ModulePlacement> placements = new ArrayList<ModulePlacement>();
+
+		for (int sensorId : getSensorCharacteristics().keySet()) {
+			SensorCharacteristics sensor = getSensorCharacteristics().get(sensorId);
+			ActuatorCharacteristics actuator = LoopLatencyModel.getCorrespondingActuator(sensor, getActuatorCharacteristics().values());
+			int endDeviceId = LoopLatencyModel.getEndDeviceId(sensorId);
+			int actuatorId = (actuator == null) ? -1 : actuator.getId();
+
+			FogDeviceCharacteristics selected = null;
+			String key = null;
+			if (placementCache != null) {
+				key = placementCache.getKey(policyKey, fingerprint, endDeviceId, actuatorId);
+				int[] deviceIds = placementCache.get(key, getApplication().getModules());
+				if (deviceIds != null)
+					selected = getFogDeviceCharacteristics().get(deviceIds[0]);
+			}
+			if (selected == null) {
+				selected = selectDevice(endDeviceId, actuatorId, capacityIndex);
+				if (selected == null)
+					selected = cloud;
+				if (selected == null) {
+					// If no fog device meets the target and there is no cloud datacenter, the placement fails
+					return null;
+				}
+				if (placementCache != null) {
+					int[] deviceIds = new int[getApplication().getModules().size()];
+					Arrays.fill(deviceIds, selected.getId());
+					placementCache.put(key, deviceIds);
+				}
+			}
+			Logger.debug(LOG_TAG, "Placing modules of "+CloudSim.getEntityName(sensorId)+" on "+selected.getResourceName());
+
+			ModulePlacement placement = new ModulePlacement();
+			placement.addSensorId(sensor.getTupleType(), sensorId);
+			if (actuator != null)
+				placement.addActuatorId(actuator.getActuatorType(), actuator.getId());
+			for (AppModule module : getApplication().getModules()) {
+				placement.addMapping(module.getName(), selected.getId());
+			}
+			if (!selected.isCloudDatacenter())
+				capacityIndex.reserve(selected.getId(), getApplication().getModules());
+			placements.add(placement);
+		}
+
+		return placements;
+	}
+
+	@Override
+	public boolean isParallelSafe() {
+		return true;
+	}
+
+	/**
+	 * Returns the fog device predicting the lowest loop latency, among those meeting the latency target and with enough
+	 * capacity for all modules, null if none.
+	 */
+	private FogDeviceCharacteristics selectDevice(int endDeviceId, int actuatorId, CapacityIndex capacityIndex) {
+		int[] deviceIds = new int[getApplication().getNumVertices()];
+		FogDeviceCharacteristics selected = null;
+		double selectedLatency = Double.POSITIVE_INFINITY;
+		double selectedHeadroom = 0;
+		for (FogDeviceCharacteristics fc : getFogDeviceCharacteristics().values()) {
+			if (fc.isCloudDatacenter())
+				continue;
+			if (!capacityIndex.canHost(fc.getId(), getApplication().getModules()))
+				continue;
+			double headroom = capacityIndex.getFreeMips(fc.getId());
+			// all modules on the candidate
+			Arrays.fill(deviceIds, fc.getId());
+			double[] evaluation = latencyModel.evaluate(getApplication(), deviceIds, endDeviceId, actuatorId);
+			if (evaluation[0] > 0 || evaluation[1] == Double.POSITIVE_INFINITY)
+				continue;
+			double latency = evaluation[1];
+			if (latency < selectedLatency || (latency == selectedLatency && headroom > selectedHeadroom)) {
+				selected = fc;
+				selectedLatency = latency;
+				selectedHeadroom = headroom;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Returns a key of the policy and of the latency targets of the loops, for the placement cache.
+	 */
+	private String getPolicyKey() {
+		StringBuilder key = new StringBuilder(getClass().getName());
+		for (AppLoop loop : getApplication().getLoops())
+			key.append(',').append(latencyModel.getLatencyTarget(loop.getLoopId()));
+		return key.toString();
+	}
+
+	/**
+	 * Returns the latency targets of the loops and the prediction of their latencies.
+	 */
+	public LoopLatencyModel getLatencyModel() {
+		return latencyModel;
+	}
+
+	public List<Actuator> getActuators() {
+		return actuators;
+	}
+
+	public void setActuators(List<Actuator> actuators) {
+		this.actuators = actuators;
+	}
+
+	public List<Sensor> getSensors() {
+		return sensors;
+	}
+
+	public void setSensors(List<Sensor> sensors) {
+		this.sensors = sensors;
+	}
+
+}
@@ -99,6 +99,11 @@ public class ModulePlacementOnlyCloud extends ModulePlacementPolicy {
 		return placements;
 	}
 
+	@Override
+	public boolean isParallelSafe() {
+		return true;
+	}
+
 	/**
 	 * Get the actuator paired with given sensor. For example, the sensors and actuators in a smartphone are coupled with each other.
 	 * In current implementation, association is checked by looking at names.
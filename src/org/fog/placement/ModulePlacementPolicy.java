@@ -82,6 +82,16 @@ public abstract class ModulePlacementPolicy {
 	public abstract List<ModulePlacement> computeModulePlacements(List<FogDeviceCharacteristics> fogDeviceCharacteristics, 
 			List<SensorCharacteristics> sensorCharacteristics, List<ActuatorCharacteristics> actuatorCharacteristics);
 	
+	/**
+	 * Whether the policy can compute its placements in parallel with the policies of other applications. Such a policy
+	 * changes no state shared with them, as characteristics, except by reserving capacity in the {@link CapacityIndex}
+	 * of the {@link PlacementContext}.
+	 * @return
+	 */
+	public boolean isParallelSafe() {
+		return false;
+	}
+	
 	/**
 	 * Check if application module can be launched on fog device
 	 * @param fogDevice
@@ -0,0 +1,126 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Fog Simulation) Toolkit for Modeling and Simulation of Fog Computing
+ *
+ */
+package org.fog.placement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.network.LatencyOracle;
+import org.fog.utils.Config;
+
+/**
+ * Cache of the placements of application instances, for scenarios deploying many applications created from the same
+ * template. Two instances get the same placement from a policy when their applications have the same
+ * {@link Application#getFingerprint() fingerprint} and their sensor and actuator hang off the same switches through
+ * links of the same latency and bandwidth: the key of an instance combines these, with a key of the policy and its
+ * parameters.
+ *
+ * A cached placement is reused while no capacity was released in the {@link CapacityIndex} since it was computed, and
+ * while its devices can still host the modules: capacity having only decreased elsewhere, a policy choosing the best
+ * device with enough capacity would make the same choice, up to ties. Placements are kept for the
+ * {@link Config#PLACEMENT_CACHE_SIZE} most recently used keys.
+ */
+public class PlacementCache {
+
+	private final LatencyOracle latencyOracle;
+	private final CapacityIndex capacityIndex;
+	private final LinkedHashMap<String, Entry> entries;
+	private long hits;
+	private long misses;
+
+	private static class Entry {
+		/**
+		 * IDs of the devices modules are placed on, in the order of the modules of the application
+		 */
+		final int[] deviceIds;
+		final long releaseEpoch;
+
+		Entry(int[] deviceIds, long releaseEpoch) {
+			this.deviceIds = deviceIds;
+			this.releaseEpoch = releaseEpoch;
+		}
+	}
+
+	public PlacementCache(LatencyOracle latencyOracle, CapacityIndex capacityIndex) {
+		this.latencyOracle = latencyOracle;
+		this.capacityIndex = capacityIndex;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > Config.PLACEMENT_CACHE_SIZE;
+			}
+		};
+	}
+
+	/**
+	 * Returns the key of an instance of an application.
+	 * @param policyKey key of the policy and of its parameters
+	 * @param fingerprint fingerprint of the application
+	 * @param sensorEndDeviceId ID of the end-device of the sensor of the instance, -1 if none
+	 * @param actuatorId ID of the actuator of the instance, -1 if none
+	 */
+	public String getKey(String policyKey, String fingerprint, int sensorEndDeviceId, int actuatorId) {
+		return policyKey + "|" + getAttachment(sensorEndDeviceId) + "|" + getAttachment(actuatorId) + "|" + fingerprint;
+	}
+
+	private String getAttachment(int entityId) {
+		if (entityId < 0)
+			return "";
+		int switchId = latencyOracle.getAttachmentSwitch(entityId);
+		return switchId + "," + latencyOracle.getLatency(entityId, switchId) + "," + latencyOracle.getBottleneckBandwidth(entityId, switchId);
+	}
+
+	/**
+	 * Returns the placement cached for a key, if it can be reused.
+	 * @param modules modules of the application, in order
+	 * @return IDs of the devices the modules are placed on, in the order of the modules, null if none can be reused
+	 */
+	public synchronized int[] get(String key, List<AppModule> modules) {
+		Entry entry = entries.get(key);
+		if (entry == null || entry.releaseEpoch != capacityIndex.getReleaseEpoch()) {
+			misses++;
+			return null;
+		}
+		Map<Integer, List<AppModule>> deviceModules = new HashMap<Integer, List<AppModule>>();
+		for (int i = 0; i < modules.size(); i++) {
+			if (!deviceModules.containsKey(entry.deviceIds[i]))
+				deviceModules.put(entry.deviceIds[i], new ArrayList<AppModule>());
+			deviceModules.get(entry.deviceIds[i]).add(modules.get(i));
+		}
+		for (Map.Entry<Integer, List<AppModule>> e : deviceModules.entrySet()) {
+			if (!capacityIndex.canHost(e.getKey(), e.getValue())) {
+				misses++;
+				return null;
+			}
+		}
+		hits++;
+		return entry.deviceIds;
+	}
+
+	/**
+	 * Caches the placement computed for a key.
+	 * @param deviceIds IDs of the devices the modules are placed on, in the order of the modules
+	 */
+	public synchronized void put(String key, int[] deviceIds) {
+		if (Config.PLACEMENT_CACHE_SIZE > 0)
+			entries.put(key, new Entry(deviceIds, capacityIndex.getReleaseEpoch()));
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Fog Simulation) Toolkit for Modeling and Simulation of Fog Computing
+ *
+ */
+package org.fog.placement;
+
+import org.fog.network.LatencyOracle;
+import org.fog.network.PhysicalTopology;
+
+/**
+ * Placement state shared by the placement policies and the broker: the capacity index of the fog devices, so that
+ * each policy sees the capacity reserved by the others, and the cache of placements of application instances.
+ *
+ * Both are built on first use for the physical topology. Setting up the topology again replaces its latency oracle,
+ * which is how the context notices that it must rebuild them.
+ */
+public class PlacementContext {
+
+	private static PlacementContext instance;
+
+	/**
+	 * Latency oracle of the topology the state was built for
+	 */
+	private LatencyOracle latencyOracle;
+	private CapacityIndex capacityIndex;
+	private PlacementCache placementCache;
+
+	public static synchronized PlacementContext getInstance() {
+		if (instance == null)
+			instance = new PlacementContext();
+		return instance;
+	}
+
+	private PlacementContext() {
+	}
+
+	/**
+	 * Returns the capacity index of the fog devices of the physical topology.
+	 */
+	public synchronized CapacityIndex getCapacityIndex() {
+		refresh();
+		if (capacityIndex == null)
+			capacityIndex = new CapacityIndex(PhysicalTopology.getInstance().getFogDevices(), latencyOracle);
+		return capacityIndex;
+	}
+
+	/**
+	 * Returns the cache of placements of application instances over the physical topology.
+	 */
+	public synchronized PlacementCache getPlacementCache() {
+		CapacityIndex index = getCapacityIndex();
+		if (placementCache == null)
+			placementCache = new PlacementCache(latencyOracle, index);
+		return placementCache;
+	}
+
+	/**
+	 * Drops the state built for a previous set-up of the topology.
+	 */
+	private void refresh() {
+		LatencyOracle current = PhysicalTopology.getInstance().getLatencyOracle();
+		if (current != latencyOracle) {
+			latencyOracle = current;
+			capacityIndex = null;
+			placementCache = null;
+		}
+	}
+
+}
@@ -2,7 +2,6 @@ package org.fog.utils;
 
 public class Config {
 
-	public static final double RESOURCE_MGMT_INTERVAL = 100;
 	public static int MAX_SIMULATION_TIME = 7000; //1000000;
 	public static int RESOURCE_MANAGE_INTERVAL = 100;
 	public static String FOG_DEVICE_ARCH = "x86";
@@ -13,4 +12,34 @@ public class Config {
 	public static double FOG_DEVICE_COST_PER_MEMORY = 0.05;
 	public static double FOG_DEVICE_COST_PER_STORAGE = 0.001;
 	public static double FOG_DEVICE_COST_PER_BW = 0.0;
+	public static boolean TUPLE_POOLING = false;
+	public static boolean TUPLE_POOL_DEBUG = false;
+	public static int TUPLE_POOL_CAPACITY = 10000;
+	/**
+	 * Directory receiving the result files of a run. Results are printed on the console if null.
+	 */
+	public static String RESULTS_DIRECTORY = null;
+	public static String RUN_ID = "run";
+	/**
+	 * Number of rows of switches without end-devices kept by the latency oracle of the physical topology, and of
+	 * proximity orders kept by the capacity index of the placement context
+	 */
+	public static int LATENCY_ORACLE_CACHE_ROWS = 256;
+	/**
+	 * Compute the placements of applications deployed together in parallel, for placement policies that allow it
+	 */
+	public static boolean PARALLEL_PLACEMENT = false;
+	/**
+	 * Number of threads computing placements in parallel, the number of processors if 0
+	 */
+	public static int PLACEMENT_PARALLELISM = 0;
+	/**
+	 * Number of placements of application instances kept by the placement cache of the placement context, 0 to disable it
+	 */
+	public static int PLACEMENT_CACHE_SIZE = 4096;
+	/**
+	 * Read the characteristics of fog devices, sensors and actuators directly from the entities at startup, instead of
+	 * exchanging a request and a reply with each of them
+	 */
+	public static boolean BULK_REGISTRATION = true;
 }
@@ -25,8 +25,9 @@ public class FogEvents {
 	public static final int STOP_SIMULATION = BASE + 21;
 	public static final int SEND_PERIODIC_TUPLE = BASE+22;
 	public static final int LAUNCH_MODULE_INSTANCE = BASE+23;
-	public static final int RESOURCE_MGMT = BASE+24;
 	public static final int INITIALIZE_SENSOR = BASE+25;
 	public static final int EMIT_TUPLE = BASE+26;
 	public static final int ENDPOINT_CONNECTION = BASE+27;
+	public static final int MOBILITY_UPDATE = BASE+28;
+	public static final int BULK_REGISTRATION = BASE+29;
 }
@@ -0,0 +1,132 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+/**
+ * Geohash encoding and decoding. A geohash interleaves the bits of longitude and latitude, starting with longitude,
+ * each bit halving the current range; every 5 bits give one base32 character. Points sharing a prefix lie in the same
+ * cell, but close points may have different prefixes across cell borders, so distances must not be computed on hashes.
+ */
+public class GeoHash {
+
+	private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+	private static final int[] DECODE = new int[128];
+
+	public static final int MAX_PRECISION = 12;
+
+	static {
+		for (int i = 0; i < DECODE.length; i++)
+			DECODE[i] = -1;
+		for (int i = 0; i < BASE32.length; i++)
+			DECODE[BASE32[i]] = i;
+	}
+
+	/**
+	 * Encodes a point.
+	 * @param latitude latitude in degrees, in [-90, 90]
+	 * @param longitude longitude in degrees, in [-180, 180]
+	 * @param precision number of characters, at most {@link #MAX_PRECISION}
+	 */
+	public static String encode(double latitude, double longitude, int precision) {
+		if (precision < 1 || precision > MAX_PRECISION)
+			throw new IllegalArgumentException("Geohash precision must be between 1 and " + MAX_PRECISION);
+		if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180)
+			throw new IllegalArgumentException("Invalid location (" + latitude + ", " + longitude + ")");
+		double latMin = -90, latMax = 90;
+		double lonMin = -180, lonMax = 180;
+		char[] hash = new char[precision];
+		boolean evenBit = true;
+		for (int c = 0; c < precision; c++) {
+			int value = 0;
+			for (int b = 0; b < 5; b++) {
+				value <<= 1;
+				if (evenBit) {
+					double mid = (lonMin + lonMax) / 2;
+					if (longitude >= mid) {
+						value |= 1;
+						lonMin = mid;
+					} else {
+						lonMax = mid;
+					}
+				} else {
+					double mid = (latMin + latMax) / 2;
+					if (latitude >= mid) {
+						value |= 1;
+						latMin = mid;
+					} else {
+						latMax = mid;
+					}
+				}
+				evenBit = !evenBit;
+			}
+			hash[c] = BASE32[value];
+		}
+		return new String(hash);
+	}
+
+	public static String encode(GeoLocation location, int precision) {
+		return encode(location.getLatitude(), location.getLongitude(), precision);
+	}
+
+	/**
+	 * Returns the cell of a geohash.
+	 * @throws IllegalArgumentException if the hash contains a character outside the geohash alphabet
+	 */
+	public static GeoCoverage decodeBounds(String hash) {
+		double latMin = -90, latMax = 90;
+		double lonMin = -180, lonMax = 180;
+		boolean evenBit = true;
+		for (int c = 0; c < hash.length(); c++) {
+			char ch = Character.toLowerCase(hash.charAt(c));
+			int value = (ch < DECODE.length) ? DECODE[ch] : -1;
+			if (value < 0)
+				throw new IllegalArgumentException("Invalid geohash " + hash);
+			for (int b = 4; b >= 0; b--) {
+				int bit = (value >> b) & 1;
+				if (evenBit) {
+					double mid = (lonMin + lonMax) / 2;
+					if (bit == 1)
+						lonMin = mid;
+					else
+						lonMax = mid;
+				} else {
+					double mid = (latMin + latMax) / 2;
+					if (bit == 1)
+						latMin = mid;
+					else
+						latMax = mid;
+				}
+				evenBit = !evenBit;
+			}
+		}
+		return new GeoCoverage(latMin, latMax, lonMin, lonMax);
+	}
+
+	/**
+	 * Returns the center of the cell of a geohash.
+	 * @throws IllegalArgumentException if the hash contains a character outside the geohash alphabet
+	 */
+	public static GeoLocation decode(String hash) {
+		GeoCoverage cell = decodeBounds(hash);
+		return new GeoLocation((cell.getLat_l() + cell.getLat_u()) / 2, (cell.getLong_l() + cell.getLong_u()) / 2);
+	}
+
+	/**
+	 * Returns true if the string is a non-empty geohash.
+	 */
+	public static boolean isValid(String hash) {
+		if (hash == null || hash.length() == 0 || hash.length() > MAX_PRECISION)
+			return false;
+		for (int c = 0; c < hash.length(); c++) {
+			char ch = Character.toLowerCase(hash.charAt(c));
+			if (ch >= DECODE.length || DECODE[ch] < 0)
+				return false;
+		}
+		return true;
+	}
+
+}
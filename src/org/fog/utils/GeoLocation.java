@@ -2,6 +2,11 @@ package org.fog.utils;
 
 public class GeoLocation {
 
+	/**
+	 * Mean radius of the Earth in km
+	 */
+	public static final double EARTH_RADIUS = 6371.0088;
+
 	private double latitude;
 	private double longitude;
 	
@@ -23,5 +28,21 @@ public class GeoLocation {
 		this.longitude = longitude;
 	}
 	
+	/**
+	 * Great-circle distance to another location, in km (haversine formula).
+	 */
+	public double distanceTo(GeoLocation other){
+		double dLat = Math.toRadians(other.latitude - latitude);
+		double dLon = Math.toRadians(other.longitude - longitude);
+		double a = Math.sin(dLat/2)*Math.sin(dLat/2)
+				+ Math.cos(Math.toRadians(latitude))*Math.cos(Math.toRadians(other.latitude))*Math.sin(dLon/2)*Math.sin(dLon/2);
+		return 2*EARTH_RADIUS*Math.asin(Math.min(1, Math.sqrt(a)));
+	}
+	
+	@Override
+	public String toString(){
+		return "("+latitude+", "+longitude+")";
+	}
+	
 	
 }
@@ -0,0 +1,177 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-memory log-linear histogram of latencies, in the style of HdrHistogram.
+ * Values are counted in units of <b>resolution</b>. Values below 2^subBucketBits units are counted exactly,
+ * above that each power of two is split into 2^(subBucketBits-1) linear sub-buckets, so the relative error
+ * of a reported value is at most 2^-(subBucketBits-1). The counts array is allocated once and recording
+ * never allocates.
+ */
+public class LatencyHistogram {
+
+	public static final double DEFAULT_RESOLUTION = 0.001;
+	public static final int DEFAULT_SUB_BUCKET_BITS = 8;
+
+	/**
+	 * Smallest distinguishable latency
+	 */
+	private final double resolution;
+	private final int subBucketBits;
+	private final int subBucketCount;
+	private final int subBucketHalfCount;
+	private final long[] counts;
+	private long totalCount;
+	private double sum;
+	private double min;
+	private double max;
+
+	public LatencyHistogram() {
+		this(DEFAULT_RESOLUTION, DEFAULT_SUB_BUCKET_BITS);
+	}
+
+	public LatencyHistogram(double resolution, int subBucketBits) {
+		if (resolution <= 0 || subBucketBits < 1 || subBucketBits > 20)
+			throw new IllegalArgumentException("Invalid histogram resolution or precision");
+		this.resolution = resolution;
+		this.subBucketBits = subBucketBits;
+		this.subBucketCount = 1 << subBucketBits;
+		this.subBucketHalfCount = subBucketCount >> 1;
+		this.counts = new long[subBucketCount + (63 - subBucketBits) * subBucketHalfCount];
+		reset();
+	}
+
+	/**
+	 * Records a latency. Negative values are counted as 0.
+	 * @param value latency to record
+	 */
+	public void recordValue(double value) {
+		if (value < 0)
+			value = 0;
+		counts[getIndex((long) (value / resolution))]++;
+		totalCount++;
+		sum += value;
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+	}
+
+	/**
+	 * Adds the counts of another histogram to this one, e.g. for a parallel partition or another run.
+	 * @param other histogram with the same resolution and precision
+	 */
+	public void add(LatencyHistogram other) {
+		if (other.resolution != resolution || other.subBucketBits != subBucketBits)
+			throw new IllegalArgumentException("Cannot merge histograms of different resolution or precision");
+		for (int i = 0; i < counts.length; i++)
+			counts[i] += other.counts[i];
+		totalCount += other.totalCount;
+		sum += other.sum;
+		if (other.min < min)
+			min = other.min;
+		if (other.max > max)
+			max = other.max;
+	}
+
+	/**
+	 * Returns the latency below which the given percentage of recorded latencies fall, as the highest value
+	 * equivalent to the bucket holding it. Returns 0 if nothing has been recorded.
+	 * @param percentile percentage between 0 and 100
+	 */
+	public double getValueAtPercentile(double percentile) {
+		if (totalCount == 0)
+			return 0;
+		long countAtPercentile = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * totalCount);
+		countAtPercentile = Math.max(1, countAtPercentile);
+		long runningCount = 0;
+		for (int i = 0; i < counts.length; i++) {
+			runningCount += counts[i];
+			if (runningCount >= countAtPercentile)
+				return Math.max(min, Math.min(max, (getHighestValue(i) + 1) * resolution));
+		}
+		return max;
+	}
+
+	public double getP50() {
+		return getValueAtPercentile(50);
+	}
+
+	public double getP95() {
+		return getValueAtPercentile(95);
+	}
+
+	public double getP99() {
+		return getValueAtPercentile(99);
+	}
+
+	public double getP999() {
+		return getValueAtPercentile(99.9);
+	}
+
+	public double getMax() {
+		return (totalCount == 0) ? 0 : max;
+	}
+
+	public double getMin() {
+		return (totalCount == 0) ? 0 : min;
+	}
+
+	public double getMean() {
+		return (totalCount == 0) ? 0 : sum / totalCount;
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public double getResolution() {
+		return resolution;
+	}
+
+	public int getSubBucketBits() {
+		return subBucketBits;
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		sum = 0;
+		min = Double.MAX_VALUE;
+		max = 0;
+	}
+
+	private int getIndex(long units) {
+		if (units < subBucketCount)
+			return (int) units;
+		int shift = 64 - Long.numberOfLeadingZeros(units) - subBucketBits;
+		int subBucket = (int) (units >>> shift);
+		return subBucketCount + (shift - 1) * subBucketHalfCount + (subBucket - subBucketHalfCount);
+	}
+
+	/**
+	 * Highest value, in units of resolution, counted in the bucket at <b>index</b>
+	 */
+	private long getHighestValue(int index) {
+		if (index < subBucketCount)
+			return index;
+		int offset = index - subBucketCount;
+		int shift = offset / subBucketHalfCount + 1;
+		long subBucket = offset % subBucketHalfCount + subBucketHalfCount;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + getTotalCount() + " mean=" + getMean() + " p50=" + getP50() + " p95=" + getP95()
+				+ " p99=" + getP99() + " p999=" + getP999() + " max=" + getMax();
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * {@link Random} backed by a {@link SplittableRandom}, so that it can be handed to code expecting a Random while
+ * drawing from an independent, unsynchronized stream. Not thread-safe: a stream belongs to one sensor or module.
+ */
+public class RandomStream extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private SplittableRandom generator;
+
+	/**
+	 * Creates a stream with a seed unlikely to be used by any other stream.
+	 */
+	public RandomStream() {
+		super();
+	}
+
+	public RandomStream(long seed) {
+		super(seed);
+	}
+
+	/**
+	 * Restarts the stream from the given seed.
+	 */
+	@Override
+	public synchronized void setSeed(long seed) {
+		// called by the Random constructor, before the fields of this class are initialized
+		super.setSeed(seed);
+		generator = new SplittableRandom(seed);
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (generator.nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public int nextInt() {
+		return generator.nextInt();
+	}
+
+	@Override
+	public int nextInt(int bound) {
+		return generator.nextInt(bound);
+	}
+
+	@Override
+	public long nextLong() {
+		return generator.nextLong();
+	}
+
+	@Override
+	public double nextDouble() {
+		return generator.nextDouble();
+	}
+
+	@Override
+	public boolean nextBoolean() {
+		return generator.nextBoolean();
+	}
+
+	/**
+	 * Returns a new stream, statistically independent of this one, and advances this stream.
+	 */
+	public RandomStream split() {
+		return new RandomStream(generator.split().nextLong());
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * Derives the random number streams of a run from a master seed. Each sensor and module gets its own stream,
+ * identified by name, so the values drawn by one do not depend on how many values the others drew, nor on the order
+ * in which streams are created. Two runs with the same master seed and the same topology draw the same values.
+ *
+ * Without a call to {@link #setMasterSeed(long)} the master seed is taken from the clock, so runs are not reproducible.
+ */
+public class RandomStreams {
+
+	/**
+	 * Odd constant spreading name hashes over the seed space (golden ratio)
+	 */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private static RandomStreams instance;
+
+	private long masterSeed;
+	private boolean seeded;
+
+	public static RandomStreams getInstance(){
+		if(instance == null)
+			instance = new RandomStreams();
+		return instance;
+	}
+
+	private RandomStreams(){
+		masterSeed = System.nanoTime() ^ System.currentTimeMillis();
+	}
+
+	/**
+	 * Sets the master seed. Streams obtained before this call are not affected.
+	 */
+	public void setMasterSeed(long masterSeed){
+		this.masterSeed = masterSeed;
+		this.seeded = true;
+	}
+
+	public long getMasterSeed(){
+		return masterSeed;
+	}
+
+	/**
+	 * Returns true if the master seed was set explicitly.
+	 */
+	public boolean isSeeded(){
+		return seeded;
+	}
+
+	/**
+	 * Returns a new stream for the given name, starting from the seed derived from the master seed and the name.
+	 * @param name name identifying the consumer of the stream, e.g. "sensor/s-0"
+	 */
+	public RandomStream getStream(String name){
+		return new RandomStream(getStreamSeed(name));
+	}
+
+	/**
+	 * Returns the seed of the stream of the given name.
+	 */
+	public long getStreamSeed(String name){
+		// FNV-1a hash of the name
+		long hash = 0xcbf29ce484222325L;
+		for(int i=0;i<name.length();i++){
+			hash ^= name.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return new SplittableRandom(masterSeed + hash*GOLDEN_GAMMA).nextLong();
+	}
+
+	/**
+	 * Returns the master seeds of independent replications derived from a single seed.
+	 * @param seed seed of the set of replications
+	 * @param replications number of replications
+	 */
+	public static long[] getReplicationSeeds(long seed, int replications){
+		SplittableRandom generator = new SplittableRandom(seed);
+		long[] seeds = new long[replications];
+		for(int i=0;i<replications;i++)
+			seeds[i] = generator.split().nextLong();
+		return seeds;
+	}
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+/**
+ * Runs independent replications of a simulation and reports the mean and confidence interval of every output metric.
+ *
+ * The simulation engine keeps its state in static fields, so each replication runs in its own JVM, with the same class
+ * path as the runner. Replication i uses the i-th seed derived from the master seed by {@link RandomStreams#getReplicationSeeds(long, int)}
+ * and writes its results with {@link ResultsWriter} under the run ID "rep-i". The results of all replications are then
+ * read back and aggregated per metric, a metric being a numeric column of a results table for one device, link, loop or
+ * tuple type.
+ */
+public class ReplicationRunner {
+
+	/**
+	 * First argument of the command line of a replication JVM
+	 */
+	public static final String REPLICATION_ARG = "--replication";
+	public static final String SUMMARY_FILE = "replications.csv";
+
+	private final String mainClass;
+	private final String[] mainArgs;
+	private final String resultsDirectory;
+	private int parallelism;
+	private double confidenceLevel;
+	private List<String> jvmOptions;
+
+	/**
+	 * @param mainClass class whose main method builds and runs the simulation
+	 * @param mainArgs arguments of the main method
+	 * @param resultsDirectory directory receiving the results of all replications and the summary
+	 */
+	public ReplicationRunner(String mainClass, String[] mainArgs, String resultsDirectory) {
+		this.mainClass = mainClass;
+		this.mainArgs = mainArgs;
+		this.resultsDirectory = resultsDirectory;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		this.confidenceLevel = 0.95;
+		this.jvmOptions = new ArrayList<String>();
+	}
+
+	/**
+	 * Runs the replications and aggregates their results. The summary is also written to {@link #SUMMARY_FILE}.
+	 * @param masterSeed seed from which the seeds of the replications are derived
+	 * @param replications number of replications, at least 2
+	 * @return estimate of every metric, keyed by "table[key].column"
+	 * @throws IOException if a replication fails or its results cannot be read
+	 */
+	public Map<String, Estimate> run(long masterSeed, int replications) throws IOException, InterruptedException {
+		if (replications < 2)
+			throw new IllegalArgumentException("At least 2 replications are needed for a confidence interval");
+		new File(resultsDirectory).mkdirs();
+		final long[] seeds = RandomStreams.getReplicationSeeds(masterSeed, replications);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, replications)));
+		try {
+			List<Future<Integer>> exitCodes = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < replications; i++) {
+				final int replication = i;
+				exitCodes.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						return runReplication(getRunId(replication), seeds[replication]);
+					}
+				}));
+			}
+			for (int i = 0; i < replications; i++) {
+				int exitCode;
+				try {
+					exitCode = exitCodes.get(i).get();
+				} catch (ExecutionException e) {
+					throw new IOException("Replication " + i + " could not be started", e.getCause());
+				}
+				if (exitCode != 0)
+					throw new IOException("Replication " + i + " exited with code " + exitCode + ", see " + getLogFile(getRunId(i)));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		Map<String, Estimate> estimates = aggregate(replications);
+		writeSummary(estimates);
+		return estimates;
+	}
+
+	private static String getRunId(int replication) {
+		return "rep-" + replication;
+	}
+
+	private File getLogFile(String runId) {
+		return new File(resultsDirectory, runId + ".log");
+	}
+
+	private int runReplication(String runId, long seed) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(jvmOptions);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ReplicationRunner.class.getName());
+		command.add(REPLICATION_ARG);
+		command.add(Long.toString(seed));
+		command.add(resultsDirectory);
+		command.add(runId);
+		command.add(mainClass);
+		command.addAll(Arrays.asList(mainArgs));
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(getLogFile(runId));
+		return builder.start().waitFor();
+	}
+
+	/**
+	 * Reads the results of the replications and computes the estimate of every metric.
+	 */
+	private Map<String, Estimate> aggregate(int replications) throws IOException {
+		Map<String, List<Double>> samples = new LinkedHashMap<String, List<Double>>();
+		for (String table : new String[]{ResultsWriter.DEVICES, ResultsWriter.LINKS, ResultsWriter.LOOPS, ResultsWriter.TUPLE_TYPES}) {
+			String[] columns = ResultsWriter.getColumns(table);
+			String types = ResultsWriter.getColumnTypes(table);
+			// column 0 is the run ID, column 1 identifies the row, and so does column 2 when it holds a name
+			int keyColumn = (types.charAt(2) == ResultsWriter.STRING) ? 2 : 1;
+			for (int r = 0; r < replications; r++) {
+				String fileName = resultsDirectory + File.separator + getRunId(r) + "-" + table + ".fcol";
+				Map<String, List<Object>> values = ResultsReader.readColumns(fileName);
+				List<Object> keys = values.get(columns[keyColumn]);
+				for (int c = keyColumn + 1; c < columns.length; c++) {
+					if (types.charAt(c) == ResultsWriter.STRING)
+						continue;
+					List<Object> column = values.get(columns[c]);
+					for (int row = 0; row < keys.size(); row++) {
+						String metric = table + "[" + keys.get(row) + "]." + columns[c];
+						List<Double> sample = samples.get(metric);
+						if (sample == null) {
+							sample = new ArrayList<Double>();
+							samples.put(metric, sample);
+						}
+						sample.add(((Number) column.get(row)).doubleValue());
+					}
+				}
+			}
+		}
+		Map<String, Estimate> estimates = new LinkedHashMap<String, Estimate>();
+		for (Map.Entry<String, List<Double>> entry : samples.entrySet())
+			estimates.put(entry.getKey(), new Estimate(entry.getValue(), confidenceLevel));
+		return estimates;
+	}
+
+	private void writeSummary(Map<String, Estimate> estimates) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(new File(resultsDirectory, SUMMARY_FILE)));
+		try {
+			out.write("metric,replications,mean,half_width,confidence_level");
+			out.newLine();
+			for (Map.Entry<String, Estimate> entry : estimates.entrySet()) {
+				Estimate estimate = entry.getValue();
+				out.write("\"" + entry.getKey().replace("\"", "\"\"") + "\"," + estimate.getCount() + "," + estimate.getMean() + ","
+						+ estimate.getHalfWidth() + "," + confidenceLevel);
+				out.newLine();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of replications running at the same time.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public double getConfidenceLevel() {
+		return confidenceLevel;
+	}
+
+	public void setConfidenceLevel(double confidenceLevel) {
+		this.confidenceLevel = confidenceLevel;
+	}
+
+	/**
+	 * Returns the options passed to the JVM of every replication, e.g. "-Xmx2g".
+	 */
+	public List<String> getJvmOptions() {
+		return jvmOptions;
+	}
+
+	/**
+	 * Mean and confidence interval of a metric over the replications
+	 */
+	public static class Estimate {
+		private final int count;
+		private final double mean;
+		private final double halfWidth;
+
+		Estimate(List<Double> sample, double confidenceLevel) {
+			count = sample.size();
+			double sum = 0;
+			for (double value : sample)
+				sum += value;
+			mean = sum / count;
+			if (count < 2) {
+				halfWidth = Double.NaN;
+				return;
+			}
+			double squares = 0;
+			for (double value : sample)
+				squares += (value - mean) * (value - mean);
+			double t = new TDistribution(count - 1).inverseCumulativeProbability(1 - (1 - confidenceLevel) / 2);
+			halfWidth = t * Math.sqrt(squares / (count - 1) / count);
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public double getMean() {
+			return mean;
+		}
+
+		public double getHalfWidth() {
+			return halfWidth;
+		}
+
+		@Override
+		public String toString() {
+			return mean + " +/- " + halfWidth;
+		}
+	}
+
+	/**
+	 * Runs replications of a simulation, or a single replication when called by the runner.
+	 * @param args main class, number of replications, master seed, results directory, then the arguments of the main class
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length >= 5 && REPLICATION_ARG.equals(args[0])) {
+			RandomStreams.getInstance().setMasterSeed(Long.parseLong(args[1]));
+			Config.RESULTS_DIRECTORY = args[2];
+			Config.RUN_ID = args[3];
+			Class.forName(args[4]).getMethod("main", String[].class).invoke(null, (Object) Arrays.copyOfRange(args, 5, args.length));
+			return;
+		}
+		if (args.length < 4) {
+			System.out.println("Usage: ReplicationRunner <main class> <replications> <master seed> <results directory> [arguments]");
+			return;
+		}
+		ReplicationRunner runner = new ReplicationRunner(args[0], Arrays.copyOfRange(args, 4, args.length), args[3]);
+		Map<String, Estimate> estimates = runner.run(Long.parseLong(args[2]), Integer.parseInt(args[1]));
+		for (Map.Entry<String, Estimate> entry : estimates.entrySet())
+			System.out.println(entry.getKey() + " ---> " + entry.getValue());
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the columnar result files written by {@link ResultsWriter}.
+ */
+public class ResultsReader {
+
+	/**
+	 * Reads a columnar result file.
+	 * @param fileName path of the .fcol file
+	 * @return map from column name to the values of the column, in schema order
+	 * @throws IOException if the file cannot be read or is not a columnar result file
+	 */
+	public static Map<String, List<Object>> readColumns(String fileName) throws IOException {
+		Map<String, List<Object>> columns = new LinkedHashMap<String, List<Object>>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		try {
+			if (in.readInt() != ResultsWriter.MAGIC)
+				throw new IOException(fileName + " is not a columnar result file");
+			int formatVersion = in.readInt();
+			if (formatVersion != ResultsWriter.FORMAT_VERSION)
+				throw new IOException("Unsupported columnar format version " + formatVersion);
+			in.readInt(); // schema version
+			int numColumns = in.readInt();
+			String[] names = new String[numColumns];
+			char[] types = new char[numColumns];
+			for (int i = 0; i < numColumns; i++) {
+				names[i] = in.readUTF();
+				types[i] = (char) in.readByte();
+				columns.put(names[i], new ArrayList<Object>());
+			}
+			int rows;
+			while ((rows = in.readInt()) > 0) {
+				for (int c = 0; c < numColumns; c++) {
+					List<Object> values = columns.get(names[c]);
+					for (int r = 0; r < rows; r++) {
+						switch (types[c]) {
+						case ResultsWriter.STRING:
+							values.add(in.readUTF());
+							break;
+						case ResultsWriter.LONG:
+							values.add(in.readLong());
+							break;
+						default:
+							values.add(in.readDouble());
+							break;
+						}
+					}
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return columns;
+	}
+
+}
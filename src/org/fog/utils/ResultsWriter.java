@@ -0,0 +1,229 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sink for the results of a simulation run. Each table is written both to a CSV file and to a columnar binary file in
+ * the results directory, the rows of the columnar file being buffered in blocks.
+ *
+ * Tables and their columns are fixed by {@link #SCHEMA_VERSION}; the first column of every table is the run ID.
+ * The columnar file of a table starts with magic, format version, schema version, number of columns, then the name (UTF)
+ * and type (byte 'S', 'L' or 'D') of each column. Rows follow in blocks: the number of rows of the block, then the values
+ * of each column for these rows. A block of 0 rows ends the file.
+ */
+public class ResultsWriter {
+
+	public static final int MAGIC = 0x46434f4c;
+	public static final int FORMAT_VERSION = 1;
+	public static final int SCHEMA_VERSION = 1;
+
+	public static final char STRING = 'S';
+	public static final char LONG = 'L';
+	public static final char DOUBLE = 'D';
+
+	public static final String DEVICES = "devices";
+	public static final String LINKS = "links";
+	public static final String LOOPS = "loops";
+	public static final String TUPLE_TYPES = "tuple_types";
+
+	private static final String[][] COLUMNS = {
+		{"run_id", "device_id", "device_name", "energy", "cost"},
+		{"run_id", "link_id", "link_name", "north_tuples", "north_busy_time", "north_utilization", "south_tuples", "south_busy_time", "south_utilization"},
+		{"run_id", "loop_id", "count", "mean", "p50", "p95", "p99", "p999", "max"},
+		{"run_id", "tuple_type", "count", "mean", "p50", "p95", "p99", "p999", "max"},
+	};
+	private static final String[] TYPES = {"SLSDD", "SLSLDDLDD", "SLLDDDDDD", "SSLDDDDDD"};
+	private static final String[] TABLES = {DEVICES, LINKS, LOOPS, TUPLE_TYPES};
+
+	/**
+	 * Number of rows buffered per block of a columnar file
+	 */
+	private static final int BLOCK_SIZE = 4096;
+
+	private final String runId;
+	private final Map<String, TableFiles> files;
+
+	/**
+	 * Creates the results directory if needed and opens the files of every table, even tables that will get no rows,
+	 * so that each run has the same set of files.
+	 * @param directory directory receiving the files of the run
+	 * @param runId ID of the run, used in file names and as first column of every table
+	 */
+	public ResultsWriter(String directory, String runId) throws IOException {
+		this.runId = runId;
+		this.files = new HashMap<String, TableFiles>();
+		new File(directory).mkdirs();
+		try {
+			for (String table : TABLES)
+				files.put(table, new TableFiles(directory, table));
+		} catch (IOException e) {
+			try {
+				close();
+			} catch (IOException ignored) {
+			}
+			throw e;
+		}
+	}
+
+	public static String[] getColumns(String table) {
+		return COLUMNS[getTableIndex(table)].clone();
+	}
+
+	public static String getColumnTypes(String table) {
+		return TYPES[getTableIndex(table)];
+	}
+
+	private static int getTableIndex(String table) {
+		for (int i = 0; i < TABLES.length; i++) {
+			if (TABLES[i].equals(table))
+				return i;
+		}
+		throw new IllegalArgumentException("Unknown results table " + table);
+	}
+
+	public void writeDevice(int deviceId, String deviceName, double energy, double cost) throws IOException {
+		write(DEVICES, new Object[]{runId, (long) deviceId, deviceName, energy, cost});
+	}
+
+	public void writeLink(int linkId, String linkName, long northTuples, double northBusyTime, double northUtilization,
+			long southTuples, double southBusyTime, double southUtilization) throws IOException {
+		write(LINKS, new Object[]{runId, (long) linkId, linkName, northTuples, northBusyTime, northUtilization,
+				southTuples, southBusyTime, southUtilization});
+	}
+
+	public void writeLoop(int loopId, LatencyHistogram histogram) throws IOException {
+		write(LOOPS, new Object[]{runId, (long) loopId, histogram.getTotalCount(), histogram.getMean(), histogram.getP50(),
+				histogram.getP95(), histogram.getP99(), histogram.getP999(), histogram.getMax()});
+	}
+
+	public void writeTupleType(String tupleType, LatencyHistogram histogram) throws IOException {
+		write(TUPLE_TYPES, new Object[]{runId, tupleType, histogram.getTotalCount(), histogram.getMean(), histogram.getP50(),
+				histogram.getP95(), histogram.getP99(), histogram.getP999(), histogram.getMax()});
+	}
+
+	/**
+	 * Flushes and closes the files of all tables.
+	 */
+	public void close() throws IOException {
+		IOException failure = null;
+		for (TableFiles tableFiles : files.values()) {
+			try {
+				tableFiles.close();
+			} catch (IOException e) {
+				if (failure == null)
+					failure = e;
+			}
+		}
+		files.clear();
+		if (failure != null)
+			throw failure;
+	}
+
+	private void write(String table, Object[] row) throws IOException {
+		files.get(table).write(row);
+	}
+
+	/**
+	 * CSV and columnar files of one table
+	 */
+	private class TableFiles {
+		private final String types;
+		private final BufferedWriter csv;
+		private final DataOutputStream columnar;
+		private final List<Object[]> block;
+
+		TableFiles(String directory, String table) throws IOException {
+			String[] columns = COLUMNS[getTableIndex(table)];
+			types = TYPES[getTableIndex(table)];
+			String prefix = directory + File.separator + runId + "-" + table;
+			csv = new BufferedWriter(new FileWriter(prefix + ".csv"));
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0)
+					csv.write(',');
+				csv.write(columns[i]);
+			}
+			csv.newLine();
+			columnar = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(prefix + ".fcol")));
+			columnar.writeInt(MAGIC);
+			columnar.writeInt(FORMAT_VERSION);
+			columnar.writeInt(SCHEMA_VERSION);
+			columnar.writeInt(columns.length);
+			for (int i = 0; i < columns.length; i++) {
+				columnar.writeUTF(columns[i]);
+				columnar.writeByte(types.charAt(i));
+			}
+			block = new ArrayList<Object[]>();
+		}
+
+		void write(Object[] row) throws IOException {
+			for (int i = 0; i < row.length; i++) {
+				if (i > 0)
+					csv.write(',');
+				csv.write(toCsv(row[i]));
+			}
+			csv.newLine();
+			block.add(row);
+			if (block.size() >= BLOCK_SIZE)
+				flushBlock();
+		}
+
+		private void flushBlock() throws IOException {
+			if (block.isEmpty())
+				return;
+			columnar.writeInt(block.size());
+			for (int c = 0; c < types.length(); c++) {
+				for (Object[] row : block) {
+					Object value = row[c];
+					switch (types.charAt(c)) {
+					case STRING:
+						columnar.writeUTF(value == null ? "" : value.toString());
+						break;
+					case LONG:
+						columnar.writeLong(((Number) value).longValue());
+						break;
+					default:
+						columnar.writeDouble(((Number) value).doubleValue());
+						break;
+					}
+				}
+			}
+			block.clear();
+		}
+
+		void close() throws IOException {
+			try {
+				flushBlock();
+				columnar.writeInt(0);
+			} finally {
+				columnar.close();
+				csv.close();
+			}
+		}
+
+		private String toCsv(Object value) {
+			if (value == null)
+				return "";
+			String s = value.toString();
+			if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0)
+				return s;
+			return "\"" + s.replace("\"", "\"\"") + "\"";
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Memory-mapped binary trace of device emissions, written by {@link SensorTraceConverter}. Records are grouped by
+ * device and sorted by time within a device, so a sensor replaying a device reads a contiguous range of the file.
+ * Traces are opened once per file through {@link #open(String)}: all sensors replaying the same file share the mapping,
+ * and only the pages actually read are loaded by the operating system.
+ *
+ * File layout, big-endian: magic, version and header length as ints, then the trace origin (smallest timestamp) as a
+ * double, the number of devices as an int and, for each device, its name (UTF), index of its first record and number
+ * of records (longs). Records of {@link #RECORD_SIZE} bytes follow the header: timestamp (double), payload bytes (int)
+ * and CPU length in MI (int).
+ */
+public class SensorTrace {
+
+	public static final int MAGIC = 0x46545250;
+	public static final int VERSION = 1;
+	public static final int RECORD_SIZE = 16;
+
+	/**
+	 * Size of the mapped segments of the record area, a multiple of the record size so that no record spans two segments
+	 */
+	static final long SEGMENT_SIZE = RECORD_SIZE * (1L << 26);
+
+	private static final Map<String, SensorTrace> openTraces = new HashMap<String, SensorTrace>();
+
+	private final String fileName;
+	private final double origin;
+	private final Map<String, long[]> deviceRanges;
+	private final long recordCount;
+	private final MappedByteBuffer[] segments;
+
+	/**
+	 * Returns the trace of the given file, mapping it on first use.
+	 * @param fileName path of the binary trace
+	 * @throws IOException if the file cannot be read or is not a sensor trace
+	 */
+	public static synchronized SensorTrace open(String fileName) throws IOException {
+		String key = new File(fileName).getCanonicalPath();
+		SensorTrace trace = openTraces.get(key);
+		if (trace == null) {
+			trace = new SensorTrace(key);
+			openTraces.put(key, trace);
+		}
+		return trace;
+	}
+
+	private SensorTrace(String fileName) throws IOException {
+		this.fileName = fileName;
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+			if (in.readInt() != MAGIC)
+				throw new IOException(fileName + " is not a sensor trace");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported sensor trace version " + version);
+			int headerLength = in.readInt();
+			origin = in.readDouble();
+			int deviceCount = in.readInt();
+			deviceRanges = new LinkedHashMap<String, long[]>();
+			long count = 0;
+			for (int i = 0; i < deviceCount; i++) {
+				String device = in.readUTF();
+				long first = in.readLong();
+				long records = in.readLong();
+				deviceRanges.put(device, new long[]{first, records});
+				count += records;
+			}
+			recordCount = count;
+			segments = mapSegments(channel, MapMode.READ_ONLY, headerLength, recordCount * RECORD_SIZE);
+		} finally {
+			// the mappings stay valid once the file is closed
+			file.close();
+		}
+	}
+
+	/**
+	 * Maps a region of a file in segments of {@link #SEGMENT_SIZE} bytes.
+	 */
+	static MappedByteBuffer[] mapSegments(FileChannel channel, MapMode mode, long start, long length) throws IOException {
+		int count = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+		MappedByteBuffer[] segments = new MappedByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			long offset = i * SEGMENT_SIZE;
+			segments[i] = channel.map(mode, start + offset, Math.min(SEGMENT_SIZE, length - offset));
+			segments[i].order(ByteOrder.BIG_ENDIAN);
+		}
+		return segments;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Returns the smallest timestamp of the trace, which is replayed at simulation time 0.
+	 */
+	public double getOrigin() {
+		return origin;
+	}
+
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	public Iterable<String> getDevices() {
+		return deviceRanges.keySet();
+	}
+
+	/**
+	 * Returns the index of the first record of a device, or -1 if the device is not in the trace.
+	 */
+	public long getFirstRecord(String device) {
+		long[] range = deviceRanges.get(device);
+		return (range == null) ? -1 : range[0];
+	}
+
+	/**
+	 * Returns the number of records of a device, 0 if the device is not in the trace.
+	 */
+	public long getDeviceRecordCount(String device) {
+		long[] range = deviceRanges.get(device);
+		return (range == null) ? 0 : range[1];
+	}
+
+	public double getTimestamp(long record) {
+		return segments[(int) (record * RECORD_SIZE / SEGMENT_SIZE)].getDouble((int) (record * RECORD_SIZE % SEGMENT_SIZE));
+	}
+
+	public int getPayloadBytes(long record) {
+		return segments[(int) (record * RECORD_SIZE / SEGMENT_SIZE)].getInt((int) (record * RECORD_SIZE % SEGMENT_SIZE) + 8);
+	}
+
+	public int getCpuLength(long record) {
+		return segments[(int) (record * RECORD_SIZE / SEGMENT_SIZE)].getInt((int) (record * RECORD_SIZE % SEGMENT_SIZE) + 12);
+	}
+
+}
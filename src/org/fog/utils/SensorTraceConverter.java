@@ -0,0 +1,286 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.util.WorkloadFileReader;
+
+/**
+ * Converts a CSV device trace into the binary format of {@link SensorTrace}. Each line holds a timestamp, a device name,
+ * the payload size in bytes and the CPU length in MI, separated by commas. Empty lines, lines starting with '#' and a
+ * header line are skipped. The input may be plain, gzipped or zipped, as read by {@link WorkloadFileReader#openReader(File)}.
+ *
+ * The input is read twice, first to count the records of each device, then to write each record at its place in the
+ * output file, so memory use does not grow with the size of the trace. Records of a device are sorted by time
+ * afterwards if the input was not, by a merge sort through a memory-mapped scratch file next to the output.
+ */
+public class SensorTraceConverter {
+
+	/**
+	 * Length of the runs sorted in place by insertion before merging
+	 */
+	private static final int INSERTION_RUN = 32;
+
+	/**
+	 * Converts a CSV trace.
+	 * @param csvFileName path of the CSV trace, possibly .gz or .zip
+	 * @param traceFileName path of the binary trace to write
+	 * @return number of records written
+	 * @throws IOException if a file cannot be read or written, or a line is malformed
+	 */
+	public static long convert(String csvFileName, String traceFileName) throws IOException {
+		File csvFile = new File(csvFileName);
+
+		// first pass: number of records of each device and origin of the trace
+		Map<String, long[]> deviceRanges = new LinkedHashMap<String, long[]>();
+		double origin = Double.POSITIVE_INFINITY;
+		BufferedReader reader = WorkloadFileReader.openReader(csvFile);
+		try {
+			String line;
+			long lineNum = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNum++;
+				String[] fields = parseLine(line, lineNum);
+				if (fields == null)
+					continue;
+				long[] range = deviceRanges.get(fields[1]);
+				if (range == null) {
+					range = new long[2];
+					deviceRanges.put(fields[1], range);
+				}
+				range[1]++;
+				origin = Math.min(origin, Double.parseDouble(fields[0]));
+			}
+		} finally {
+			reader.close();
+		}
+		long recordCount = 0;
+		for (long[] range : deviceRanges.values()) {
+			range[0] = recordCount;
+			recordCount += range[1];
+		}
+		if (recordCount == 0)
+			origin = 0;
+
+		byte[] header = buildHeader(origin, deviceRanges);
+		RandomAccessFile out = new RandomAccessFile(traceFileName, "rw");
+		try {
+			out.setLength(0);
+			out.setLength(header.length + recordCount * SensorTrace.RECORD_SIZE);
+			out.write(header);
+			MappedByteBuffer[] segments = SensorTrace.mapSegments(out.getChannel(), MapMode.READ_WRITE, header.length,
+					recordCount * SensorTrace.RECORD_SIZE);
+
+			// second pass: each record goes after the records of its device written so far
+			Map<String, long[]> cursors = new LinkedHashMap<String, long[]>();
+			for (Map.Entry<String, long[]> entry : deviceRanges.entrySet())
+				cursors.put(entry.getKey(), new long[]{entry.getValue()[0], Long.MIN_VALUE});
+			Map<String, Boolean> unsorted = new LinkedHashMap<String, Boolean>();
+			reader = WorkloadFileReader.openReader(csvFile);
+			try {
+				String line;
+				long lineNum = 0;
+				while ((line = reader.readLine()) != null) {
+					lineNum++;
+					String[] fields = parseLine(line, lineNum);
+					if (fields == null)
+						continue;
+					long[] cursor = cursors.get(fields[1]);
+					double timestamp = Double.parseDouble(fields[0]);
+					if (cursor[1] != Long.MIN_VALUE && timestamp < Double.longBitsToDouble(cursor[1]))
+						unsorted.put(fields[1], true);
+					cursor[1] = Double.doubleToLongBits(timestamp);
+					writeRecord(segments, cursor[0]++, timestamp, (int) Double.parseDouble(fields[2]), (int) Double.parseDouble(fields[3]));
+				}
+			} finally {
+				reader.close();
+			}
+			File directory = new File(traceFileName).getAbsoluteFile().getParentFile();
+			for (String device : unsorted.keySet()) {
+				long[] range = deviceRanges.get(device);
+				sortRecords(segments, range[0], range[1], directory);
+			}
+			for (MappedByteBuffer segment : segments)
+				segment.force();
+		} finally {
+			out.close();
+		}
+		return recordCount;
+	}
+
+	/**
+	 * Returns the four fields of a record line, or null for lines to skip.
+	 */
+	private static String[] parseLine(String line, long lineNum) throws IOException {
+		String trimmed = line.trim();
+		if (trimmed.length() == 0 || trimmed.startsWith("#"))
+			return null;
+		String[] fields = trimmed.split("\\s*,\\s*");
+		if (fields.length < 4)
+			throw new IOException("Line " + lineNum + ": expected timestamp, device, payload bytes and CPU length");
+		try {
+			Double.parseDouble(fields[0]);
+		} catch (NumberFormatException e) {
+			if (lineNum == 1)
+				return null; // header
+			throw new IOException("Line " + lineNum + ": invalid timestamp " + fields[0]);
+		}
+		return fields;
+	}
+
+	private static byte[] buildHeader(double origin, Map<String, long[]> deviceRanges) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(body);
+		out.writeDouble(origin);
+		out.writeInt(deviceRanges.size());
+		for (Map.Entry<String, long[]> entry : deviceRanges.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeLong(entry.getValue()[0]);
+			out.writeLong(entry.getValue()[1]);
+		}
+		out.flush();
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		out = new DataOutputStream(header);
+		out.writeInt(SensorTrace.MAGIC);
+		out.writeInt(SensorTrace.VERSION);
+		out.writeInt(12 + body.size());
+		body.writeTo(out);
+		out.flush();
+		return header.toByteArray();
+	}
+
+	private static void writeRecord(MappedByteBuffer[] segments, long record, double timestamp, int payloadBytes, int cpuLength) {
+		MappedByteBuffer segment = getSegment(segments, record);
+		int offset = getOffset(record);
+		segment.putDouble(offset, timestamp);
+		segment.putInt(offset + 8, payloadBytes);
+		segment.putInt(offset + 12, cpuLength);
+	}
+
+	/**
+	 * Sorts by time the records of one device with a stable merge sort. Short runs are sorted in place, then runs are
+	 * merged back and forth between the output file and a scratch file of the size of the records of the device, both
+	 * memory-mapped, so memory use does not depend on the number of records.
+	 * @param first index of the first record of the device
+	 * @param count number of records of the device
+	 * @param directory directory of the scratch file
+	 */
+	private static void sortRecords(MappedByteBuffer[] segments, long first, long count, File directory) throws IOException {
+		for (long start = 0; start < count; start += INSERTION_RUN)
+			insertionSort(segments, first + start, Math.min(INSERTION_RUN, count - start));
+		if (count <= INSERTION_RUN)
+			return;
+		File scratchFile = File.createTempFile("trace-sort", ".tmp", directory);
+		RandomAccessFile scratch = new RandomAccessFile(scratchFile, "rw");
+		try {
+			scratch.setLength(count * SensorTrace.RECORD_SIZE);
+			MappedByteBuffer[] src = segments;
+			MappedByteBuffer[] dest = SensorTrace.mapSegments(scratch.getChannel(), MapMode.READ_WRITE, 0,
+					count * SensorTrace.RECORD_SIZE);
+			long srcFirst = first, destFirst = 0;
+			for (long width = INSERTION_RUN; width < count; width *= 2) {
+				for (long start = 0; start < count; start += 2 * width)
+					merge(src, srcFirst, dest, destFirst, start, Math.min(start + width, count), Math.min(start + 2 * width, count));
+				MappedByteBuffer[] segmentsSwap = src;
+				src = dest;
+				dest = segmentsSwap;
+				long firstSwap = srcFirst;
+				srcFirst = destFirst;
+				destFirst = firstSwap;
+			}
+			if (src != segments) {
+				for (long i = 0; i < count; i++)
+					copyRecord(src, srcFirst + i, segments, first + i);
+			}
+		} finally {
+			scratch.close();
+			// the mapping may keep the file open on some platforms
+			if (!scratchFile.delete())
+				scratchFile.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Sorts a short run of records in place, keeping the input order of records with equal timestamps.
+	 */
+	private static void insertionSort(MappedByteBuffer[] segments, long first, long count) {
+		for (long i = first + 1; i < first + count; i++) {
+			long timestampBits = getSegment(segments, i).getLong(getOffset(i));
+			long sizes = getSegment(segments, i).getLong(getOffset(i) + 8);
+			double timestamp = Double.longBitsToDouble(timestampBits);
+			long j = i;
+			while (j > first && getTimestamp(segments, j - 1) > timestamp) {
+				copyRecord(segments, j - 1, segments, j);
+				j--;
+			}
+			if (j != i) {
+				getSegment(segments, j).putLong(getOffset(j), timestampBits);
+				getSegment(segments, j).putLong(getOffset(j) + 8, sizes);
+			}
+		}
+	}
+
+	/**
+	 * Merges the sorted runs [start, middle) and [middle, end) of src into the same positions of dest, taking records
+	 * of the first run first on equal timestamps.
+	 */
+	private static void merge(MappedByteBuffer[] src, long srcFirst, MappedByteBuffer[] dest, long destFirst,
+			long start, long middle, long end) {
+		long left = start, right = middle;
+		for (long i = start; i < end; i++) {
+			if (right >= end || (left < middle && getTimestamp(src, srcFirst + left) <= getTimestamp(src, srcFirst + right)))
+				copyRecord(src, srcFirst + left++, dest, destFirst + i);
+			else
+				copyRecord(src, srcFirst + right++, dest, destFirst + i);
+		}
+	}
+
+	private static MappedByteBuffer getSegment(MappedByteBuffer[] segments, long record) {
+		return segments[(int) (record * SensorTrace.RECORD_SIZE / SensorTrace.SEGMENT_SIZE)];
+	}
+
+	private static int getOffset(long record) {
+		return (int) (record * SensorTrace.RECORD_SIZE % SensorTrace.SEGMENT_SIZE);
+	}
+
+	private static double getTimestamp(MappedByteBuffer[] segments, long record) {
+		return getSegment(segments, record).getDouble(getOffset(record));
+	}
+
+	private static void copyRecord(MappedByteBuffer[] src, long srcRecord, MappedByteBuffer[] dest, long destRecord) {
+		MappedByteBuffer srcSegment = getSegment(src, srcRecord);
+		MappedByteBuffer destSegment = getSegment(dest, destRecord);
+		int srcOffset = getOffset(srcRecord);
+		int destOffset = getOffset(destRecord);
+		destSegment.putLong(destOffset, srcSegment.getLong(srcOffset));
+		destSegment.putLong(destOffset + 8, srcSegment.getLong(srcOffset + 8));
+	}
+
+	/**
+	 * Converts a CSV trace into a binary sensor trace.
+	 * @param args path of the CSV trace, path of the binary trace
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: SensorTraceConverter <csv trace> <binary trace>");
+			return;
+		}
+		long records = convert(args[0], args[1]);
+		System.out.println("Wrote " + records + " records to " + args[1]);
+	}
+
+}
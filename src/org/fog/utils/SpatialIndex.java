@@ -0,0 +1,307 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Index of objects located on the Earth, answering nearest-neighbour and radius queries in logarithmic time on average.
+ *
+ * Locations are mapped to points of the unit sphere and stored in a k-d tree over the three coordinates. The chord
+ * between two points grows with their great-circle distance, so searching by chord length returns the same neighbours
+ * as searching by distance on the Earth, without special cases at the poles or at the antimeridian. The tree is kept
+ * implicitly in arrays and rebuilt on the first query following an insertion; it is meant to be filled once, then
+ * queried many times.
+ */
+public class SpatialIndex<T> {
+
+	private GeoLocation[] locations;
+	private Object[] values;
+	private double[] coords;
+	private int size;
+
+	/**
+	 * Entries in tree order: the median of each range is the node splitting it
+	 */
+	private int[] tree;
+	private byte[] splitAxis;
+	private boolean built;
+
+	public SpatialIndex() {
+		locations = new GeoLocation[16];
+		values = new Object[16];
+		coords = new double[48];
+	}
+
+	public void add(GeoLocation location, T value) {
+		if (size == locations.length) {
+			locations = Arrays.copyOf(locations, 2 * size);
+			values = Arrays.copyOf(values, 2 * size);
+			coords = Arrays.copyOf(coords, 6 * size);
+		}
+		System.arraycopy(toPoint(location), 0, coords, 3 * size, 3);
+		locations[size] = location;
+		values[size] = value;
+		size++;
+		built = false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the object nearest to the given location, null if the index is empty.
+	 */
+	public T nearest(GeoLocation location) {
+		List<T> result = nearest(location, 1);
+		return result.isEmpty() ? null : result.get(0);
+	}
+
+	/**
+	 * Returns the k objects nearest to the given location, nearest first.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> nearest(GeoLocation location, int k) {
+		build();
+		k = Math.min(k, size);
+		List<T> result = new ArrayList<T>(k);
+		if (k <= 0)
+			return result;
+		double[] q = toPoint(location);
+		// max-heap of the k best candidates on squared chord length
+		Neighbours best = new Neighbours(k);
+		searchNearest(0, size, q, best);
+		int[] order = best.sortedEntries();
+		for (int i = 0; i < order.length; i++)
+			result.add((T) values[order[i]]);
+		return result;
+	}
+
+	/**
+	 * Returns the objects within the given great-circle distance of a location, in no particular order.
+	 * @param radius distance in km
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> withinRadius(GeoLocation location, double radius) {
+		build();
+		List<T> result = new ArrayList<T>();
+		if (size == 0 || radius < 0)
+			return result;
+		double angle = radius / GeoLocation.EARTH_RADIUS;
+		double chord = (angle >= Math.PI) ? 2 : 2 * Math.sin(angle / 2);
+		double[] q = toPoint(location);
+		searchRadius(0, size, q, chord * chord, result);
+		return result;
+	}
+
+	/**
+	 * Returns the location an object was added with, for the i-th entry in insertion order.
+	 */
+	public GeoLocation getLocation(int i) {
+		return locations[i];
+	}
+
+	@SuppressWarnings("unchecked")
+	public T getValue(int i) {
+		return (T) values[i];
+	}
+
+	private static double[] toPoint(GeoLocation location) {
+		double lat = Math.toRadians(location.getLatitude());
+		double lon = Math.toRadians(location.getLongitude());
+		return new double[]{Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat)};
+	}
+
+	private double squaredDistance(int entry, double[] q) {
+		double dx = coords[3 * entry] - q[0];
+		double dy = coords[3 * entry + 1] - q[1];
+		double dz = coords[3 * entry + 2] - q[2];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private void searchNearest(int from, int to, double[] q, Neighbours best) {
+		if (from >= to)
+			return;
+		int mid = (from + to) >>> 1;
+		int entry = tree[mid];
+		best.offer(entry, squaredDistance(entry, q));
+		int axis = splitAxis[mid];
+		double diff = q[axis] - coords[3 * entry + axis];
+		if (diff < 0) {
+			searchNearest(from, mid, q, best);
+			if (diff * diff < best.worst())
+				searchNearest(mid + 1, to, q, best);
+		} else {
+			searchNearest(mid + 1, to, q, best);
+			if (diff * diff < best.worst())
+				searchNearest(from, mid, q, best);
+		}
+	}
+
+	private void searchRadius(int from, int to, double[] q, double squaredChord, List<T> result) {
+		if (from >= to)
+			return;
+		int mid = (from + to) >>> 1;
+		int entry = tree[mid];
+		if (squaredDistance(entry, q) <= squaredChord)
+			result.add(getValue(entry));
+		int axis = splitAxis[mid];
+		double diff = q[axis] - coords[3 * entry + axis];
+		if (diff <= 0 || diff * diff <= squaredChord)
+			searchRadius(from, mid, q, squaredChord, result);
+		if (diff >= 0 || diff * diff <= squaredChord)
+			searchRadius(mid + 1, to, q, squaredChord, result);
+	}
+
+	private void build() {
+		if (built)
+			return;
+		tree = new int[size];
+		for (int i = 0; i < size; i++)
+			tree[i] = i;
+		splitAxis = new byte[size];
+		build(0, size);
+		built = true;
+	}
+
+	/**
+	 * Splits a range on the axis of largest spread, placing its median in the middle.
+	 */
+	private void build(int from, int to) {
+		if (to - from <= 0)
+			return;
+		int mid = (from + to) >>> 1;
+		int axis = 0;
+		if (to - from > 1) {
+			double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+			double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+			for (int i = from; i < to; i++) {
+				for (int a = 0; a < 3; a++) {
+					double c = coords[3 * tree[i] + a];
+					min[a] = Math.min(min[a], c);
+					max[a] = Math.max(max[a], c);
+				}
+			}
+			for (int a = 1; a < 3; a++)
+				if (max[a] - min[a] > max[axis] - min[axis])
+					axis = a;
+			select(from, to - 1, mid, axis);
+		}
+		splitAxis[mid] = (byte) axis;
+		build(from, mid);
+		build(mid + 1, to);
+	}
+
+	/**
+	 * Quickselect: reorders tree[left..right] so that tree[k] holds the entry of rank k on the given axis.
+	 */
+	private void select(int left, int right, int k, int axis) {
+		while (right > left) {
+			double pivot = coords[3 * tree[(left + right) >>> 1] + axis];
+			int i = left, j = right;
+			while (i <= j) {
+				while (coords[3 * tree[i] + axis] < pivot)
+					i++;
+				while (coords[3 * tree[j] + axis] > pivot)
+					j--;
+				if (i <= j) {
+					int t = tree[i];
+					tree[i] = tree[j];
+					tree[j] = t;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	/**
+	 * Bounded max-heap of entries on squared chord length.
+	 */
+	private static class Neighbours {
+		private final int[] entries;
+		private final double[] distances;
+		private int count;
+
+		Neighbours(int k) {
+			entries = new int[k];
+			distances = new double[k];
+		}
+
+		double worst() {
+			return (count < entries.length) ? Double.POSITIVE_INFINITY : distances[0];
+		}
+
+		void offer(int entry, double distance) {
+			if (count < entries.length) {
+				int i = count++;
+				entries[i] = entry;
+				distances[i] = distance;
+				while (i > 0) {
+					int parent = (i - 1) >>> 1;
+					if (distances[parent] >= distances[i])
+						break;
+					swap(i, parent);
+					i = parent;
+				}
+			} else if (distance < distances[0]) {
+				entries[0] = entry;
+				distances[0] = distance;
+				int i = 0;
+				while (true) {
+					int left = 2 * i + 1;
+					if (left >= count)
+						break;
+					int largest = (left + 1 < count && distances[left + 1] > distances[left]) ? left + 1 : left;
+					if (distances[i] >= distances[largest])
+						break;
+					swap(i, largest);
+					i = largest;
+				}
+			}
+		}
+
+		private void swap(int i, int j) {
+			int e = entries[i];
+			entries[i] = entries[j];
+			entries[j] = e;
+			double d = distances[i];
+			distances[i] = distances[j];
+			distances[j] = d;
+		}
+
+		/**
+		 * Returns the entries nearest first.
+		 */
+		int[] sortedEntries() {
+			Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++)
+				order[i] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer i1, Integer i2) {
+					return Double.compare(distances[i1], distances[i2]);
+				}
+			});
+			int[] result = new int[count];
+			for (int i = 0; i < count; i++)
+				result[i] = entries[order[i]];
+			return result;
+		}
+	}
+
+}
@@ -0,0 +1,345 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.math3.distribution.TDistribution;
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * Ends the simulation once the loop latencies have converged. Observations of each tracked loop are grouped in batches
+ * of {@link #MSER_BATCH_SIZE}; the warm-up period is deleted with the MSER-5 rule and the steady-state mean is estimated
+ * with a batch-means confidence interval. When the half-width of the interval of every tracked loop is below the requested
+ * fraction of its mean, {@link CloudSim#terminateSimulation()} is called.
+ *
+ * The controller is installed with {@link TimeKeeper#setSteadyStateController(SteadyStateController)}. Memory per loop is
+ * bounded: when {@link #MAX_BATCHES} batch means are stored, adjacent batches are merged and the batch size doubles.
+ */
+public class SteadyStateController {
+
+	/**
+	 * Number of observations averaged in each batch before MSER is applied
+	 */
+	public static final int MSER_BATCH_SIZE = 5;
+	public static final int MAX_BATCHES = 1024;
+
+	private final double relativePrecision;
+	private final double confidenceLevel;
+	/**
+	 * Number of batches of the confidence interval
+	 */
+	private int batchCount;
+	private int minObservations;
+	private int checkInterval;
+	/**
+	 * Loops that must converge; empty to track every loop completed at least once
+	 */
+	private Set<Integer> trackedLoopIds;
+	/**
+	 * Series indexed by the dense loop index of {@link TimeKeeper#getLoopIndex(org.fog.application.AppLoop)}
+	 */
+	private Series[] series;
+	private boolean converged;
+	private double convergenceTime;
+
+	/**
+	 * @param relativePrecision target ratio between the half-width of the confidence interval and the mean, e.g. 0.05
+	 * @param confidenceLevel confidence level of the interval, e.g. 0.95
+	 */
+	public SteadyStateController(double relativePrecision, double confidenceLevel) {
+		if (relativePrecision <= 0 || confidenceLevel <= 0 || confidenceLevel >= 1)
+			throw new IllegalArgumentException("Invalid precision " + relativePrecision + " or confidence level " + confidenceLevel);
+		this.relativePrecision = relativePrecision;
+		this.confidenceLevel = confidenceLevel;
+		this.batchCount = 20;
+		this.minObservations = 200;
+		this.checkInterval = 50;
+		this.trackedLoopIds = new HashSet<Integer>();
+		this.series = new Series[16];
+		this.convergenceTime = -1;
+	}
+
+	/**
+	 * Adds a loop to the loops that must converge. If no loop is added, every loop completed at least once is tracked.
+	 */
+	public void track(int loopId) {
+		trackedLoopIds.add(loopId);
+	}
+
+	/**
+	 * Records an end-to-end latency of a loop. Called by {@link TimeKeeper}.
+	 * @param loopIndex dense index of the loop
+	 * @param loopId ID of the loop
+	 */
+	public void observe(int loopIndex, int loopId, double value) {
+		if (loopIndex >= series.length) {
+			Series[] grown = new Series[Math.max(loopIndex + 1, 2 * series.length)];
+			System.arraycopy(series, 0, grown, 0, series.length);
+			series = grown;
+		}
+		if (series[loopIndex] == null)
+			series[loopIndex] = new Series(loopId);
+		Series s = series[loopIndex];
+		s.add(value);
+		if (!converged && s.observationCount - s.lastCheckCount >= checkInterval && isTracked(loopId)) {
+			s.lastCheckCount = s.observationCount;
+			s.estimate();
+			if (allConverged()) {
+				converged = true;
+				convergenceTime = CloudSim.clock();
+				Logger.debug("SteadyStateController", "Loop latencies converged at " + convergenceTime);
+				CloudSim.terminateSimulation();
+			}
+		}
+	}
+
+	private boolean isTracked(int loopId) {
+		return trackedLoopIds.isEmpty() || trackedLoopIds.contains(loopId);
+	}
+
+	private boolean allConverged() {
+		boolean any = false;
+		for (Series s : series) {
+			if (s == null || !isTracked(s.loopId))
+				continue;
+			if (!s.converged)
+				return false;
+			any = true;
+		}
+		if (!trackedLoopIds.isEmpty()) {
+			for (Integer loopId : trackedLoopIds) {
+				if (getSeries(loopId) == null)
+					return false;
+			}
+		}
+		return any;
+	}
+
+	/**
+	 * Returns the series of a loop, or null if the loop was never completed.
+	 */
+	public Series getSeries(int loopId) {
+		int loopIndex = TimeKeeper.getInstance().findLoopIndex(loopId);
+		if (loopIndex < 0 || loopIndex >= series.length)
+			return null;
+		return series[loopIndex];
+	}
+
+	/**
+	 * Returns the series of all loops completed at least once.
+	 */
+	public List<Series> getSeries() {
+		List<Series> result = new ArrayList<Series>();
+		for (Series s : series) {
+			if (s != null)
+				result.add(s);
+		}
+		return result;
+	}
+
+	public boolean isConverged() {
+		return converged;
+	}
+
+	/**
+	 * Returns the simulation time at which the tracked loops converged, or -1.
+	 */
+	public double getConvergenceTime() {
+		return convergenceTime;
+	}
+
+	public double getRelativePrecision() {
+		return relativePrecision;
+	}
+
+	public double getConfidenceLevel() {
+		return confidenceLevel;
+	}
+
+	public int getBatchCount() {
+		return batchCount;
+	}
+
+	/**
+	 * Sets the number of batches of the confidence interval, at least 2.
+	 */
+	public void setBatchCount(int batchCount) {
+		this.batchCount = Math.max(2, batchCount);
+	}
+
+	public int getMinObservations() {
+		return minObservations;
+	}
+
+	/**
+	 * Sets the number of observations a loop needs before its interval is considered.
+	 */
+	public void setMinObservations(int minObservations) {
+		this.minObservations = minObservations;
+	}
+
+	public int getCheckInterval() {
+		return checkInterval;
+	}
+
+	/**
+	 * Sets the number of observations of a loop between two estimations of its interval.
+	 */
+	public void setCheckInterval(int checkInterval) {
+		this.checkInterval = Math.max(1, checkInterval);
+	}
+
+	/**
+	 * Latency series of one loop, stored as batch means
+	 */
+	public class Series {
+		private final int loopId;
+		private final double[] batchMeans;
+		private int batches;
+		/**
+		 * Number of observations per stored batch: MSER_BATCH_SIZE, doubled at each merge
+		 */
+		private int batchSize;
+		private double currentSum;
+		private int currentCount;
+		private long observationCount;
+		private long lastCheckCount;
+
+		private long truncatedObservations;
+		private double mean;
+		private double halfWidth;
+		private boolean converged;
+
+		Series(int loopId) {
+			this.loopId = loopId;
+			this.batchMeans = new double[MAX_BATCHES];
+			this.batchSize = MSER_BATCH_SIZE;
+			this.halfWidth = Double.NaN;
+			this.mean = Double.NaN;
+		}
+
+		void add(double value) {
+			observationCount++;
+			currentSum += value;
+			if (++currentCount < batchSize)
+				return;
+			if (batches == MAX_BATCHES) {
+				for (int i = 0; i < MAX_BATCHES / 2; i++)
+					batchMeans[i] = (batchMeans[2 * i] + batchMeans[2 * i + 1]) / 2;
+				batches = MAX_BATCHES / 2;
+				batchSize *= 2;
+				// the partial batch was sized for the previous batch size, keep filling it
+				if (currentCount < batchSize)
+					return;
+			}
+			batchMeans[batches++] = currentSum / currentCount;
+			currentSum = 0;
+			currentCount = 0;
+		}
+
+		/**
+		 * Applies MSER to the batch means, then computes the batch-means confidence interval of the retained part.
+		 */
+		void estimate() {
+			converged = false;
+			int truncation = mserTruncation();
+			if (truncation < 0)
+				return;
+			int retained = batches - truncation;
+			if (retained < batchCount || observationCount < minObservations)
+				return;
+			// the oldest retained batch means are dropped so that every batch has the same size
+			int perBatch = retained / batchCount;
+			int start = batches - perBatch * batchCount;
+			truncatedObservations = (long) start * batchSize;
+			double sum = 0, sumSq = 0;
+			for (int b = 0; b < batchCount; b++) {
+				double batchSum = 0;
+				for (int i = 0; i < perBatch; i++)
+					batchSum += batchMeans[start + b * perBatch + i];
+				double batchMean = batchSum / perBatch;
+				sum += batchMean;
+				sumSq += batchMean * batchMean;
+			}
+			mean = sum / batchCount;
+			double variance = Math.max(0, (sumSq - batchCount * mean * mean) / (batchCount - 1));
+			double t = new TDistribution(batchCount - 1).inverseCumulativeProbability(1 - (1 - confidenceLevel) / 2);
+			halfWidth = t * Math.sqrt(variance / batchCount);
+			converged = halfWidth <= relativePrecision * Math.abs(mean);
+		}
+
+		/**
+		 * Returns the number of batches to delete minimizing the MSER statistic, or -1 if the minimum lies in the second half
+		 * of the series, meaning the warm-up period is not over yet.
+		 */
+		private int mserTruncation() {
+			if (batches < 2)
+				return -1;
+			double sum = 0, sumSq = 0;
+			double best = Double.MAX_VALUE;
+			int bestTruncation = -1;
+			// suffix sums, from the last batch backwards
+			for (int d = batches - 1; d >= 0; d--) {
+				sum += batchMeans[d];
+				sumSq += batchMeans[d] * batchMeans[d];
+				int m = batches - d;
+				if (m < 2)
+					continue;
+				double statistic = Math.max(0, sumSq - sum * sum / m) / ((double) m * m);
+				if (statistic <= best) {
+					best = statistic;
+					bestTruncation = d;
+				}
+			}
+			return (bestTruncation <= batches / 2) ? bestTruncation : -1;
+		}
+
+		public int getLoopId() {
+			return loopId;
+		}
+
+		public long getObservationCount() {
+			return observationCount;
+		}
+
+		/**
+		 * Returns the number of observations deleted as warm-up at the last estimation.
+		 */
+		public long getTruncatedObservations() {
+			return truncatedObservations;
+		}
+
+		/**
+		 * Returns the steady-state mean at the last estimation, NaN if none was made.
+		 */
+		public double getMean() {
+			return mean;
+		}
+
+		/**
+		 * Returns the half-width of the confidence interval at the last estimation, NaN if none was made.
+		 */
+		public double getHalfWidth() {
+			return halfWidth;
+		}
+
+		public boolean isConverged() {
+			return converged;
+		}
+
+		@Override
+		public String toString() {
+			return "mean=" + mean + " +/- " + halfWidth + " (n=" + observationCount + ", warm-up=" + truncatedObservations
+					+ (converged ? ", converged)" : ")");
+		}
+	}
+
+}
@@ -1,10 +1,11 @@
 package org.fog.utils;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.application.AppLoop;
 import org.fog.entities.Tuple;
 
 public class TimeKeeper {
@@ -13,15 +14,28 @@ public class TimeKeeper {
 	
 	private long simulationStartTime;
 	private int count; 
-	private Map<Integer, Double> emitTimes;
 	private Map<Integer, Double> endTimes;
-	private Map<Integer, List<Integer>> loopIdToTupleIds;
-	private Map<Integer, Double> tupleIdToCpuStartTime;
 	private Map<String, Double> tupleTypeToAverageCpuTime;
 	private Map<String, Integer> tupleTypeToExecutedTupleCount;
 	
-	private Map<Integer, Double> loopIdToCurrentAverage;
-	private Map<Integer, Integer> loopIdToCurrentNum;
+	/**
+	 * Dense indices of loops, keyed by loop ID. Loop IDs share their counter with tuple IDs, so they can be large.
+	 */
+	private Map<Integer, Integer> loopIdToIndex;
+	/**
+	 * End-to-end latency histograms, indexed by dense loop index
+	 */
+	private LatencyHistogram[] loopLatencyHistograms;
+	/**
+	 * Running average and count of end-to-end latencies, indexed by dense loop index
+	 */
+	private double[] loopLatencyAverages;
+	private int[] loopLatencyCounts;
+	private Map<String, LatencyHistogram> tupleTypeToCpuTimeHistogram;
+	/**
+	 * Optional controller ending the simulation once loop latencies converge, null if disabled
+	 */
+	private SteadyStateController steadyStateController;
 	
 	public static TimeKeeper getInstance(){
 		if(instance == null)
@@ -34,13 +48,13 @@ public class TimeKeeper {
 	}
 	
 	public void tupleStartedExecution(Tuple tuple){
-		tupleIdToCpuStartTime.put(tuple.getCloudletId(), CloudSim.clock());
+		tuple.setCpuStartTime(CloudSim.clock());
 	}
 	
 	public void tupleEndedExecution(Tuple tuple){
-		if(!tupleIdToCpuStartTime.containsKey(tuple.getCloudletId()))
+		if(tuple.getCpuStartTime() < 0)
 			return;
-		double executionTime = CloudSim.clock() - tupleIdToCpuStartTime.get(tuple.getCloudletId());
+		double executionTime = CloudSim.clock() - tuple.getCpuStartTime();
 		if(!tupleTypeToAverageCpuTime.containsKey(tuple.getTupleType())){
 			tupleTypeToAverageCpuTime.put(tuple.getTupleType(), executionTime);
 			tupleTypeToExecutedTupleCount.put(tuple.getTupleType(), 1);
@@ -49,22 +63,97 @@ public class TimeKeeper {
 			int currentCount = tupleTypeToExecutedTupleCount.get(tuple.getTupleType());
 			tupleTypeToAverageCpuTime.put(tuple.getTupleType(), (currentAverage*currentCount+executionTime)/(currentCount+1));
 		}
+		LatencyHistogram histogram = tupleTypeToCpuTimeHistogram.get(tuple.getTupleType());
+		if(histogram == null){
+			histogram = new LatencyHistogram();
+			tupleTypeToCpuTimeHistogram.put(tuple.getTupleType(), histogram);
+		}
+		histogram.recordValue(executionTime);
+	}
+	
+	/**
+	 * Returns the dense index of a loop, assigning the next index to a loop seen for the first time.
+	 * The index is cached on the loop, so this does not allocate once the loop is indexed.
+	 */
+	public int getLoopIndex(AppLoop loop){
+		if(loop.getLoopIndex() < 0){
+			Integer index = loopIdToIndex.get(loop.getLoopId());
+			if(index == null){
+				index = loopIdToIndex.size();
+				loopIdToIndex.put(loop.getLoopId(), index);
+			}
+			loop.setLoopIndex(index);
+		}
+		return loop.getLoopIndex();
+	}
+	
+	/**
+	 * Returns the dense index of a loop, or -1 if the loop was never indexed.
+	 * @param loopId ID of the loop
+	 */
+	public int findLoopIndex(int loopId){
+		Integer index = loopIdToIndex.get(loopId);
+		return index == null ? -1 : index;
+	}
+	
+	/**
+	 * Records the end-to-end latency of a tuple completing an application loop, in its histogram and running average.
+	 * Does not allocate once the histogram of the loop exists.
+	 * @param loop the loop
+	 * @param delay latency of the loop
+	 */
+	public void loopLatencyRecorded(AppLoop loop, double delay){
+		int loopIndex = getLoopIndex(loop);
+		if(loopIndex >= loopLatencyHistograms.length){
+			int length = Math.max(loopIndex+1, 2*loopLatencyHistograms.length);
+			loopLatencyHistograms = Arrays.copyOf(loopLatencyHistograms, length);
+			loopLatencyAverages = Arrays.copyOf(loopLatencyAverages, length);
+			loopLatencyCounts = Arrays.copyOf(loopLatencyCounts, length);
+		}
+		if(loopLatencyHistograms[loopIndex] == null)
+			loopLatencyHistograms[loopIndex] = new LatencyHistogram();
+		loopLatencyHistograms[loopIndex].recordValue(delay);
+		int currentCount = loopLatencyCounts[loopIndex];
+		loopLatencyAverages[loopIndex] = (loopLatencyAverages[loopIndex]*currentCount + delay)/(currentCount+1);
+		loopLatencyCounts[loopIndex] = currentCount+1;
+		if(steadyStateController != null)
+			steadyStateController.observe(loopIndex, loop.getLoopId(), delay);
+	}
+	
+	/**
+	 * Returns the latency histogram of a loop, or null if no tuple completed it yet.
+	 * @param loopId ID of the loop
+	 */
+	public LatencyHistogram getLoopLatencyHistogram(int loopId){
+		int loopIndex = findLoopIndex(loopId);
+		if(loopIndex < 0 || loopIndex >= loopLatencyHistograms.length)
+			return null;
+		return loopLatencyHistograms[loopIndex];
 	}
 	
-	public Map<Integer, List<Integer>> loopIdToTupleIds(){
-		return getInstance().getLoopIdToTupleIds();
+	/**
+	 * Returns the latency histograms of all loops completed at least once, keyed by loop ID.
+	 */
+	public Map<Integer, LatencyHistogram> getLoopIdToLatencyHistogram(){
+		Map<Integer, LatencyHistogram> histograms = new HashMap<Integer, LatencyHistogram>();
+		for(Map.Entry<Integer, Integer> loop : loopIdToIndex.entrySet()){
+			int loopIndex = loop.getValue();
+			if(loopIndex < loopLatencyHistograms.length && loopLatencyHistograms[loopIndex] != null)
+				histograms.put(loop.getKey(), loopLatencyHistograms[loopIndex]);
+		}
+		return histograms;
 	}
 	
 	private TimeKeeper(){
 		count = 1;
-		setEmitTimes(new HashMap<Integer, Double>());
 		setEndTimes(new HashMap<Integer, Double>());
-		setLoopIdToTupleIds(new HashMap<Integer, List<Integer>>());
 		setTupleTypeToAverageCpuTime(new HashMap<String, Double>());
 		setTupleTypeToExecutedTupleCount(new HashMap<String, Integer>());
-		setTupleIdToCpuStartTime(new HashMap<Integer, Double>());
-		setLoopIdToCurrentAverage(new HashMap<Integer, Double>());
-		setLoopIdToCurrentNum(new HashMap<Integer, Integer>());
+		loopIdToIndex = new HashMap<Integer, Integer>();
+		loopLatencyHistograms = new LatencyHistogram[16];
+		loopLatencyAverages = new double[16];
+		loopLatencyCounts = new int[16];
+		setTupleTypeToCpuTimeHistogram(new HashMap<String, LatencyHistogram>());
 	}
 	
 	public int getCount() {
@@ -75,14 +164,6 @@ public class TimeKeeper {
 		this.count = count;
 	}
 
-	public Map<Integer, Double> getEmitTimes() {
-		return emitTimes;
-	}
-
-	public void setEmitTimes(Map<Integer, Double> emitTimes) {
-		this.emitTimes = emitTimes;
-	}
-
 	public Map<Integer, Double> getEndTimes() {
 		return endTimes;
 	}
@@ -91,14 +172,6 @@ public class TimeKeeper {
 		this.endTimes = endTimes;
 	}
 
-	public Map<Integer, List<Integer>> getLoopIdToTupleIds() {
-		return loopIdToTupleIds;
-	}
-
-	public void setLoopIdToTupleIds(Map<Integer, List<Integer>> loopIdToTupleIds) {
-		this.loopIdToTupleIds = loopIdToTupleIds;
-	}
-
 	public Map<String, Double> getTupleTypeToAverageCpuTime() {
 		return tupleTypeToAverageCpuTime;
 	}
@@ -117,14 +190,6 @@ public class TimeKeeper {
 		this.tupleTypeToExecutedTupleCount = tupleTypeToExecutedTupleCount;
 	}
 
-	public Map<Integer, Double> getTupleIdToCpuStartTime() {
-		return tupleIdToCpuStartTime;
-	}
-
-	public void setTupleIdToCpuStartTime(Map<Integer, Double> tupleIdToCpuStartTime) {
-		this.tupleIdToCpuStartTime = tupleIdToCpuStartTime;
-	}
-
 	public long getSimulationStartTime() {
 		return simulationStartTime;
 	}
@@ -133,20 +198,49 @@ public class TimeKeeper {
 		this.simulationStartTime = simulationStartTime;
 	}
 
+	/**
+	 * Returns the average end-to-end latency of all loops completed at least once, keyed by loop ID.
+	 */
 	public Map<Integer, Double> getLoopIdToCurrentAverage() {
-		return loopIdToCurrentAverage;
+		Map<Integer, Double> averages = new HashMap<Integer, Double>();
+		for(Map.Entry<Integer, Integer> loop : loopIdToIndex.entrySet()){
+			int loopIndex = loop.getValue();
+			if(loopIndex < loopLatencyCounts.length && loopLatencyCounts[loopIndex] > 0)
+				averages.put(loop.getKey(), loopLatencyAverages[loopIndex]);
+		}
+		return averages;
 	}
 
-	public void setLoopIdToCurrentAverage(Map<Integer, Double> loopIdToCurrentAverage) {
-		this.loopIdToCurrentAverage = loopIdToCurrentAverage;
+	/**
+	 * Returns the number of tuples that completed each loop completed at least once, keyed by loop ID.
+	 */
+	public Map<Integer, Integer> getLoopIdToCurrentNum() {
+		Map<Integer, Integer> counts = new HashMap<Integer, Integer>();
+		for(Map.Entry<Integer, Integer> loop : loopIdToIndex.entrySet()){
+			int loopIndex = loop.getValue();
+			if(loopIndex < loopLatencyCounts.length && loopLatencyCounts[loopIndex] > 0)
+				counts.put(loop.getKey(), loopLatencyCounts[loopIndex]);
+		}
+		return counts;
 	}
 
-	public Map<Integer, Integer> getLoopIdToCurrentNum() {
-		return loopIdToCurrentNum;
+	public Map<String, LatencyHistogram> getTupleTypeToCpuTimeHistogram() {
+		return tupleTypeToCpuTimeHistogram;
+	}
+
+	public void setTupleTypeToCpuTimeHistogram(Map<String, LatencyHistogram> tupleTypeToCpuTimeHistogram) {
+		this.tupleTypeToCpuTimeHistogram = tupleTypeToCpuTimeHistogram;
+	}
+
+	public SteadyStateController getSteadyStateController() {
+		return steadyStateController;
 	}
 
-	public void setLoopIdToCurrentNum(Map<Integer, Integer> loopIdToCurrentNum) {
-		this.loopIdToCurrentNum = loopIdToCurrentNum;
+	/**
+	 * Installs a controller ending the simulation once loop latencies converge, or removes it if null.
+	 */
+	public void setSteadyStateController(SteadyStateController steadyStateController) {
+		this.steadyStateController = steadyStateController;
 	}
 	
 	
@@ -0,0 +1,141 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * Reads trace files written by {@link TupleTracer} and reconstructs the timeline of each traced tuple chain.
+ */
+public class TupleTraceReader {
+
+	private static final Comparator<TupleTraceRecord> TIME_ORDER = new Comparator<TupleTraceRecord>() {
+		@Override
+		public int compare(TupleTraceRecord r1, TupleTraceRecord r2) {
+			return Double.compare(r1.getTime(), r2.getTime());
+		}
+	};
+
+	/**
+	 * Reads all records of a trace file, in the order they were written, with the application ID and tuple type name of
+	 * their tuple resolved through the dictionary of the file.
+	 * @param fileName path of the trace file
+	 * @return records of the file
+	 * @throws IOException if the file cannot be read or is not a trace file
+	 */
+	public static List<TupleTraceRecord> readRecords(String fileName) throws IOException {
+		List<TupleTraceRecord> records = new ArrayList<TupleTraceRecord>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+		try {
+			if (in.readInt() != TupleTracer.MAGIC)
+				throw new IOException(fileName + " is not a tuple trace file");
+			int version = in.readInt();
+			if (version != TupleTracer.VERSION || in.readInt() != TupleTraceRecord.SIZE)
+				throw new IOException("Unsupported tuple trace version " + version);
+			long dictionaryOffset = in.readLong();
+			// without a dictionary, records run until the end of the file
+			long recordCount = (dictionaryOffset < 0) ? Long.MAX_VALUE
+					: (dictionaryOffset - TupleTracer.HEADER_SIZE) / TupleTraceRecord.SIZE;
+			String[][] traceTypes = (dictionaryOffset < 0) ? new String[0][] : readTraceTypes(fileName, dictionaryOffset);
+			for (long i = 0; i < recordCount; i++) {
+				double time;
+				try {
+					time = in.readDouble();
+				} catch (EOFException e) {
+					break;
+				}
+				double value = in.readDouble();
+				int traceId = in.readInt();
+				int tupleId = in.readInt();
+				int entityId = in.readInt();
+				short kind = in.readShort();
+				short traceTypeId = in.readShort();
+				String[] traceType = (traceTypeId >= 0 && traceTypeId < traceTypes.length) ? traceTypes[traceTypeId] : null;
+				records.add(new TupleTraceRecord(time, value, traceId, tupleId, entityId, kind, traceTypeId,
+						(traceType != null) ? traceType[0] : null, (traceType != null) ? traceType[1] : null));
+			}
+		} finally {
+			in.close();
+		}
+		return records;
+	}
+
+	/**
+	 * Reads the tuple type dictionary of a trace file.
+	 * @return application ID and tuple type name of each trace type ID
+	 */
+	private static String[][] readTraceTypes(String fileName, long dictionaryOffset) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			file.seek(dictionaryOffset);
+			String[][] traceTypes = new String[file.readInt()][];
+			for (int i = 0; i < traceTypes.length; i++)
+				traceTypes[i] = new String[] { file.readUTF(), file.readUTF() };
+			return traceTypes;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Groups the records of a trace file by trace ID, each timeline being sorted by time.
+	 * @param fileName path of the trace file
+	 * @return map from trace ID to the timeline of the traced tuple chain
+	 * @throws IOException if the file cannot be read or is not a trace file
+	 */
+	public static Map<Integer, List<TupleTraceRecord>> readTimelines(String fileName) throws IOException {
+		Map<Integer, List<TupleTraceRecord>> timelines = new TreeMap<Integer, List<TupleTraceRecord>>();
+		for (TupleTraceRecord record : readRecords(fileName)) {
+			List<TupleTraceRecord> timeline = timelines.get(record.getTraceId());
+			if (timeline == null) {
+				timeline = new ArrayList<TupleTraceRecord>();
+				timelines.put(record.getTraceId(), timeline);
+			}
+			timeline.add(record);
+		}
+		for (List<TupleTraceRecord> timeline : timelines.values())
+			Collections.sort(timeline, TIME_ORDER);
+		return timelines;
+	}
+
+	/**
+	 * Prints the timelines of a trace file, with the time elapsed since the previous event of each timeline.
+	 * Entity names are only available when called in the simulation that produced the trace.
+	 * @param args path of the trace file
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: TupleTraceReader <trace file>");
+			return;
+		}
+		Map<Integer, List<TupleTraceRecord>> timelines = readTimelines(args[0]);
+		for (Integer traceId : timelines.keySet()) {
+			System.out.println("Trace " + traceId);
+			double previousTime = -1;
+			for (TupleTraceRecord record : timelines.get(traceId)) {
+				double elapsed = (previousTime < 0) ? 0 : record.getTime() - previousTime;
+				String entityName = CloudSim.getEntityName(record.getEntityId());
+				System.out.println("\t+" + elapsed + "\t" + record + (entityName != null ? " (" + entityName + ")" : ""));
+				previousTime = record.getTime();
+			}
+		}
+	}
+
+}
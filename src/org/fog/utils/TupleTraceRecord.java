@@ -0,0 +1,131 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+/**
+ * One lifecycle event of a traced tuple, as written by {@link TupleTracer} and read back by {@link TupleTraceReader}.
+ */
+public class TupleTraceRecord {
+
+	/**
+	 * Size in bytes of a record in a trace file
+	 */
+	public static final int SIZE = 32;
+
+	public static final short SENSOR_EMIT = 1;
+	public static final short PERIODIC_EMIT = 2;
+	public static final short LINK_ARRIVAL = 3;
+	public static final short LINK_TRANSMIT_NORTH = 4;
+	public static final short LINK_TRANSMIT_SOUTH = 5;
+	public static final short SWITCH_HOP = 6;
+	public static final short EXECUTION_START = 7;
+	public static final short EXECUTION_END = 8;
+	public static final short ACTUATOR_ARRIVAL = 9;
+
+	private final double time;
+	/**
+	 * Event specific value: transmission delay for link transmissions, CPU time for execution ends, 0 otherwise
+	 */
+	private final double value;
+	/**
+	 * ID shared by a sampled tuple and all tuples derived from it
+	 */
+	private final int traceId;
+	private final int tupleId;
+	private final int entityId;
+	private final short kind;
+	/**
+	 * Position of the application ID and tuple type name of the tuple in the dictionary of the trace file, -1 if unknown
+	 */
+	private final short traceTypeId;
+	/**
+	 * Application ID and tuple type name of the tuple, null if the trace file has no dictionary entry for it
+	 */
+	private final String appId;
+	private final String tupleType;
+
+	public TupleTraceRecord(double time, double value, int traceId, int tupleId, int entityId, short kind, short traceTypeId,
+			String appId, String tupleType) {
+		this.time = time;
+		this.value = value;
+		this.traceId = traceId;
+		this.tupleId = tupleId;
+		this.entityId = entityId;
+		this.kind = kind;
+		this.traceTypeId = traceTypeId;
+		this.appId = appId;
+		this.tupleType = tupleType;
+	}
+
+	public static String getKindName(int kind) {
+		switch (kind) {
+		case SENSOR_EMIT:
+			return "SENSOR_EMIT";
+		case PERIODIC_EMIT:
+			return "PERIODIC_EMIT";
+		case LINK_ARRIVAL:
+			return "LINK_ARRIVAL";
+		case LINK_TRANSMIT_NORTH:
+			return "LINK_TRANSMIT_NORTH";
+		case LINK_TRANSMIT_SOUTH:
+			return "LINK_TRANSMIT_SOUTH";
+		case SWITCH_HOP:
+			return "SWITCH_HOP";
+		case EXECUTION_START:
+			return "EXECUTION_START";
+		case EXECUTION_END:
+			return "EXECUTION_END";
+		case ACTUATOR_ARRIVAL:
+			return "ACTUATOR_ARRIVAL";
+		default:
+			return "UNKNOWN_" + kind;
+		}
+	}
+
+	public double getTime() {
+		return time;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public int getTraceId() {
+		return traceId;
+	}
+
+	public int getTupleId() {
+		return tupleId;
+	}
+
+	public int getEntityId() {
+		return entityId;
+	}
+
+	public short getKind() {
+		return kind;
+	}
+
+	public short getTraceTypeId() {
+		return traceTypeId;
+	}
+
+	public String getAppId() {
+		return appId;
+	}
+
+	public String getTupleType() {
+		return tupleType;
+	}
+
+	@Override
+	public String toString() {
+		return time + " " + getKindName(kind) + " tuple=" + tupleId + " entity=" + entityId + " type=" + (tupleType != null ? appId + "/" + tupleType : String.valueOf(traceTypeId))
+				+ (value != 0 ? " value=" + value : "");
+	}
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.fog.entities.Tuple;
+
+/**
+ * Sampled lifecycle tracing of tuples into a binary file of fixed-size records.
+ * A tuple is sampled when it is emitted by a sensor or a periodic edge; the tuples derived from it inherit its trace ID,
+ * so the whole chain can be reconstructed by {@link TupleTraceReader}. Tracing is off until {@link #open(String)} is called,
+ * and unsampled tuples cost a single field check at each hook.
+ *
+ * File layout: magic, version and record size as ints and the offset of the tuple type dictionary as a long, followed by
+ * records of {@link TupleTraceRecord#SIZE} bytes, then the dictionary. Records identify the type of their tuple by a trace
+ * type ID, the position in the dictionary of its application ID and tuple type name, both written as UTF strings after
+ * the number of entries. The dictionary is written by {@link #close()}; its offset is -1 in a trace that was not closed.
+ */
+public class TupleTracer {
+
+	public static final int MAGIC = 0x46545243;
+	public static final int VERSION = 2;
+	/**
+	 * Size in bytes of the file header
+	 */
+	public static final int HEADER_SIZE = 20;
+
+	private static TupleTracer instance;
+
+	private DataOutputStream out;
+	private String fileName;
+	/**
+	 * Default sampling rate: one tuple out of samplingRate is traced. 0 disables sampling.
+	 */
+	private int samplingRate;
+	private Map<String, AppSampler> appIdToSampler;
+	private long recordCount;
+	/**
+	 * Application ID and tuple type name of each trace type ID of the current trace file
+	 */
+	private List<String[]> traceTypes;
+
+	/**
+	 * Sampling state of an application. Emitters resolve it once with {@link TupleTracer#getSampler(String)}, so that
+	 * sampling a tuple neither looks up nor boxes anything.
+	 */
+	public static class AppSampler {
+		/**
+		 * Sampling rate of the application, -1 to use the default one
+		 */
+		private int samplingRate = -1;
+		private long emittedCount;
+		/**
+		 * Trace type IDs of the tuple types of the application, indexed by tuple type index, -1 if not assigned yet
+		 */
+		private int[] traceTypeIds = new int[0];
+	}
+
+	public static TupleTracer getInstance(){
+		if(instance == null)
+			instance = new TupleTracer();
+		return instance;
+	}
+
+	private TupleTracer(){
+		setSamplingRate(1);
+		appIdToSampler = new HashMap<String, AppSampler>();
+		traceTypes = new ArrayList<String[]>();
+	}
+
+	/**
+	 * Starts tracing into the given file, replacing any previous trace file.
+	 * @param fileName path of the trace file
+	 */
+	public void open(String fileName){
+		close();
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(TupleTraceRecord.SIZE);
+			out.writeLong(-1);
+			this.fileName = fileName;
+			recordCount = 0;
+			traceTypes.clear();
+			for(AppSampler sampler : appIdToSampler.values())
+				sampler.traceTypeIds = new int[0];
+		} catch (IOException e) {
+			e.printStackTrace();
+			out = null;
+		}
+	}
+
+	/**
+	 * Writes the tuple type dictionary, then flushes and closes the trace file. Does nothing if tracing is off.
+	 */
+	public void close(){
+		if(out == null)
+			return;
+		try {
+			out.writeInt(traceTypes.size());
+			for(String[] traceType : traceTypes){
+				out.writeUTF(traceType[0]);
+				out.writeUTF(traceType[1]);
+			}
+			out.close();
+			RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+			try {
+				file.seek(HEADER_SIZE - 8);
+				file.writeLong(HEADER_SIZE + recordCount*TupleTraceRecord.SIZE);
+			} finally {
+				file.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		out = null;
+	}
+
+	public boolean isEnabled(){
+		return out != null;
+	}
+
+	/**
+	 * Returns the sampling state of an application, creating it if needed.
+	 */
+	public AppSampler getSampler(String appId){
+		AppSampler sampler = appIdToSampler.get(appId);
+		if(sampler == null){
+			sampler = new AppSampler();
+			appIdToSampler.put(appId, sampler);
+		}
+		return sampler;
+	}
+
+	/**
+	 * Decides whether a newly emitted tuple is traced, and if so assigns its trace ID.
+	 * @param tuple tuple emitted by a sensor or a periodic edge
+	 */
+	public void sample(Tuple tuple){
+		if(out == null)
+			return;
+		sample(tuple, getSampler(tuple.getAppId()));
+	}
+
+	/**
+	 * Decides whether a newly emitted tuple is traced, and if so assigns its trace ID.
+	 * @param tuple tuple emitted by a sensor or a periodic edge
+	 * @param sampler sampling state of the application of the tuple
+	 */
+	public void sample(Tuple tuple, AppSampler sampler){
+		if(out == null)
+			return;
+		int n = (sampler.samplingRate < 0) ? samplingRate : sampler.samplingRate;
+		if(n <= 0)
+			return;
+		if(sampler.emittedCount++ % n == 0)
+			tuple.setTraceId(tuple.getCloudletId());
+	}
+
+	/**
+	 * Records a lifecycle event of a tuple, if the tuple is traced.
+	 * @param kind one of the event kinds of {@link TupleTraceRecord}
+	 * @param tuple tuple concerned
+	 * @param entityId ID of the entity where the event happens
+	 * @param value event specific value
+	 */
+	public void record(short kind, Tuple tuple, int entityId, double value){
+		if(tuple.getTraceId() < 0 || out == null)
+			return;
+		try {
+			out.writeDouble(CloudSim.clock());
+			out.writeDouble(value);
+			out.writeInt(tuple.getTraceId());
+			out.writeInt(tuple.getCloudletId());
+			out.writeInt(entityId);
+			out.writeShort(kind);
+			out.writeShort(getTraceTypeId(tuple));
+			recordCount++;
+		} catch (IOException e) {
+			e.printStackTrace();
+			close();
+		}
+	}
+
+	/**
+	 * Returns the trace type ID of the type of a tuple, adding the type to the dictionary of the trace file if needed.
+	 * @return trace type ID, -1 if the tuple type is not indexed
+	 */
+	private int getTraceTypeId(Tuple tuple){
+		int tupleTypeIndex = tuple.getTupleTypeIndex();
+		if(tupleTypeIndex < 0)
+			return -1;
+		AppSampler sampler = getSampler(tuple.getAppId());
+		if(tupleTypeIndex >= sampler.traceTypeIds.length){
+			int length = sampler.traceTypeIds.length;
+			sampler.traceTypeIds = Arrays.copyOf(sampler.traceTypeIds, tupleTypeIndex+1);
+			Arrays.fill(sampler.traceTypeIds, length, tupleTypeIndex+1, -1);
+		}
+		if(sampler.traceTypeIds[tupleTypeIndex] < 0){
+			sampler.traceTypeIds[tupleTypeIndex] = traceTypes.size();
+			traceTypes.add(new String[]{tuple.getAppId(), tuple.getTupleType()});
+		}
+		return sampler.traceTypeIds[tupleTypeIndex];
+	}
+
+	public int getSamplingRate() {
+		return samplingRate;
+	}
+
+	/**
+	 * Sets the default sampling rate: one tuple out of samplingRate is traced, 0 disables tracing.
+	 */
+	public void setSamplingRate(int samplingRate) {
+		this.samplingRate = samplingRate;
+	}
+
+	/**
+	 * Sets the sampling rate of an application, overriding the default one.
+	 */
+	public void setSamplingRate(String appId, int samplingRate) {
+		getSampler(appId).samplingRate = samplingRate;
+	}
+
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+}
@@ -0,0 +1,70 @@
+package org.fog.utils.distribution;
+
+import java.util.Random;
+
+/**
+ * Walker's alias table (Vose's construction): samples an index with probability proportional to its weight
+ * in constant time, using one uniform draw.
+ */
+public class AliasTable {
+
+	private final double[] probability;
+	private final int[] alias;
+	
+	/**
+	 * @param weights non-negative weights, at least one of them positive
+	 */
+	public AliasTable(double[] weights) {
+		int n = weights.length;
+		double total = 0;
+		for(double weight : weights){
+			if(weight < 0 || Double.isNaN(weight))
+				throw new IllegalArgumentException("Weights must be non-negative");
+			total += weight;
+		}
+		if(n == 0 || total <= 0)
+			throw new IllegalArgumentException("At least one weight must be positive");
+		probability = new double[n];
+		alias = new int[n];
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int numSmall = 0, numLarge = 0;
+		for(int i=0;i<n;i++){
+			scaled[i] = weights[i]*n/total;
+			if(scaled[i] < 1)
+				small[numSmall++] = i;
+			else
+				large[numLarge++] = i;
+		}
+		while(numSmall > 0 && numLarge > 0){
+			int s = small[--numSmall];
+			int l = large[--numLarge];
+			probability[s] = scaled[s];
+			alias[s] = l;
+			scaled[l] = (scaled[l]+scaled[s])-1;
+			if(scaled[l] < 1)
+				small[numSmall++] = l;
+			else
+				large[numLarge++] = l;
+		}
+		// what remains is 1 up to rounding errors
+		while(numLarge > 0)
+			probability[large[--numLarge]] = 1;
+		while(numSmall > 0)
+			probability[small[--numSmall]] = 1;
+	}
+	
+	public int sample(Random random) {
+		double u = random.nextDouble()*probability.length;
+		int column = (int)u;
+		if(column >= probability.length)
+			column = probability.length-1;
+		return (u-column < probability[column]) ? column : alias[column];
+	}
+	
+	public int size() {
+		return probability.length;
+	}
+
+}
@@ -2,15 +2,40 @@ package org.fog.utils.distribution;
 
 import java.util.Random;
 
+import org.fog.utils.RandomStream;
+
 public abstract class Distribution {
 
 	public static int NORMAL = 1;
 	public static int DETERMINISTIC = 2;
 	public static int UNIFORM = 3;
+	public static int EXPONENTIAL = 4;
+	public static int PARETO = 5;
+	public static int WEIBULL = 6;
+	public static int ZIPF = 7;
+	public static int MMPP = 8;
+	public static int ON_OFF = 9;
+	public static int EMPIRICAL = 10;
+	public static int TRACE = 11;
 	
+	/**
+	 * Source of randomness, an unsynchronized {@link RandomStream} unless replaced
+	 */
 	protected Random random;
+	
+	public Distribution() {
+		setRandom(new RandomStream());
+	}
+	
 	public abstract double getNextValue();
 	
+	/**
+	 * Returns a uniform value in (0, 1], safe to pass to Math.log.
+	 */
+	protected double nextUnit() {
+		return 1.0 - random.nextDouble();
+	}
+	
 	public Random getRandom() {
 		return random;
 	}
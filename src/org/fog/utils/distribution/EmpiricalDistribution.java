@@ -0,0 +1,102 @@
+package org.fog.utils.distribution;
+
+import java.util.Arrays;
+
+/**
+ * Empirical distribution built from observed data. Bins are picked with an alias table in constant time; a value is
+ * either the bin value itself (discrete distribution) or uniform within the bin (histogram).
+ */
+public class EmpiricalDistribution extends Distribution{
+
+	/**
+	 * Lower bound of each bin, or the value itself for a discrete distribution
+	 */
+	private double[] lowerBounds;
+	/**
+	 * Width of each bin, null for a discrete distribution
+	 */
+	private double[] widths;
+	private double mean;
+	private AliasTable table;
+	
+	/**
+	 * Discrete distribution taking each value with a probability proportional to its weight.
+	 */
+	public EmpiricalDistribution(double[] values, double[] weights) {
+		this(values, null, weights);
+	}
+	
+	private EmpiricalDistribution(double[] lowerBounds, double[] widths, double[] weights) {
+		super();
+		if(lowerBounds.length != weights.length)
+			throw new IllegalArgumentException("One weight per value is required");
+		this.lowerBounds = lowerBounds.clone();
+		this.widths = (widths == null) ? null : widths.clone();
+		this.table = new AliasTable(weights);
+		double total = 0, weightedSum = 0;
+		for(int i=0;i<weights.length;i++){
+			double center = lowerBounds[i] + ((widths == null) ? 0 : widths[i]/2);
+			total += weights[i];
+			weightedSum += center*weights[i];
+		}
+		this.mean = weightedSum/total;
+	}
+	
+	/**
+	 * Histogram distribution: bin i spans [edges[i], edges[i+1]) and is picked with a probability proportional to counts[i].
+	 */
+	public static EmpiricalDistribution fromHistogram(double[] edges, double[] counts) {
+		if(edges.length != counts.length+1)
+			throw new IllegalArgumentException("A histogram of n bins has n+1 edges");
+		double[] widths = new double[counts.length];
+		for(int i=0;i<counts.length;i++){
+			widths[i] = edges[i+1]-edges[i];
+			if(widths[i] < 0)
+				throw new IllegalArgumentException("Histogram edges must be increasing");
+		}
+		return new EmpiricalDistribution(Arrays.copyOf(edges, counts.length), widths, counts);
+	}
+	
+	/**
+	 * Histogram distribution of a sample, with equal-width bins between its minimum and maximum.
+	 */
+	public static EmpiricalDistribution fromSample(double[] sample, int bins) {
+		if(sample.length == 0 || bins < 1)
+			throw new IllegalArgumentException("A non-empty sample and at least one bin are required");
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+		for(double value : sample){
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		if(max == min)
+			return new EmpiricalDistribution(new double[]{min}, new double[]{1});
+		double width = (max-min)/bins;
+		double[] edges = new double[bins+1];
+		for(int i=0;i<=bins;i++)
+			edges[i] = min + i*width;
+		edges[bins] = max;
+		double[] counts = new double[bins];
+		for(double value : sample)
+			counts[Math.min(bins-1, (int)((value-min)/width))]++;
+		return fromHistogram(edges, counts);
+	}
+	
+	@Override
+	public double getNextValue() {
+		int bin = table.sample(random);
+		if(widths == null)
+			return lowerBounds[bin];
+		return lowerBounds[bin] + random.nextDouble()*widths[bin];
+	}
+
+	@Override
+	public int getDistributionType() {
+		return Distribution.EMPIRICAL;
+	}
+
+	@Override
+	public double getMeanInterTransmitTime() {
+		return mean;
+	}
+
+}
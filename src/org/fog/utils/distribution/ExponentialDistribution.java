@@ -0,0 +1,40 @@
+package org.fog.utils.distribution;
+
+/**
+ * Exponential distribution, i.e. the inter-arrival times of a Poisson process.
+ */
+public class ExponentialDistribution extends Distribution{
+
+	private double mean;
+	
+	public ExponentialDistribution(double mean) {
+		super();
+		if(mean <= 0)
+			throw new IllegalArgumentException("Mean must be greater than 0.0");
+		setMean(mean);
+	}
+	
+	@Override
+	public double getNextValue() {
+		return -mean*Math.log(nextUnit());
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public void setMean(double mean) {
+		this.mean = mean;
+	}
+
+	@Override
+	public int getDistributionType() {
+		return Distribution.EXPONENTIAL;
+	}
+
+	@Override
+	public double getMeanInterTransmitTime() {
+		return mean;
+	}
+
+}
@@ -0,0 +1,165 @@
+package org.fog.utils.distribution;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.LUDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+/**
+ * Inter-arrival times of a Markov-modulated Poisson process: a continuous-time Markov chain switches between states,
+ * and arrivals follow a Poisson process whose rate depends on the current state. Successive values are correlated,
+ * which models bursty sensors. The state persists between calls to {@link #getNextValue()}.
+ */
+public class MmppDistribution extends Distribution{
+
+	/**
+	 * Arrival rate in each state
+	 */
+	private double[] rates;
+	/**
+	 * Rate of switching from state i to state j, diagonal ignored
+	 */
+	private double[][] switchRates;
+	/**
+	 * Total rate of leaving each state
+	 */
+	private double[] leaveRates;
+	private double[] stationary;
+	/**
+	 * Current state, -1 until the first value is drawn
+	 */
+	private int state = -1;
+	private double meanRate;
+	
+	/**
+	 * @param rates arrival rate in each state
+	 * @param switchRates switchRates[i][j] is the rate of switching from state i to state j
+	 */
+	public MmppDistribution(double[] rates, double[][] switchRates) {
+		super();
+		int n = rates.length;
+		if(n == 0 || switchRates.length != n)
+			throw new IllegalArgumentException("One row of switch rates per state is required");
+		this.rates = rates.clone();
+		this.switchRates = new double[n][];
+		this.leaveRates = new double[n];
+		for(int i=0;i<n;i++){
+			if(switchRates[i].length != n || rates[i] < 0)
+				throw new IllegalArgumentException("Invalid rates for state "+i);
+			this.switchRates[i] = switchRates[i].clone();
+			this.switchRates[i][i] = 0;
+			for(int j=0;j<n;j++){
+				if(this.switchRates[i][j] < 0)
+					throw new IllegalArgumentException("Switch rates must be non-negative");
+				leaveRates[i] += this.switchRates[i][j];
+			}
+		}
+		stationary = getStationaryDistribution();
+		for(int i=0;i<n;i++)
+			meanRate += stationary[i]*rates[i];
+		if(meanRate <= 0)
+			throw new IllegalArgumentException("The mean arrival rate must be positive");
+	}
+	
+	/**
+	 * Two-state MMPP alternating between a high and a low arrival rate.
+	 * @param highRate arrival rate in the high state
+	 * @param lowRate arrival rate in the low state
+	 * @param meanHighTime mean time spent in the high state
+	 * @param meanLowTime mean time spent in the low state
+	 */
+	public MmppDistribution(double highRate, double lowRate, double meanHighTime, double meanLowTime) {
+		this(new double[]{highRate, lowRate}, new double[][]{{0, 1/meanHighTime}, {1/meanLowTime, 0}});
+	}
+	
+	/**
+	 * Solves pi Q = 0 with the components of pi summing to 1, Q being the generator of the chain.
+	 */
+	private double[] getStationaryDistribution() {
+		int n = rates.length;
+		if(n == 1)
+			return new double[]{1};
+		// transposed generator, whose last equation is replaced by the normalization
+		RealMatrix matrix = new Array2DRowRealMatrix(n, n);
+		for(int i=0;i<n;i++){
+			for(int j=0;j<n;j++)
+				matrix.setEntry(j, i, (i == j) ? -leaveRates[i] : switchRates[i][j]);
+		}
+		for(int i=0;i<n;i++)
+			matrix.setEntry(n-1, i, 1);
+		RealVector rhs = new ArrayRealVector(n);
+		rhs.setEntry(n-1, 1);
+		return new LUDecomposition(matrix).getSolver().solve(rhs).toArray();
+	}
+	
+	/**
+	 * Draws the initial state from the stationary distribution, so that the process starts in steady state rather than
+	 * in state 0. Done on the first value rather than at construction, once the stream of the sensor is installed.
+	 */
+	private void drawInitialState() {
+		double u = random.nextDouble(), cumulative = 0;
+		for(state=0;state<rates.length-1;state++){
+			cumulative += stationary[state];
+			if(u < cumulative)
+				break;
+		}
+	}
+	
+	/**
+	 * Arrivals and state switches are competing exponential clocks; switches are accumulated until an arrival wins.
+	 */
+	@Override
+	public double getNextValue() {
+		if(state < 0)
+			drawInitialState();
+		double elapsed = 0;
+		while(true){
+			double totalRate = rates[state]+leaveRates[state];
+			if(totalRate <= 0)
+				return Double.POSITIVE_INFINITY;
+			elapsed += -Math.log(nextUnit())/totalRate;
+			double u = random.nextDouble()*totalRate;
+			if(u < rates[state])
+				return elapsed;
+			u -= rates[state];
+			// rounding errors fall back on the last reachable state
+			int next = state;
+			for(int j=0;j<rates.length;j++){
+				if(switchRates[state][j] <= 0)
+					continue;
+				next = j;
+				if(u < switchRates[state][j])
+					break;
+				u -= switchRates[state][j];
+			}
+			state = next;
+		}
+	}
+
+	public double[] getRates() {
+		return rates.clone();
+	}
+
+	public int getState() {
+		return state;
+	}
+
+	/**
+	 * Long-run mean arrival rate, weighting the rate of each state by the fraction of time spent in it
+	 */
+	public double getMeanRate() {
+		return meanRate;
+	}
+
+	@Override
+	public int getDistributionType() {
+		return Distribution.MMPP;
+	}
+
+	@Override
+	public double getMeanInterTransmitTime() {
+		return 1/meanRate;
+	}
+
+}
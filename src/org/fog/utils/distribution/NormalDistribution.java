@@ -1,7 +1,5 @@
 package org.fog.utils.distribution;
 
-import java.util.Random;
-
 public class NormalDistribution extends Distribution{
 
 	private double mean;
@@ -10,7 +8,6 @@ public class NormalDistribution extends Distribution{
 	public NormalDistribution(double mean, double stdDev) {
 		setMean(mean);
 		setStdDev(stdDev);
-		setRandom(new Random());
 	}
 	
 	@Override
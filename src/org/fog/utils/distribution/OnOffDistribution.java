@@ -0,0 +1,90 @@
+package org.fog.utils.distribution;
+
+import java.util.Random;
+
+/**
+ * Inter-arrival times of an on/off source: during ON periods values are drawn from an inter-arrival distribution,
+ * OFF periods are silent. The durations of both periods follow their own distributions, e.g. Pareto for self-similar
+ * traffic. The current period persists between calls to {@link #getNextValue()}.
+ */
+public class OnOffDistribution extends Distribution{
+
+	private Distribution onDuration;
+	private Distribution offDuration;
+	private Distribution interArrival;
+	/**
+	 * Time left in the current ON period, NaN until the first ON period is drawn
+	 */
+	private double remainingOnTime = Double.NaN;
+	
+	public OnOffDistribution(Distribution onDuration, Distribution offDuration, Distribution interArrival) {
+		super();
+		this.onDuration = onDuration;
+		this.offDuration = offDuration;
+		this.interArrival = interArrival;
+		setRandom(getRandom());
+	}
+	
+	/**
+	 * An arrival falling after the end of the ON period is dropped; the source then stays silent for an OFF period
+	 * and the next arrival is drawn from the start of the following ON period.
+	 */
+	@Override
+	public double getNextValue() {
+		// the first ON period is drawn here rather than at construction, once the stream of the sensor is installed
+		if(Double.isNaN(remainingOnTime))
+			remainingOnTime = onDuration.getNextValue();
+		double elapsed = 0;
+		for(int periods=0;periods<1000000;periods++){
+			double value = interArrival.getNextValue();
+			if(value <= remainingOnTime){
+				remainingOnTime -= value;
+				return elapsed+value;
+			}
+			elapsed += remainingOnTime+offDuration.getNextValue();
+			remainingOnTime = onDuration.getNextValue();
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Also makes the period and inter-arrival distributions draw from the given stream.
+	 */
+	@Override
+	public void setRandom(Random random) {
+		super.setRandom(random);
+		if(onDuration != null){
+			onDuration.setRandom(random);
+			offDuration.setRandom(random);
+			interArrival.setRandom(random);
+		}
+	}
+
+	public Distribution getOnDuration() {
+		return onDuration;
+	}
+
+	public Distribution getOffDuration() {
+		return offDuration;
+	}
+
+	public Distribution getInterArrival() {
+		return interArrival;
+	}
+
+	@Override
+	public int getDistributionType() {
+		return Distribution.ON_OFF;
+	}
+
+	/**
+	 * Mean of a cycle divided by the mean number of arrivals per cycle, ignoring the truncation at the end of ON periods.
+	 */
+	@Override
+	public double getMeanInterTransmitTime() {
+		double on = onDuration.getMeanInterTransmitTime();
+		double off = offDuration.getMeanInterTransmitTime();
+		return (on+off)/(on/interArrival.getMeanInterTransmitTime());
+	}
+
+}
@@ -0,0 +1,53 @@
+package org.fog.utils.distribution;
+
+/**
+ * Pareto distribution with the given shape and location (minimum value). Heavy-tailed for shape <= 2.
+ */
+public class ParetoDistribution extends Distribution{
+
+	private double shape;
+	private double location;
+	
+	public ParetoDistribution(double shape, double location) {
+		super();
+		if(shape <= 0 || location <= 0)
+			throw new IllegalArgumentException("Shape and location must be greater than 0.0");
+		setShape(shape);
+		setLocation(location);
+	}
+	
+	@Override
+	public double getNextValue() {
+		return location/Math.pow(nextUnit(), 1/shape);
+	}
+
+	public double getShape() {
+		return shape;
+	}
+
+	public void setShape(double shape) {
+		this.shape = shape;
+	}
+
+	public double getLocation() {
+		return location;
+	}
+
+	public void setLocation(double location) {
+		this.location = location;
+	}
+
+	@Override
+	public int getDistributionType() {
+		return Distribution.PARETO;
+	}
+
+	/**
+	 * Infinite when the shape is at most 1.
+	 */
+	@Override
+	public double getMeanInterTransmitTime() {
+		return (shape > 1) ? shape*location/(shape-1) : Double.POSITIVE_INFINITY;
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.fog.utils.distribution;
+
+import java.io.IOException;
+
+import org.fog.utils.SensorTrace;
+
+/**
+ * Replays the emissions of one device of a {@link SensorTrace}: each value is the time until the next record of the
+ * device, the first one being measured from the origin of the trace. Once the records of the device are exhausted,
+ * the value is infinite. Records are read from the shared mapping of the trace, one at a time.
+ * 
+ * The payload and CPU length of the record whose time was last returned are available to the sensor emitting it.
+ */
+public class TraceDistribution extends Distribution{
+
+	private SensorTrace trace;
+	private String device;
+	private long firstRecord;
+	private long recordCount;
+	/**
+	 * Number of records of the device already replayed
+	 */
+	private long replayed;
+	private double previousTime;
+	
+	public TraceDistribution(String traceFileName, String device) throws IOException {
+		this(SensorTrace.open(traceFileName), device);
+	}
+	
+	public TraceDistribution(SensorTrace trace, String device) {
+		super();
+		this.trace = trace;
+		this.device = device;
+		this.firstRecord = trace.getFirstRecord(device);
+		this.recordCount = trace.getDeviceRecordCount(device);
+		this.previousTime = trace.getOrigin();
+	}
+	
+	@Override
+	public double getNextValue() {
+		if(replayed >= recordCount)
+			return Double.POSITIVE_INFINITY;
+		double time = trace.getTimestamp(firstRecord+replayed);
+		replayed++;
+		double delay = Math.max(0, time-previousTime);
+		previousTime = time;
+		return delay;
+	}
+	
+	/**
+	 * Returns true if a record was replayed, i.e. {@link #getCurrentPayloadBytes()} and {@link #getCurrentCpuLength()} are defined.
+	 */
+	public boolean hasCurrentRecord() {
+		return replayed > 0 && replayed <= recordCount;
+	}
+	
+	/**
+	 * Payload of the record whose time was last returned
+	 */
+	public int getCurrentPayloadBytes() {
+		return trace.getPayloadBytes(firstRecord+replayed-1);
+	}
+	
+	/**
+	 * CPU length of the record whose time was last returned
+	 */
+	public int getCurrentCpuLength() {
+		return trace.getCpuLength(firstRecord+replayed-1);
+	}
+	
+	public SensorTrace getTrace() {
+		return trace;
+	}
+	
+	public String getDevice() {
+		return device;
+	}
+	
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	@Override
+	public int getDistributionType() {
+		return Distribution.TRACE;
+	}
+
+	/**
+	 * Mean time between the records of the device, measured from the origin of the trace.
+	 */
+	@Override
+	public double getMeanInterTransmitTime() {
+		if(recordCount == 0)
+			return Double.POSITIVE_INFINITY;
+		return (trace.getTimestamp(firstRecord+recordCount-1)-trace.getOrigin())/recordCount;
+	}
+
+}
@@ -0,0 +1,52 @@
+package org.fog.utils.distribution;
+
+import org.apache.commons.math3.special.Gamma;
+
+/**
+ * Weibull distribution with the given shape (alpha) and scale (beta).
+ */
+public class WeibullDistribution extends Distribution{
+
+	private double alpha;
+	private double beta;
+	
+	public WeibullDistribution(double alpha, double beta) {
+		super();
+		if(alpha <= 0 || beta <= 0)
+			throw new IllegalArgumentException("Alpha and beta must be greater than 0.0");
+		setAlpha(alpha);
+		setBeta(beta);
+	}
+	
+	@Override
+	public double getNextValue() {
+		return beta*Math.pow(-Math.log(nextUnit()), 1/alpha);
+	}
+
+	public double getAlpha() {
+		return alpha;
+	}
+
+	public void setAlpha(double alpha) {
+		this.alpha = alpha;
+	}
+
+	public double getBeta() {
+		return beta;
+	}
+
+	public void setBeta(double beta) {
+		this.beta = beta;
+	}
+
+	@Override
+	public int getDistributionType() {
+		return Distribution.WEIBULL;
+	}
+
+	@Override
+	public double getMeanInterTransmitTime() {
+		return beta*Gamma.gamma(1+1/alpha);
+	}
+
+}
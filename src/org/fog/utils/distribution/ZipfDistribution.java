@@ -0,0 +1,57 @@
+package org.fog.utils.distribution;
+
+/**
+ * Zipf distribution over the ranks 1..population: rank k is drawn with probability proportional to 1/k^shape.
+ * Sampling uses an alias table, so it takes constant time whatever the population.
+ */
+public class ZipfDistribution extends Distribution{
+
+	private double shape;
+	private int population;
+	private double mean;
+	private AliasTable table;
+	
+	public ZipfDistribution(double shape, int population) {
+		super();
+		if(shape <= 0 || population < 1)
+			throw new IllegalArgumentException("Shape must be greater than 0.0 and population greater than 0");
+		this.shape = shape;
+		this.population = population;
+		double[] weights = new double[population];
+		double total = 0, weightedSum = 0;
+		for(int k=1;k<=population;k++){
+			weights[k-1] = 1/Math.pow(k, shape);
+			total += weights[k-1];
+			weightedSum += k*weights[k-1];
+		}
+		this.mean = weightedSum/total;
+		this.table = new AliasTable(weights);
+	}
+	
+	/**
+	 * Returns a rank between 1 and the population.
+	 */
+	@Override
+	public double getNextValue() {
+		return table.sample(random)+1;
+	}
+
+	public double getShape() {
+		return shape;
+	}
+
+	public int getPopulation() {
+		return population;
+	}
+
+	@Override
+	public int getDistributionType() {
+		return Distribution.ZIPF;
+	}
+
+	@Override
+	public double getMeanInterTransmitTime() {
+		return mean;
+	}
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils.jmx;
+
+/**
+ * State of a fog device, as of the last snapshot of {@link SimulationMonitor}.
+ */
+public interface FogDeviceMXBean {
+
+	String getName();
+
+	double getUtilization();
+
+	/**
+	 * Energy integrated up to the last utilization change of the device
+	 */
+	double getEnergyConsumption();
+
+	double getTotalCost();
+
+	int getModuleCount();
+
+}
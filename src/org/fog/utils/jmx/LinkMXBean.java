@@ -0,0 +1,24 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils.jmx;
+
+/**
+ * State of a network link, as of the last snapshot of {@link SimulationMonitor}.
+ */
+public interface LinkMXBean {
+
+	String getName();
+
+	int getNorthQueueDepth();
+
+	int getSouthQueueDepth();
+
+	long getNorthTupleCount();
+
+	long getSouthTupleCount();
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils.jmx;
+
+/**
+ * Latency statistics of an application loop, as of the last snapshot of {@link SimulationMonitor}.
+ */
+public interface LoopMXBean {
+
+	int getLoopId();
+
+	long getCount();
+
+	double getMean();
+
+	double getP50();
+
+	double getP95();
+
+	double getP99();
+
+	double getP999();
+
+	double getMax();
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils.jmx;
+
+/**
+ * Progress of the running simulation, as of the last snapshot of {@link SimulationMonitor}.
+ */
+public interface SimulationMXBean {
+
+	double getClock();
+
+	long getProcessedEvents();
+
+	/**
+	 * Events processed per second of wall-clock time between the two last snapshots
+	 */
+	double getEventsPerSecond();
+
+	int getFutureQueueSize();
+
+	int getDeferredQueueSize();
+
+	int getEntityCount();
+
+	int getFogDeviceCount();
+
+	int getLinkCount();
+
+	/**
+	 * Wall-clock time of the last snapshot, in milliseconds since the epoch
+	 */
+	long getSnapshotTime();
+
+}
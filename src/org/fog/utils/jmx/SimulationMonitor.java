@@ -0,0 +1,283 @@
+/*
+ * Title:        iFogSim Toolkit
+ * Description:  iFogSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ *
+ */
+
+package org.fog.utils.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.fog.entities.FogDevice;
+import org.fog.network.Link;
+import org.fog.utils.LatencyHistogram;
+import org.fog.utils.TimeKeeper;
+
+/**
+ * Exposes the state of the running simulation as MXBeans on the platform MBean server, for local tools such as JConsole.
+ * The state is copied into the MXBeans every N processed events on the simulation thread, so JMX reads never touch
+ * the simulation objects and the event loop never waits on JMX.
+ *
+ * MXBeans are registered under the "org.fog" domain: one for the simulation, one per fog device, link and loop.
+ */
+public class SimulationMonitor implements Runnable {
+
+	public static final String DOMAIN = "org.fog";
+
+	private static SimulationMonitor instance;
+
+	private final MBeanServer server;
+	private final List<ObjectName> registeredNames;
+	private final SimulationStats simulationStats;
+	private final Map<FogDevice, FogDeviceStats> deviceStats;
+	private final Map<Link, LinkStats> linkStats;
+	private final Map<Integer, LoopStats> loopStats;
+	private long lastSnapshotEvents;
+	private long lastSnapshotNanos;
+
+	public static SimulationMonitor getInstance(){
+		if(instance == null)
+			instance = new SimulationMonitor();
+		return instance;
+	}
+
+	private SimulationMonitor(){
+		server = ManagementFactory.getPlatformMBeanServer();
+		registeredNames = new ArrayList<ObjectName>();
+		simulationStats = new SimulationStats();
+		deviceStats = new HashMap<FogDevice, FogDeviceStats>();
+		linkStats = new HashMap<Link, LinkStats>();
+		loopStats = new HashMap<Integer, LoopStats>();
+	}
+
+	/**
+	 * Registers the simulation MXBean and starts taking snapshots.
+	 * @param interval number of processed events between two snapshots
+	 */
+	public void start(long interval){
+		register(simulationStats, DOMAIN+":type=Simulation");
+		lastSnapshotEvents = CloudSim.getProcessedEvents();
+		lastSnapshotNanos = System.nanoTime();
+		CloudSim.setProgressListener(this, interval);
+	}
+
+	/**
+	 * Takes a last snapshot, stops taking snapshots and unregisters all MXBeans.
+	 */
+	public void stop(){
+		if(registeredNames.isEmpty())
+			return;
+		run();
+		CloudSim.setProgressListener(null, 1);
+		for(ObjectName name : registeredNames){
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException e) {
+				e.printStackTrace();
+			}
+		}
+		registeredNames.clear();
+		deviceStats.clear();
+		linkStats.clear();
+		loopStats.clear();
+	}
+
+	/**
+	 * Takes a snapshot of the simulation state. Called on the simulation thread.
+	 */
+	@Override
+	public void run(){
+		long events = CloudSim.getProcessedEvents();
+		long nanos = System.nanoTime();
+		double eventsPerSecond = (nanos > lastSnapshotNanos) ? (events - lastSnapshotEvents) * 1e9 / (nanos - lastSnapshotNanos) : 0;
+		lastSnapshotEvents = events;
+		lastSnapshotNanos = nanos;
+
+		List<SimEntity> entities = CloudSim.getEntityList();
+		if(entities != null){
+			for(SimEntity entity : entities){
+				if(entity instanceof FogDevice)
+					snapshotDevice((FogDevice)entity);
+				else if(entity instanceof Link)
+					snapshotLink((Link)entity);
+			}
+		}
+		Map<Integer, LatencyHistogram> histograms = TimeKeeper.getInstance().getLoopIdToLatencyHistogram();
+		for(Integer loopId : histograms.keySet()){
+			LoopStats stats = loopStats.get(loopId);
+			if(stats == null){
+				stats = new LoopStats(loopId);
+				loopStats.put(loopId, stats);
+				register(stats, DOMAIN+":type=Loop,id="+loopId);
+			}
+			stats.update(histograms.get(loopId));
+		}
+
+		simulationStats.update(CloudSim.clock(), events, eventsPerSecond, CloudSim.getFutureQueueSize(),
+				CloudSim.getDeferredQueueSize(), (entities == null) ? 0 : entities.size(), deviceStats.size(), linkStats.size());
+	}
+
+	private void snapshotDevice(FogDevice device){
+		FogDeviceStats stats = deviceStats.get(device);
+		if(stats == null){
+			stats = new FogDeviceStats(device.getName());
+			deviceStats.put(device, stats);
+			register(stats, DOMAIN+":type=FogDevice,name="+ObjectName.quote(device.getName()));
+		}
+		// closing the current segment brings energy and cost up to date, even if the utilization did not change
+		double energyConsumption = device.getEnergyConsumption(CloudSim.clock());
+		stats.update(device.getUtilization(), energyConsumption, device.getTotalCost(), device.getVmList().size());
+	}
+
+	private void snapshotLink(Link link){
+		LinkStats stats = linkStats.get(link);
+		if(stats == null){
+			stats = new LinkStats(link.getName());
+			linkStats.put(link, stats);
+			register(stats, DOMAIN+":type=Link,name="+ObjectName.quote(link.getName()));
+		}
+		stats.update(link.getNorthTupleQueue().size(), link.getSouthTupleQueue().size(), link.getNorthTupleCount(), link.getSouthTupleCount());
+	}
+
+	private void register(Object mxBean, String name){
+		try {
+			ObjectName objectName = new ObjectName(name);
+			if(server.isRegistered(objectName))
+				server.unregisterMBean(objectName);
+			server.registerMBean(mxBean, objectName);
+			registeredNames.add(objectName);
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static class SimulationStats implements SimulationMXBean {
+		private volatile double clock;
+		private volatile long processedEvents;
+		private volatile double eventsPerSecond;
+		private volatile int futureQueueSize;
+		private volatile int deferredQueueSize;
+		private volatile int entityCount;
+		private volatile int fogDeviceCount;
+		private volatile int linkCount;
+		private volatile long snapshotTime;
+
+		void update(double clock, long processedEvents, double eventsPerSecond, int futureQueueSize, int deferredQueueSize,
+				int entityCount, int fogDeviceCount, int linkCount){
+			this.clock = clock;
+			this.processedEvents = processedEvents;
+			this.eventsPerSecond = eventsPerSecond;
+			this.futureQueueSize = futureQueueSize;
+			this.deferredQueueSize = deferredQueueSize;
+			this.entityCount = entityCount;
+			this.fogDeviceCount = fogDeviceCount;
+			this.linkCount = linkCount;
+			this.snapshotTime = System.currentTimeMillis();
+		}
+
+		public double getClock() { return clock; }
+		public long getProcessedEvents() { return processedEvents; }
+		public double getEventsPerSecond() { return eventsPerSecond; }
+		public int getFutureQueueSize() { return futureQueueSize; }
+		public int getDeferredQueueSize() { return deferredQueueSize; }
+		public int getEntityCount() { return entityCount; }
+		public int getFogDeviceCount() { return fogDeviceCount; }
+		public int getLinkCount() { return linkCount; }
+		public long getSnapshotTime() { return snapshotTime; }
+	}
+
+	private static class FogDeviceStats implements FogDeviceMXBean {
+		private final String name;
+		private volatile double utilization;
+		private volatile double energyConsumption;
+		private volatile double totalCost;
+		private volatile int moduleCount;
+
+		FogDeviceStats(String name){
+			this.name = name;
+		}
+
+		void update(double utilization, double energyConsumption, double totalCost, int moduleCount){
+			this.utilization = utilization;
+			this.energyConsumption = energyConsumption;
+			this.totalCost = totalCost;
+			this.moduleCount = moduleCount;
+		}
+
+		public String getName() { return name; }
+		public double getUtilization() { return utilization; }
+		public double getEnergyConsumption() { return energyConsumption; }
+		public double getTotalCost() { return totalCost; }
+		public int getModuleCount() { return moduleCount; }
+	}
+
+	private static class LinkStats implements LinkMXBean {
+		private final String name;
+		private volatile int northQueueDepth;
+		private volatile int southQueueDepth;
+		private volatile long northTupleCount;
+		private volatile long southTupleCount;
+
+		LinkStats(String name){
+			this.name = name;
+		}
+
+		void update(int northQueueDepth, int southQueueDepth, long northTupleCount, long southTupleCount){
+			this.northQueueDepth = northQueueDepth;
+			this.southQueueDepth = southQueueDepth;
+			this.northTupleCount = northTupleCount;
+			this.southTupleCount = southTupleCount;
+		}
+
+		public String getName() { return name; }
+		public int getNorthQueueDepth() { return northQueueDepth; }
+		public int getSouthQueueDepth() { return southQueueDepth; }
+		public long getNorthTupleCount() { return northTupleCount; }
+		public long getSouthTupleCount() { return southTupleCount; }
+	}
+
+	private static class LoopStats implements LoopMXBean {
+		private final int loopId;
+		private volatile long count;
+		private volatile double mean;
+		private volatile double p50;
+		private volatile double p95;
+		private volatile double p99;
+		private volatile double p999;
+		private volatile double max;
+
+		LoopStats(int loopId){
+			this.loopId = loopId;
+		}
+
+		void update(LatencyHistogram histogram){
+			count = histogram.getTotalCount();
+			mean = histogram.getMean();
+			p50 = histogram.getP50();
+			p95 = histogram.getP95();
+			p99 = histogram.getP99();
+			p999 = histogram.getP999();
+			max = histogram.getMax();
+		}
+
+		public int getLoopId() { return loopId; }
+		public long getCount() { return count; }
+		public double getMean() { return mean; }
+		public double getP50() { return p50; }
+		public double getP95() { return p95; }
+		public double getP99() { return p99; }
+		public double getP999() { return p999; }
+		public double getMax() { return max; }
+	}
+
+}